@@ -0,0 +1,72 @@
+package com.krs.jmh;
+
+import com.krs.utils.threads.MpscArrayQueue;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.results.format.ResultFormatType;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import java.util.Queue;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures fan-in throughput of {@link MpscArrayQueue} against the JDK blocking queues, with three producers
+ * offering to one consumer polling. Failed offers and empty polls are counted as operations too, so compare the
+ * offer and poll scores together rather than the group total alone.
+ */
+@State(Scope.Group)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class BenchmarkMpscQueue {
+    static final Integer ELEMENT = 42;
+    static final int CAPACITY = 1 << 14;
+
+    @Param({"MpscArrayQueue", "ArrayBlockingQueue", "LinkedBlockingQueue"})
+    String type;
+
+    Queue<Integer> queue;
+
+    public static void main(String[] args) throws RunnerException {
+        Options o = new OptionsBuilder()
+                .include(BenchmarkMpscQueue.class.getSimpleName())
+                .warmupIterations(5)
+                .measurementIterations(10)
+                .resultFormat(ResultFormatType.JSON)
+                .forks(1)
+                .build();
+
+        new Runner(o).run();
+    }
+
+    @Setup(Level.Iteration)
+    public void newQueue() {
+        switch (type) {
+            case "MpscArrayQueue":
+                queue = new MpscArrayQueue<>(CAPACITY);
+                break;
+            case "ArrayBlockingQueue":
+                queue = new ArrayBlockingQueue<>(CAPACITY);
+                break;
+            default:
+                queue = new LinkedBlockingQueue<>(CAPACITY);
+        }
+    }
+
+    @Benchmark
+    @Group("fanIn")
+    @GroupThreads(3)
+    public boolean offer() {
+        return queue.offer(ELEMENT);
+    }
+
+    @Benchmark
+    @Group("fanIn")
+    @GroupThreads(1)
+    public Integer poll() {
+        return queue.poll();
+    }
+}
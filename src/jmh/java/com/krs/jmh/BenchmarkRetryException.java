@@ -0,0 +1,91 @@
+package com.krs.jmh;
+
+import com.krs.utils.retry.RetryException;
+import com.krs.utils.retry.strategy.DeferRetryStrategy;
+import com.krs.utils.retry.strategy.RetryStrategy;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.Blackhole;
+import org.openjdk.jmh.results.format.ResultFormatType;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
+
+/**
+ * Measures the cost of creating and throwing {@link RetryException}s with and without stack traces, both directly
+ * and through a {@link DeferRetryStrategy}. The stack depth parameter simulates failures deep inside a framework,
+ * where {@code fillInStackTrace} is most expensive.
+ */
+@State(Scope.Benchmark)
+public class BenchmarkRetryException {
+    static final RuntimeException CAUSE = new RuntimeException("cause");
+
+    @Param({"10", "100"})
+    int depth;
+
+    RetryStrategy deferring = new DeferRetryStrategy();
+    RetryStrategy deferringStackless = new DeferRetryStrategy(false);
+
+    public static void main(String[] args) throws RunnerException {
+        Options o = new OptionsBuilder()
+                .include(BenchmarkRetryException.class.getSimpleName())
+                .warmupIterations(5)
+                .measurementIterations(10)
+                .resultFormat(ResultFormatType.JSON)
+                .forks(1)
+                .build();
+
+        new Runner(o).run();
+    }
+
+    @Benchmark
+    @BenchmarkMode(Mode.AverageTime)
+    @OutputTimeUnit(TimeUnit.NANOSECONDS)
+    public Object measureWithStackTrace() {
+        return atDepth(depth, () -> new RetryException(CAUSE));
+    }
+
+    @Benchmark
+    @BenchmarkMode(Mode.AverageTime)
+    @OutputTimeUnit(TimeUnit.NANOSECONDS)
+    public Object measureWithoutStackTrace() {
+        return atDepth(depth, () -> RetryException.withoutStackTrace(CAUSE));
+    }
+
+    @Benchmark
+    @BenchmarkMode(Mode.AverageTime)
+    @OutputTimeUnit(TimeUnit.NANOSECONDS)
+    public Object measureSharedInstance() {
+        return atDepth(depth, () -> RetryException.BUDGET_EXHAUSTED);
+    }
+
+    @Benchmark
+    @BenchmarkMode(Mode.AverageTime)
+    @OutputTimeUnit(TimeUnit.NANOSECONDS)
+    public void measureDeferWithStackTrace(Blackhole bh) {
+        bh.consume(atDepth(depth, () -> defer(deferring)));
+    }
+
+    @Benchmark
+    @BenchmarkMode(Mode.AverageTime)
+    @OutputTimeUnit(TimeUnit.NANOSECONDS)
+    public void measureDeferWithoutStackTrace(Blackhole bh) {
+        bh.consume(atDepth(depth, () -> defer(deferringStackless)));
+    }
+
+    static RetryException defer(RetryStrategy strategy) {
+        try {
+            strategy.beforeRetry(CAUSE);
+            return null;
+        } catch (RetryException e) {
+            return e;
+        }
+    }
+
+    static Object atDepth(int depth, Supplier<Object> s) {
+        return depth == 0 ? s.get() : atDepth(depth - 1, s);
+    }
+}
@@ -0,0 +1,89 @@
+package com.krs.jmh;
+
+import com.krs.utils.retry.RetryPolicy;
+import com.krs.utils.retry.RetryUtils;
+import com.krs.utils.retry.strategy.DelayRetryStrategy;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.results.format.ResultFormatType;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import java.util.concurrent.Callable;
+import java.util.concurrent.TimeUnit;
+import java.util.function.IntSupplier;
+import java.util.function.LongSupplier;
+
+/**
+ * Compares the success path of the {@link RetryUtils} execute methods against calling the operation directly.
+ * The operations are created once, so any difference in time or allocation (run with {@code -prof gc}) is the cost
+ * of the retry wrapper itself.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+public class BenchmarkRetryExecute {
+    int value;
+
+    final RetryPolicy policy = RetryUtils.buildRetryPolicy(
+            (Throwable t) -> t instanceof IllegalStateException,
+            new DelayRetryStrategy(1, TimeUnit.MILLISECONDS, 3));
+
+    final Callable<Integer> callable = () -> value;
+    final Runnable runnable = () -> value++;
+    final IntSupplier intSupplier = () -> value;
+    final LongSupplier longSupplier = () -> value;
+
+    public static void main(String[] args) throws RunnerException {
+        Options o = new OptionsBuilder()
+                .include(BenchmarkRetryExecute.class.getSimpleName())
+                .warmupIterations(5)
+                .measurementIterations(10)
+                .resultFormat(ResultFormatType.JSON)
+                .forks(1)
+                .build();
+
+        new Runner(o).run();
+    }
+
+    @Benchmark
+    public Integer measureDirectCallable() throws Exception {
+        return callable.call();
+    }
+
+    @Benchmark
+    public Integer measureExecuteCallable() throws Exception {
+        return RetryUtils.execute(callable, policy);
+    }
+
+    @Benchmark
+    public void measureDirectRunnable() {
+        runnable.run();
+    }
+
+    @Benchmark
+    public void measureExecuteRunnable() {
+        RetryUtils.execute(runnable, policy);
+    }
+
+    @Benchmark
+    public int measureDirectIntSupplier() {
+        return intSupplier.getAsInt();
+    }
+
+    @Benchmark
+    public int measureExecuteAsInt() {
+        return RetryUtils.executeAsInt(intSupplier, policy);
+    }
+
+    @Benchmark
+    public long measureDirectLongSupplier() {
+        return longSupplier.getAsLong();
+    }
+
+    @Benchmark
+    public long measureExecuteAsLong() {
+        return RetryUtils.executeAsLong(longSupplier, policy);
+    }
+}
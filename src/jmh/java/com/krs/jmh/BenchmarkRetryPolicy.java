@@ -0,0 +1,126 @@
+package com.krs.jmh;
+
+import com.krs.utils.retry.RetryException;
+import com.krs.utils.retry.RetryPolicy;
+import com.krs.utils.retry.RetryUtils;
+import com.krs.utils.retry.strategy.DelayRetryStrategy;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.results.format.ResultFormatType;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import java.io.IOException;
+import java.net.SocketTimeoutException;
+import java.sql.SQLTransientException;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+/**
+ * Measures what a {@link RetryPolicy} costs when nothing fails, and what classifying a failure costs when
+ * something does. Run this before and after changes to the retry package to check the no-failure path has not
+ * regressed.
+ * <p>
+ * - success path: a direct call, the canonical hand-written loop around a {@code buildRetryPolicy} wrapper, and
+ * {@link RetryUtils#execute(Callable, RetryPolicy)}<p>
+ * - {@code canRetry}: classifiers of increasing realism, from a single {@code instanceof} to walking the cause chain
+ * against a set of transient exception types
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+public class BenchmarkRetryPolicy {
+    static final Set<Class<?>> TRANSIENT = new HashSet<>(Arrays.asList(
+            SocketTimeoutException.class, TimeoutException.class, SQLTransientException.class));
+
+    static final Exception SHALLOW = new SocketTimeoutException("read timed out");
+    static final Exception WRAPPED = new RuntimeException(new IOException(new SocketTimeoutException("read timed out")));
+    static final Exception NOT_RETRYABLE = new RuntimeException(new IllegalArgumentException());
+
+    int value;
+    final Callable<Integer> operation = () -> value;
+
+    final RetryPolicy instanceOfPolicy = RetryUtils.buildRetryPolicy(
+            (Throwable t) -> t instanceof IOException, new DelayRetryStrategy());
+    final RetryPolicy typeSetPolicy = RetryUtils.buildRetryPolicy(
+            (Throwable t) -> TRANSIENT.contains(t.getClass()), new DelayRetryStrategy());
+    final RetryPolicy causeChainPolicy = RetryUtils.buildRetryPolicy(
+            BenchmarkRetryPolicy::isTransient, new DelayRetryStrategy());
+
+    public static void main(String[] args) throws RunnerException {
+        Options o = new OptionsBuilder()
+                .include(BenchmarkRetryPolicy.class.getSimpleName())
+                .warmupIterations(5)
+                .measurementIterations(10)
+                .resultFormat(ResultFormatType.JSON)
+                .forks(1)
+                .build();
+
+        new Runner(o).run();
+    }
+
+    static boolean isTransient(Throwable t) {
+        for (Throwable c = t; c != null; c = c.getCause()) {
+            if (TRANSIENT.contains(c.getClass())) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    @Benchmark
+    public Integer measureSuccessDirect() throws Exception {
+        return operation.call();
+    }
+
+    @Benchmark
+    public Integer measureSuccessCanonicalLoop() throws Exception {
+        while (true) {
+            try {
+                return operation.call();
+            } catch (Exception e) {
+                if (causeChainPolicy.canRetry(e)) {
+                    causeChainPolicy.beforeRetry(e);
+                    continue;
+                }
+                throw e;
+            }
+        }
+    }
+
+    @Benchmark
+    public Integer measureSuccessExecute() throws Exception {
+        return RetryUtils.execute(operation, causeChainPolicy);
+    }
+
+    @Benchmark
+    public boolean measureCanRetryInstanceOf() {
+        return instanceOfPolicy.canRetry(SHALLOW);
+    }
+
+    @Benchmark
+    public boolean measureCanRetryTypeSet() {
+        return typeSetPolicy.canRetry(SHALLOW);
+    }
+
+    @Benchmark
+    public boolean measureCanRetryCauseChain() {
+        return causeChainPolicy.canRetry(WRAPPED);
+    }
+
+    @Benchmark
+    public boolean measureCanRetryCauseChainMiss() {
+        return causeChainPolicy.canRetry(NOT_RETRYABLE);
+    }
+
+    @Benchmark
+    public boolean measureCanRetryDeferred() {
+        // A RetryException from a nested policy is always retryable, after the classifier has been consulted.
+        return causeChainPolicy.canRetry(RetryException.BUDGET_EXHAUSTED);
+    }
+}
@@ -0,0 +1,69 @@
+package com.krs.jmh;
+
+import com.krs.utils.retry.strategy.DelayRetryStrategy;
+import com.krs.utils.retry.strategy.RetryStrategy;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.results.format.ResultFormatType;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+import org.slf4j.helpers.NOPLogger;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures {@link DelayRetryStrategy#beforeRetry(Throwable)} when a single strategy instance is shared by 1-N
+ * threads, which is dominated by contention on its shared attempt counter. The strategy sleeps zero milliseconds,
+ * has no throttle, and logs to a no-op logger, so neither fingerprinting nor console output is measured. The
+ * strategy is replaced each iteration so its attempt limit is never reached.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class BenchmarkRetryStrategyContention {
+    static final RuntimeException FAILURE = new RuntimeException("failure");
+
+    RetryStrategy strategy;
+
+    public static void main(String[] args) throws RunnerException {
+        Options o = new OptionsBuilder()
+                .include(BenchmarkRetryStrategyContention.class.getSimpleName())
+                .warmupIterations(5)
+                .measurementIterations(10)
+                .resultFormat(ResultFormatType.JSON)
+                .forks(1)
+                .build();
+
+        new Runner(o).run();
+    }
+
+    @Setup(Level.Iteration)
+    public void newStrategy() {
+        strategy = new DelayRetryStrategy(1, TimeUnit.NANOSECONDS, Integer.MAX_VALUE, null, NOPLogger.NOP_LOGGER);
+    }
+
+    @Benchmark
+    @Threads(1)
+    public void measureOneThread() {
+        strategy.beforeRetry(FAILURE);
+    }
+
+    @Benchmark
+    @Threads(2)
+    public void measureTwoThreads() {
+        strategy.beforeRetry(FAILURE);
+    }
+
+    @Benchmark
+    @Threads(4)
+    public void measureFourThreads() {
+        strategy.beforeRetry(FAILURE);
+    }
+
+    @Benchmark
+    @Threads(8)
+    public void measureEightThreads() {
+        strategy.beforeRetry(FAILURE);
+    }
+}
@@ -0,0 +1,296 @@
+package com.krs.utils;
+
+import com.google.common.base.Preconditions;
+import com.krs.utils.threads.ThreadUtils;
+
+import javax.annotation.concurrent.ThreadSafe;
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.channels.WritableByteChannel;
+import java.nio.charset.Charset;
+import java.nio.charset.CharsetEncoder;
+import java.nio.charset.CoderResult;
+import java.nio.charset.CodingErrorAction;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * The asynchronous console behind {@link Env#startAsyncConsole(int, Env.ConsoleOverflow)}. Callers render each
+ * record into a preallocated slot of a ring buffer through a {@link MessageTemplate}, and a daemon writer thread
+ * encodes the published slots into a direct buffer and writes them to the out and err channels in batches. A caller
+ * never takes a lock or waits on I/O: publishing costs one compare-and-set, the rendering, and an unpark when the
+ * writer is idle. Only {@link Env.ConsoleOverflow#BLOCK} ever waits, and only while the buffer is
+ * full.<p/>
+ * <p>
+ * This class is thread safe.
+ *
+ * @author krs
+ */
+@ThreadSafe
+final class AsyncConsole implements Closeable {
+    private static final int BATCH_BYTES = 64 * 1024;
+    private static final long MAX_IDLE_NANOS = TimeUnit.MILLISECONDS.toNanos(100);
+    private static final long BLOCKED_PARK_NANOS = TimeUnit.MICROSECONDS.toNanos(50);
+
+    private final Slot[] slots;
+    private final int mask;
+    private final Env.ConsoleOverflow overflow;
+    private final WritableByteChannel out;
+    private final WritableByteChannel err;
+    // The sequence of the next slot to claim, and of the slot published in each position of the ring.
+    private final AtomicLong claimed = new AtomicLong();
+    private final AtomicLongArray published;
+    // The sequence of the next slot to read, and the sequence up to which every record has been written.
+    private final AtomicLong consumed = new AtomicLong();
+    private final AtomicLong written = new AtomicLong();
+    private final LongAdder dropped = new LongAdder();
+    private final Thread writer;
+    private volatile boolean sleeping;
+    private volatile boolean closed;
+
+    // Only accessed by the writer thread.
+    private final CharsetEncoder encoder;
+    private final ByteBuffer batch = ByteBuffer.allocateDirect(BATCH_BYTES);
+    private final char[] lineSeparator = System.lineSeparator().toCharArray();
+    private char[] chars = new char[256];
+    private CharBuffer charBuffer = CharBuffer.wrap(chars);
+    private WritableByteChannel batchChannel;
+
+    /**
+     * Constructs a console and starts its writer thread.
+     *
+     * @param capacity the number of records the buffer holds, rounded up to a power of two.
+     * @param overflow what callers do when the buffer is full.
+     * @param out      the channel for {@link Env#consoleOut(String, Object...)}.
+     * @param err      the channel for {@link Env#consoleErr(String, Object...)}.
+     */
+    AsyncConsole(int capacity, Env.ConsoleOverflow overflow, WritableByteChannel out, WritableByteChannel err) {
+        Preconditions.checkArgument(capacity > 0 && capacity <= 1 << 30, "capacity [%s] is out of range.", capacity);
+        int size = Integer.highestOneBit(capacity) == capacity ? capacity : Integer.highestOneBit(capacity) << 1;
+        this.slots = new Slot[size];
+        this.mask = size - 1;
+        this.published = new AtomicLongArray(size);
+        for (int i = 0; i < size; i++) {
+            slots[i] = new Slot();
+            published.set(i, -1);
+        }
+        this.overflow = Preconditions.checkNotNull(overflow);
+        this.out = Preconditions.checkNotNull(out);
+        this.err = Preconditions.checkNotNull(err);
+        this.encoder = Charset.defaultCharset().newEncoder()
+                .onMalformedInput(CodingErrorAction.REPLACE)
+                .onUnmappableCharacter(CodingErrorAction.REPLACE);
+        this.writer = ThreadUtils.newNamedDaemonThreadFactory("env-console-writer-%d").newThread(this::runWriter);
+        this.writer.start();
+    }
+
+    /**
+     * Renders a record into the buffer for the writer thread.
+     *
+     * @return false if the record was not buffered and should be written synchronously instead: the console is
+     * closed, or the buffer is full and the overflow policy is {@link Env.ConsoleOverflow#SYNCHRONOUS}. If true
+     * is returned, the arguments have been rendered, or discarded if the record was dropped.
+     * @throws java.util.IllegalFormatException as {@code String.format} does; nothing is written.
+     */
+    boolean publish(boolean toErr, MessageTemplate.Arguments args) {
+        long seq;
+        while (true) {
+            if (closed) {
+                return false;
+            }
+            seq = claimed.get();
+            if (seq - consumed.get() < slots.length) {
+                if (claimed.compareAndSet(seq, seq + 1)) {
+                    break;
+                }
+            } else {
+                if (!writer.isAlive()) {
+                    return false;
+                } else if (overflow == Env.ConsoleOverflow.DROP) {
+                    dropped.increment();
+                    args.discard();
+                    return true;
+                } else if (overflow == Env.ConsoleOverflow.SYNCHRONOUS) {
+                    return false;
+                }
+                LockSupport.unpark(writer);
+                LockSupport.parkNanos(this, BLOCKED_PARK_NANOS);
+            }
+        }
+
+        Slot slot = slots[(int) seq & mask];
+        try {
+            slot.fill(toErr, args);
+        } catch (RuntimeException e) {
+            // The slot is claimed and must still be published, or the writer would wait for it forever.
+            slot.text.setLength(0);
+            throw e;
+        } finally {
+            // A volatile write, so it cannot be reordered after the read of the writer's sleeping flag.
+            published.set((int) seq & mask, seq);
+            if (sleeping) {
+                LockSupport.unpark(writer);
+            }
+        }
+        if (closed) {
+            // The writer may have made its last pass before this record was claimed; if so, write it here.
+            while (writer.isAlive()) {
+                LockSupport.parkNanos(this, BLOCKED_PARK_NANOS);
+            }
+            if (written.get() <= seq && slot.text.length() > 0) {
+                writeDirectly(slot);
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Writes a record the writer thread missed. Only used once the writer has exited.
+     */
+    private void writeDirectly(Slot slot) {
+        ByteBuffer bytes = encoder.charset().encode(slot.text + System.lineSeparator());
+        synchronized (this) {
+            try {
+                while (bytes.hasRemaining()) {
+                    (slot.toErr ? err : out).write(bytes);
+                }
+            } catch (IOException e) {
+                e.printStackTrace();
+            }
+        }
+    }
+
+    /**
+     * Waits until every record published before this call has been written to its channel.
+     */
+    void flush() {
+        long target = claimed.get();
+        while (written.get() < target && writer.isAlive()) {
+            LockSupport.unpark(writer);
+            LockSupport.parkNanos(this, BLOCKED_PARK_NANOS);
+        }
+    }
+
+    /**
+     * Returns the number of records dropped because the buffer was full.
+     */
+    long getDroppedCount() {
+        return dropped.sum();
+    }
+
+    /**
+     * Stops accepting records, then waits for the writer to write those already buffered. The channels are left
+     * open.
+     */
+    @Override
+    public void close() {
+        closed = true;
+        LockSupport.unpark(writer);
+        boolean interrupted = false;
+        while (writer.isAlive()) {
+            try {
+                writer.join();
+            } catch (InterruptedException e) {
+                interrupted = true;
+            }
+        }
+        if (interrupted) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private void runWriter() {
+        long next = consumed.get();
+        while (true) {
+            int position = (int) next & mask;
+            if (published.get(position) == next) {
+                Slot slot = slots[position];
+                if (slot.text.length() > 0) {
+                    append(slot.toErr ? err : out, slot.text);
+                }
+                // The record is copied into the batch, so the slot can be reused.
+                consumed.lazySet(++next);
+                continue;
+            }
+
+            writeBatch();
+            written.set(next);
+            if (closed && claimed.get() == next) {
+                break;
+            }
+
+            // Publish that the writer is idle before the final check, so a caller either sees the flag and
+            // unparks, or its record is seen here.
+            sleeping = true;
+            if (published.get(position) != next && !closed) {
+                LockSupport.parkNanos(this, MAX_IDLE_NANOS);
+            }
+            sleeping = false;
+        }
+    }
+
+    private void append(WritableByteChannel channel, StringBuilder text) {
+        if (channel != batchChannel) {
+            writeBatch();
+            batchChannel = channel;
+        }
+        int length = text.length() + lineSeparator.length;
+        if (chars.length < length) {
+            chars = new char[Math.max(length, chars.length * 2)];
+            charBuffer = CharBuffer.wrap(chars);
+        }
+        text.getChars(0, text.length(), chars, 0);
+        System.arraycopy(lineSeparator, 0, chars, text.length(), lineSeparator.length);
+
+        charBuffer.clear().limit(length);
+        encoder.reset();
+        CoderResult result;
+        do {
+            result = encoder.encode(charBuffer, batch, true);
+            if (result.isOverflow()) {
+                writeBatch();
+            }
+        } while (result.isOverflow());
+        while (encoder.flush(batch).isOverflow()) {
+            writeBatch();
+        }
+    }
+
+    private void writeBatch() {
+        if (batch.position() == 0) {
+            return;
+        }
+        batch.flip();
+        try {
+            while (batch.hasRemaining()) {
+                batchChannel.write(batch);
+            }
+        } catch (IOException e) {
+            // Reported straight to System.err, since Env.printStackTrace() would wait for this thread to flush.
+            e.printStackTrace();
+        } finally {
+            batch.clear();
+        }
+    }
+
+    /**
+     * One record of the ring buffer. Written by the caller that claimed it, then read by the writer thread after
+     * its sequence is published.
+     */
+    private static final class Slot {
+        private final StringBuilder text = new StringBuilder(256);
+        private boolean toErr;
+
+        void fill(boolean toErr, MessageTemplate.Arguments args) {
+            this.toErr = toErr;
+            text.setLength(0);
+            text.append('[').append(Thread.currentThread().getName()).append("] ");
+            args.appendTo(text);
+        }
+    }
+}
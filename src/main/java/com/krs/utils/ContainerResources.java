@@ -0,0 +1,279 @@
+package com.krs.utils;
+
+import javax.annotation.concurrent.Immutable;
+import java.io.IOException;
+import java.lang.management.ManagementFactory;
+import java.lang.management.OperatingSystemMXBean;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * The CPU, memory and NUMA resources actually available to this process, read from the Linux cgroup (v1 or v2) and
+ * sysfs files. JVMs before 8u191 ignore cgroup limits, so inside a container {@code availableProcessors()} reports
+ * every CPU of the host; this reads the limits directly. Every file is resolved against a root directory, so tests
+ * can supply a fake file system. Where a file is missing or unreadable, as on other operating systems, the JVM's own
+ * figures are used.
+ *
+ * @author krs
+ */
+@Immutable
+final class ContainerResources {
+    private static final String CGROUP_MOUNT = "sys/fs/cgroup";
+    // cgroup v1 reports "no limit" as the largest page-aligned long rather than as a keyword.
+    private static final long V1_UNLIMITED = Long.MAX_VALUE / 2;
+
+    private final int processors;
+    private final long memoryLimit;
+    private final int numaNodes;
+
+    ContainerResources(int processors, long memoryLimit, int numaNodes) {
+        this.processors = processors;
+        this.memoryLimit = memoryLimit;
+        this.numaNodes = numaNodes;
+    }
+
+    /**
+     * Reads the resources of this process.
+     *
+     * @param root the file system root, "/" outside of tests.
+     */
+    static ContainerResources read(Path root) {
+        return read(root, Runtime.getRuntime().availableProcessors(), physicalMemory());
+    }
+
+    static ContainerResources read(Path root, int jvmProcessors, long physicalMemory) {
+        Path mount = root.resolve(CGROUP_MOUNT);
+        List<String> membership = readLines(root.resolve("proc/self/cgroup"));
+        double cpuLimit;
+        long memoryLimit;
+        int cpusetCount;
+        if (Files.exists(mount.resolve("cgroup.controllers"))) {
+            Path group = cgroupDir(mount, membership, "");
+            cpuLimit = v2CpuLimit(mount, group);
+            memoryLimit = smallestLimit(mount, group, "memory.max");
+            cpusetCount = cpusetCount(mount, group, "cpuset.cpus.effective");
+        } else {
+            cpuLimit = v1CpuLimit(mount, membership);
+            memoryLimit = smallestLimit(controllerMount(mount, "memory"), cgroupDir(mount, membership, "memory"),
+                    "memory.limit_in_bytes");
+            cpusetCount = cpusetCount(controllerMount(mount, "cpuset"), cgroupDir(mount, membership, "cpuset"),
+                    "cpuset.effective_cpus", "cpuset.cpus");
+        }
+
+        int processors = jvmProcessors;
+        if (cpuLimit > 0) {
+            processors = Math.min(processors, (int) Math.ceil(cpuLimit));
+        }
+        if (cpusetCount > 0) {
+            processors = Math.min(processors, cpusetCount);
+        }
+        if (memoryLimit <= 0 || (physicalMemory > 0 && memoryLimit > physicalMemory)) {
+            memoryLimit = physicalMemory;
+        }
+        return new ContainerResources(Math.max(1, processors), memoryLimit, numaNodes(root));
+    }
+
+    int getProcessors() {
+        return processors;
+    }
+
+    long getMemoryLimit() {
+        return memoryLimit;
+    }
+
+    int getNumaNodes() {
+        return numaNodes;
+    }
+
+    @Override
+    public String toString() {
+        return "ContainerResources{processors=" + processors + ", memoryLimit=" + memoryLimit
+                + ", numaNodes=" + numaNodes + "}";
+    }
+
+    /**
+     * Returns the smallest CPU quota, in CPUs, of a v2 cgroup and its ancestors, or 0 if none is limited.
+     * cpu.max holds "$MAX $PERIOD", where $MAX may be "max".
+     */
+    private static double v2CpuLimit(Path mount, Path group) {
+        double limit = 0;
+        for (Path dir = group; dir != null && dir.startsWith(mount); dir = dir.getParent()) {
+            String[] fields = readFirstLine(dir.resolve("cpu.max")).split("\\s+");
+            double cpus = fields.length == 2 ? ratio(fields[0], fields[1]) : 0;
+            if (cpus > 0 && (limit == 0 || cpus < limit)) {
+                limit = cpus;
+            }
+        }
+        return limit;
+    }
+
+    /**
+     * Returns the smallest CFS quota, in CPUs, of a v1 cpu cgroup and its ancestors, or 0 if none is limited.
+     */
+    private static double v1CpuLimit(Path mount, List<String> membership) {
+        Path cpuMount = controllerMount(mount, "cpu");
+        double limit = 0;
+        for (Path dir = cgroupDir(mount, membership, "cpu"); dir != null && dir.startsWith(cpuMount);
+             dir = dir.getParent()) {
+            String quota = readFirstLine(dir.resolve("cpu.cfs_quota_us"));
+            String period = readFirstLine(dir.resolve("cpu.cfs_period_us"));
+            double cpus = ratio(quota, period);
+            if (cpus > 0 && (limit == 0 || cpus < limit)) {
+                limit = cpus;
+            }
+        }
+        return limit;
+    }
+
+    /**
+     * Returns the smallest limit in a file of a cgroup and its ancestors, or -1 if none is limited.
+     */
+    private static long smallestLimit(Path mount, Path group, String file) {
+        long limit = -1;
+        for (Path dir = group; dir != null && dir.startsWith(mount); dir = dir.getParent()) {
+            long value = parseLong(readFirstLine(dir.resolve(file)));
+            if (value > 0 && value < V1_UNLIMITED && (limit < 0 || value < limit)) {
+                limit = value;
+            }
+        }
+        return limit;
+    }
+
+    /**
+     * Returns the number of CPUs in the first cpuset file found in a cgroup or its ancestors, or 0 if there is none.
+     */
+    private static int cpusetCount(Path mount, Path group, String... files) {
+        for (Path dir = group; dir != null && dir.startsWith(mount); dir = dir.getParent()) {
+            for (String file : files) {
+                int count = countCpuList(readFirstLine(dir.resolve(file)));
+                if (count > 0) {
+                    return count;
+                }
+            }
+        }
+        return 0;
+    }
+
+    /**
+     * Counts the CPUs in a list such as "0-3,8,10-11".
+     */
+    static int countCpuList(String list) {
+        int count = 0;
+        for (String range : list.split(",")) {
+            range = range.trim();
+            if (range.isEmpty()) {
+                continue;
+            }
+            int dash = range.indexOf('-');
+            long first = parseLong(dash < 0 ? range : range.substring(0, dash));
+            long last = dash < 0 ? first : parseLong(range.substring(dash + 1));
+            if (first < 0 || last < first) {
+                return 0;
+            }
+            count += last - first + 1;
+        }
+        return count;
+    }
+
+    /**
+     * Returns the directory of this process's cgroup for a controller, or for the v2 unified hierarchy if the
+     * controller is empty. In a container the cgroup path is often that of the host, and not visible below the
+     * container's mount, in which case the mount itself is the process's cgroup.
+     */
+    private static Path cgroupDir(Path mount, List<String> membership, String controller) {
+        Path controllerMount = controller.isEmpty() ? mount : controllerMount(mount, controller);
+        for (String line : membership) {
+            // Lines are "hierarchy-ID:controller-list:cgroup-path"; v2 has an empty controller list.
+            String[] fields = line.split(":", 3);
+            if (fields.length < 3 || !hasController(fields[1], controller)) {
+                continue;
+            }
+            Path dir = controllerMount.resolve(fields[2].replaceFirst("^/+", ""));
+            return Files.isDirectory(dir) ? dir : controllerMount;
+        }
+        return controllerMount;
+    }
+
+    private static boolean hasController(String controllers, String controller) {
+        if (controller.isEmpty()) {
+            return controllers.isEmpty();
+        }
+        for (String c : controllers.split(",")) {
+            if (c.equals(controller)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Returns the v1 mount of a controller, which may be shared with others, as in "cpu,cpuacct".
+     */
+    private static Path controllerMount(Path mount, String controller) {
+        Path dir = mount.resolve(controller);
+        if (Files.isDirectory(dir)) {
+            return dir;
+        }
+        try (DirectoryStream<Path> dirs = Files.newDirectoryStream(mount)) {
+            for (Path d : dirs) {
+                if (hasController(d.getFileName().toString(), controller)) {
+                    return d;
+                }
+            }
+        } catch (IOException e) {
+            // No cgroup file system.
+        }
+        return dir;
+    }
+
+    private static int numaNodes(Path root) {
+        int nodes = 0;
+        try (DirectoryStream<Path> dirs = Files.newDirectoryStream(root.resolve("sys/devices/system/node"),
+                "node[0-9]*")) {
+            for (Path ignored : dirs) {
+                nodes++;
+            }
+        } catch (IOException e) {
+            // Not Linux, or no NUMA support.
+        }
+        return Math.max(1, nodes);
+    }
+
+    private static double ratio(String quota, String period) {
+        long q = parseLong(quota);
+        long p = parseLong(period);
+        return q > 0 && p > 0 ? (double) q / p : 0;
+    }
+
+    private static long parseLong(String s) {
+        try {
+            return Long.parseLong(s.trim());
+        } catch (NumberFormatException e) {
+            return -1;
+        }
+    }
+
+    private static String readFirstLine(Path file) {
+        List<String> lines = readLines(file);
+        return lines.isEmpty() ? "" : lines.get(0).trim();
+    }
+
+    private static List<String> readLines(Path file) {
+        try {
+            return Files.readAllLines(file, StandardCharsets.US_ASCII);
+        } catch (IOException e) {
+            return Collections.emptyList();
+        }
+    }
+
+    private static long physicalMemory() {
+        OperatingSystemMXBean os = ManagementFactory.getOperatingSystemMXBean();
+        return os instanceof com.sun.management.OperatingSystemMXBean
+                ? ((com.sun.management.OperatingSystemMXBean) os).getTotalPhysicalMemorySize()
+                : -1;
+    }
+}
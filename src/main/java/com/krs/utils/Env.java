@@ -1,34 +1,178 @@
 package com.krs.utils;
 
+import com.google.common.base.Preconditions;
+
+import java.io.FileDescriptor;
+import java.io.FileOutputStream;
+import java.nio.channels.WritableByteChannel;
+import java.nio.file.Paths;
+
 /**
  * <p>
  *     Environment methods:
  *     <ul>
  *         <li>Static console print methods to both std out + err</li>
+ *         <li>An optional asynchronous console, see {@link #startAsyncConsole(int, ConsoleOverflow)}</li>
+ *         <li>Container-aware CPU, memory and NUMA resources, for sizing pools and caches</li>
  *     </ul>
  * </p>
  * Created by KR Shabazz on 3/8/16 12:05 AM.
  */
 public final class Env {
+    private static volatile AsyncConsole asyncConsole;
+
     private Env(){}
 
+    /**
+     * What a caller of the asynchronous console does when its buffer is full.
+     */
+    public enum ConsoleOverflow {
+        /** Wait for the writer thread to make room. No record is lost. */
+        BLOCK,
+        /** Discard the record and count it; the caller never waits. */
+        DROP,
+        /** Write the record to System.out or System.err directly, as when the console is synchronous. */
+        SYNCHRONOUS
+    }
+
     public static void consoleOut(String s, Object... o) {
-        System.out.println(consoleString(s, o));
+        print(false, MessageTemplate.of(s).args(o));
     }
 
     public static void consoleErr(String s, Object... o) {
-        System.err.println(consoleString(s, o));
+        print(true, MessageTemplate.of(s).args(o));
+    }
+
+    /**
+     * Prints a record whose arguments are already bound to a template, as in
+     * {@code Env.consoleOut(MessageTemplate.of("%d of %d").args().arg(done).arg(total))}. Primitive arguments are
+     * neither boxed nor copied into a varargs array, so with the asynchronous console running nothing is allocated.
+     */
+    public static void consoleOut(MessageTemplate.Arguments args) {
+        print(false, Preconditions.checkNotNull(args));
+    }
+
+    /**
+     * Prints a record to System.err, as {@link #consoleOut(MessageTemplate.Arguments)} does to System.out.
+     */
+    public static void consoleErr(MessageTemplate.Arguments args) {
+        print(true, Preconditions.checkNotNull(args));
     }
 
     static String consoleString(String s, Object... o){
-        return threadNameWithBldr().append(" ").append(String.format(s, o)).toString();
+        return consoleString(MessageTemplate.of(s).args(o));
+    }
+
+    private static String consoleString(MessageTemplate.Arguments args) {
+        return args.appendTo(threadNameWithBldr().append(" ")).toString();
+    }
+
+    private static void print(boolean toErr, MessageTemplate.Arguments args) {
+        AsyncConsole console = asyncConsole;
+        if (console == null || !console.publish(toErr, args)) {
+            (toErr ? System.err : System.out).println(consoleString(args));
+        }
     }
 
+    /**
+     * Prints a stack trace to System.err, after any console output already buffered by the asynchronous console.
+     */
     public static void printStackTrace(Throwable t) {
+        flushConsole();
         t.printStackTrace(System.err);
     }
 
+    /**
+     * Switches {@link #consoleOut(String, Object...)} and {@link #consoleErr(String, Object...)} to an asynchronous
+     * console: callers format each record into a preallocated ring buffer, and a daemon thread writes the records to
+     * the standard output and error file descriptors in batches. Callers no longer contend on the PrintStream locks
+     * or wait for a flush, at the cost of bypassing System.out and System.err, so streams installed with
+     * {@code System.setOut} are not used.
+     *
+     * @param capacity the number of records the buffer holds, rounded up to a power of two.
+     * @param overflow what callers do when the buffer is full.
+     * @throws IllegalStateException if the asynchronous console is already running.
+     */
+    public static void startAsyncConsole(int capacity, ConsoleOverflow overflow) {
+        System.out.flush();
+        System.err.flush();
+        startAsyncConsole(capacity, overflow,
+                new FileOutputStream(FileDescriptor.out).getChannel(),
+                new FileOutputStream(FileDescriptor.err).getChannel());
+    }
+
+    static synchronized void startAsyncConsole(
+            int capacity,
+            ConsoleOverflow overflow,
+            WritableByteChannel out,
+            WritableByteChannel err) {
+
+        Preconditions.checkState(asyncConsole == null, "Async console already started.");
+        asyncConsole = new AsyncConsole(capacity, overflow, out, err);
+    }
+
+    /**
+     * Writes the records buffered by the asynchronous console, then switches back to synchronous output. Does
+     * nothing if the asynchronous console is not running.
+     */
+    public static synchronized void stopAsyncConsole() {
+        AsyncConsole console = asyncConsole;
+        if (console != null) {
+            asyncConsole = null;
+            console.close();
+        }
+    }
+
+    /**
+     * Waits until every record already passed to the asynchronous console has been written. Does nothing if the
+     * asynchronous console is not running.
+     */
+    public static void flushConsole() {
+        AsyncConsole console = asyncConsole;
+        if (console != null) {
+            console.flush();
+        }
+    }
+
+    /**
+     * Returns the number of records the asynchronous console has dropped under {@link ConsoleOverflow#DROP}, or 0
+     * if it is not running.
+     */
+    public static long getDroppedConsoleRecords() {
+        AsyncConsole console = asyncConsole;
+        return console == null ? 0 : console.getDroppedCount();
+    }
+
+    /**
+     * Returns the number of CPUs this process may use: the JVM's available processors, capped by a cgroup CPU quota
+     * or cpuset, if any. Unlike {@code Runtime.availableProcessors()} on older JVMs, this honours container limits.
+     * Read once, on first use.
+     */
+    public static int effectiveProcessors() {
+        return Resources.INSTANCE.getProcessors();
+    }
+
+    /**
+     * Returns the memory this process may use in bytes: the cgroup memory limit if one is set, and otherwise the
+     * machine's physical memory, or -1 if neither can be read. Read once, on first use.
+     */
+    public static long memoryLimit() {
+        return Resources.INSTANCE.getMemoryLimit();
+    }
+
+    /**
+     * Returns the number of NUMA nodes of the machine, which is 1 if it has none or they cannot be read. Read once,
+     * on first use.
+     */
+    public static int numaNodeCount() {
+        return Resources.INSTANCE.getNumaNodes();
+    }
+
     private static StringBuilder threadNameWithBldr() {
         return new StringBuilder("[").append(Thread.currentThread().getName()).append("]");
     }
+
+    private static final class Resources {
+        static final ContainerResources INSTANCE = ContainerResources.read(Paths.get("/"));
+    }
 }
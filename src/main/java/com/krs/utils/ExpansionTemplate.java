@@ -0,0 +1,162 @@
+package com.krs.utils;
+
+import javax.annotation.concurrent.Immutable;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.Function;
+
+/**
+ * A string compiled into literal text and <b>${name}</b> references, as used by {@link PropertyImporter}. The string
+ * is tokenized once, in a single pass, so a value is never rescanned after a substitution. References may be nested,
+ * as in <b>${${name}.${surname}}</b>: the name of a reference is itself a template.<p/>
+ * <p>
+ * A template compiled from a line of a property file honours the file's escapes: a <b>$</b> or <b>}</b> preceded by
+ * an unescaped backslash is literal, and is left escaped for the property parser to unescape. A "${" that is
+ * never closed is literal, as is a "}" that closes nothing.
+ *
+ * @author krs
+ */
+@Immutable
+final class ExpansionTemplate {
+    private static final char ESCAPE = '\\';
+    private static final String OPEN = "${";
+    private static final char CLOSE = '}';
+
+    // Each segment is either literal text, as a String, or a Reference.
+    private final Object[] segments;
+    private final boolean hasReferences;
+
+    private ExpansionTemplate(List<Object> segments) {
+        this.segments = segments.toArray();
+        boolean references = false;
+        for (Object segment : this.segments) {
+            references |= segment instanceof Reference;
+        }
+        this.hasReferences = references;
+    }
+
+    /**
+     * Compiles a string.
+     *
+     * @param source  the string to compile.
+     * @param escapes true if backslashes escape the following character, as they do in a line of a property file,
+     *                and false for a property value, which is already unescaped.
+     */
+    static ExpansionTemplate compile(String source, boolean escapes) {
+        ArrayDeque<Builder> open = new ArrayDeque<>();
+        Builder current = new Builder();
+        int length = source.length();
+        for (int i = 0; i < length; i++) {
+            char c = source.charAt(i);
+            if (escapes && c == ESCAPE && i + 1 < length) {
+                current.literal.append(c).append(source.charAt(++i));
+            } else if (c == OPEN.charAt(0) && source.startsWith(OPEN, i)) {
+                open.push(current);
+                current = new Builder();
+                i++;
+            } else if (c == CLOSE && !open.isEmpty()) {
+                Reference reference = new Reference(current.build());
+                current = open.pop();
+                current.add(reference);
+            } else {
+                current.literal.append(c);
+            }
+        }
+        while (!open.isEmpty()) {
+            // An unclosed "${" is literal, though any references after it are still expanded.
+            Builder unclosed = current;
+            current = open.pop();
+            current.literal.append(OPEN);
+            current.addAll(unclosed);
+        }
+        return current.build();
+    }
+
+    boolean hasReferences() {
+        return hasReferences;
+    }
+
+    /**
+     * Renders the template, replacing each reference with a resolved value.
+     *
+     * @param resolver     returns the value of a property name; it may throw, but must not return null.
+     * @param escapeValues true to escape each value for a property file, as for a template compiled from a line.
+     */
+    String render(Function<String, String> resolver, boolean escapeValues) {
+        if (!hasReferences) {
+            return segments.length == 0 ? "" : (String) segments[0];
+        }
+        StringBuilder result = new StringBuilder();
+        for (Object segment : segments) {
+            if (segment instanceof String) {
+                result.append((String) segment);
+                continue;
+            }
+            String value = resolver.apply(((Reference) segment).name.render(resolver, false));
+            if (escapeValues) {
+                appendEscaped(result, value);
+            } else {
+                result.append(value);
+            }
+        }
+        return result.toString();
+    }
+
+    /**
+     * Appends a value escaped for a property file, so that {@code Properties.load()} restores it unchanged.
+     */
+    private static void appendEscaped(StringBuilder to, String value) {
+        for (int i = 0; i < value.length(); i++) {
+            char c = value.charAt(i);
+            if (c == ESCAPE || c == '#') {
+                to.append(ESCAPE).append(c);
+            } else if (c == '\n') {
+                to.append("\\n");
+            } else {
+                to.append(c);
+            }
+        }
+    }
+
+    private static final class Reference {
+        private final ExpansionTemplate name;
+
+        Reference(ExpansionTemplate name) {
+            this.name = name;
+        }
+    }
+
+    private static final class Builder {
+        private final List<Object> segments = new ArrayList<>();
+        private final StringBuilder literal = new StringBuilder();
+
+        void add(Reference reference) {
+            flushLiteral();
+            segments.add(reference);
+        }
+
+        void addAll(Builder other) {
+            other.flushLiteral();
+            for (Object segment : other.segments) {
+                if (segment instanceof String) {
+                    literal.append((String) segment);
+                } else {
+                    add((Reference) segment);
+                }
+            }
+        }
+
+        ExpansionTemplate build() {
+            flushLiteral();
+            return new ExpansionTemplate(segments);
+        }
+
+        private void flushLiteral() {
+            if (literal.length() > 0) {
+                segments.add(literal.toString());
+                literal.setLength(0);
+            }
+        }
+    }
+}
@@ -0,0 +1,339 @@
+package com.krs.utils;
+
+import com.google.common.base.Preconditions;
+
+import javax.annotation.concurrent.NotThreadSafe;
+import javax.annotation.concurrent.ThreadSafe;
+import java.math.BigInteger;
+import java.util.Arrays;
+import java.util.Formattable;
+import java.util.Formatter;
+import java.util.IllegalFormatConversionException;
+import java.util.MissingFormatArgumentException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * A precompiled format string in the form expected by String.format(). Where String.format() parses the pattern and
+ * creates a {@code Formatter} on every call, a template is parsed once, cached by {@link #of(String)}, and rendered
+ * by appending its literal text and arguments straight to a {@code StringBuilder}.<p/>
+ * <p>
+ * Arguments are passed through a per-thread, reusable {@link Arguments}, whose primitive overloads avoid boxing and
+ * varargs arrays, so rendering into a reused builder allocates nothing:
+ * <pre><tt>
+ *      MessageTemplate.of("Processed %d of %d items in %s").args().arg(done).arg(total).arg(name).appendTo(builder);
+ * </tt></pre>
+ * <p>
+ * The specifiers {@code %s}, {@code %d}, {@code %%} and {@code %n} are rendered directly, and behave as they do for
+ * String.format(), including its exceptions for a missing argument or a {@code %d} given a non-integral one. A
+ * pattern with any other specifier, or with flags, width or precision, is rendered by a {@code Formatter}, exactly
+ * but without the savings.<p/>
+ * <p>
+ * This class is immutable and thread safe.
+ *
+ * @author krs
+ */
+@ThreadSafe
+public final class MessageTemplate {
+    private static final int MAX_CACHED = 1024;
+    private static final ConcurrentMap<String, MessageTemplate> CACHE = new ConcurrentHashMap<>();
+    private static final ThreadLocal<Arguments> ARGUMENTS = ThreadLocal.withInitial(Arguments::new);
+
+    private final String pattern;
+    // The literal text around each specifier; there is one more literal than there are specifiers.
+    private final String[] literals;
+    private final char[] conversions;
+    private final boolean formatted;
+
+    private MessageTemplate(String pattern) {
+        this.pattern = pattern;
+
+        StringBuilder literal = new StringBuilder();
+        String[] parsedLiterals = new String[8];
+        char[] parsedConversions = new char[8];
+        int count = 0;
+        boolean complex = false;
+        for (int i = 0; i < pattern.length() && !complex; i++) {
+            char c = pattern.charAt(i);
+            if (c != '%') {
+                literal.append(c);
+                continue;
+            }
+            char conversion = i + 1 < pattern.length() ? pattern.charAt(++i) : 0;
+            if (conversion == '%') {
+                literal.append('%');
+            } else if (conversion == 'n') {
+                literal.append(System.lineSeparator());
+            } else if (conversion == 's' || conversion == 'd') {
+                if (count == parsedConversions.length) {
+                    parsedLiterals = Arrays.copyOf(parsedLiterals, count * 2);
+                    parsedConversions = Arrays.copyOf(parsedConversions, count * 2);
+                }
+                parsedLiterals[count] = literal.toString();
+                parsedConversions[count++] = conversion;
+                literal.setLength(0);
+            } else {
+                complex = true;
+            }
+        }
+        parsedLiterals[count] = literal.toString();
+
+        this.formatted = complex;
+        this.literals = complex ? new String[0] : Arrays.copyOf(parsedLiterals, count + 1);
+        this.conversions = complex ? new char[0] : Arrays.copyOf(parsedConversions, count);
+    }
+
+    /**
+     * Returns the template for a pattern, compiling it on first use. Up to 1024 patterns are cached; patterns beyond
+     * that are compiled on every call, so building patterns dynamically cannot grow the cache without bound.
+     *
+     * @param pattern a format string, in the form expected by String.format().
+     */
+    public static MessageTemplate of(String pattern) {
+        Preconditions.checkNotNull(pattern);
+        MessageTemplate template = CACHE.get(pattern);
+        if (template == null) {
+            template = new MessageTemplate(pattern);
+            if (CACHE.size() < MAX_CACHED) {
+                CACHE.putIfAbsent(pattern, template);
+            }
+        }
+        return template;
+    }
+
+    public String getPattern() {
+        return pattern;
+    }
+
+    /**
+     * Returns this thread's reusable argument list, emptied and bound to this template. The list must be rendered
+     * before this thread next invokes {@code args()} on any template; if an argument's own {@code toString()} does so
+     * while the list is being rendered, it is given a new list instead.
+     */
+    public Arguments args() {
+        Arguments arguments = ARGUMENTS.get();
+        if (arguments.template != null) {
+            // Still in use by a render further up this thread's stack.
+            arguments = new Arguments();
+        }
+        arguments.template = this;
+        return arguments;
+    }
+
+    /**
+     * Returns this thread's reusable argument list, bound to this template and holding the specified arguments.
+     *
+     * @see #args()
+     */
+    public Arguments args(Object... values) {
+        Arguments arguments = args();
+        for (Object value : values) {
+            arguments.arg(value);
+        }
+        return arguments;
+    }
+
+    /**
+     * Renders the template with the specified arguments, as {@code String.format(pattern, args)} would.
+     */
+    public String format(Object... values) {
+        return args(values).toString();
+    }
+
+    @Override
+    public String toString() {
+        return pattern;
+    }
+
+    /**
+     * The arguments of one rendering of a template, kept unboxed. An instance belongs to the thread that obtained it
+     * from {@link MessageTemplate#args()}, and is reused by that thread once rendered; rendering also releases the
+     * references it holds, so it may be rendered only once.
+     */
+    @NotThreadSafe
+    public static final class Arguments {
+        private static final byte LONG = 0;
+        private static final byte DOUBLE = 1;
+        private static final byte BOOLEAN = 2;
+        private static final byte CHAR = 3;
+        private static final byte OBJECT = 4;
+
+        private MessageTemplate template;
+        private int count;
+        private byte[] kinds = new byte[8];
+        private long[] longs = new long[8];
+        private double[] doubles = new double[8];
+        private Object[] objects = new Object[8];
+
+        private Arguments() {
+        }
+
+        public Arguments arg(long value) {
+            longs[next(LONG)] = value;
+            return this;
+        }
+
+        public Arguments arg(double value) {
+            doubles[next(DOUBLE)] = value;
+            return this;
+        }
+
+        public Arguments arg(boolean value) {
+            longs[next(BOOLEAN)] = value ? 1 : 0;
+            return this;
+        }
+
+        public Arguments arg(char value) {
+            longs[next(CHAR)] = value;
+            return this;
+        }
+
+        public Arguments arg(Object value) {
+            objects[next(OBJECT)] = value;
+            return this;
+        }
+
+        /**
+         * Renders the template with these arguments onto the end of a builder, then releases the arguments.
+         *
+         * @return the builder.
+         * @throws java.util.IllegalFormatException as String.format() does; the builder may then hold part of the
+         *                                          message.
+         */
+        public StringBuilder appendTo(StringBuilder to) {
+            Preconditions.checkState(template != null, "Arguments have already been rendered.");
+            try {
+                if (template.formatted) {
+                    new Formatter(to).format(template.pattern, boxed());
+                } else {
+                    render(to);
+                }
+                return to;
+            } finally {
+                discard();
+            }
+        }
+
+        /**
+         * Releases these arguments without rendering them, as when a record is dropped, so this thread can reuse
+         * them.
+         */
+        public void discard() {
+            Arrays.fill(objects, 0, count, null);
+            count = 0;
+            template = null;
+        }
+
+        /**
+         * Renders the template with these arguments into a new String, then releases the arguments.
+         */
+        @Override
+        public String toString() {
+            return appendTo(new StringBuilder()).toString();
+        }
+
+        private void render(StringBuilder to) {
+            String[] literals = template.literals;
+            char[] conversions = template.conversions;
+            for (int i = 0; i < conversions.length; i++) {
+                to.append(literals[i]);
+                if (i >= count) {
+                    throw new MissingFormatArgumentException("%" + conversions[i]);
+                }
+                if (conversions[i] == 'd') {
+                    appendInteger(to, i);
+                } else {
+                    appendString(to, i);
+                }
+            }
+            to.append(literals[conversions.length]);
+        }
+
+        private void appendInteger(StringBuilder to, int i) {
+            switch (kinds[i]) {
+                case LONG:
+                    to.append(longs[i]);
+                    break;
+                case OBJECT:
+                    Object value = objects[i];
+                    if (value == null) {
+                        to.append("null");
+                    } else if (value instanceof Long || value instanceof Integer || value instanceof Short
+                            || value instanceof Byte) {
+                        to.append(((Number) value).longValue());
+                    } else if (value instanceof BigInteger) {
+                        to.append(value);
+                    } else {
+                        throw new IllegalFormatConversionException('d', value.getClass());
+                    }
+                    break;
+                case DOUBLE:
+                    throw new IllegalFormatConversionException('d', Double.class);
+                case BOOLEAN:
+                    throw new IllegalFormatConversionException('d', Boolean.class);
+                default:
+                    throw new IllegalFormatConversionException('d', Character.class);
+            }
+        }
+
+        private void appendString(StringBuilder to, int i) {
+            switch (kinds[i]) {
+                case LONG:
+                    to.append(longs[i]);
+                    break;
+                case DOUBLE:
+                    to.append(doubles[i]);
+                    break;
+                case BOOLEAN:
+                    to.append(longs[i] != 0);
+                    break;
+                case CHAR:
+                    to.append((char) longs[i]);
+                    break;
+                default:
+                    Object value = objects[i];
+                    if (value instanceof Formattable) {
+                        new Formatter(to).format("%s", value);
+                    } else {
+                        to.append(value);
+                    }
+            }
+        }
+
+        private Object[] boxed() {
+            Object[] values = new Object[count];
+            for (int i = 0; i < count; i++) {
+                switch (kinds[i]) {
+                    case LONG:
+                        values[i] = longs[i];
+                        break;
+                    case DOUBLE:
+                        values[i] = doubles[i];
+                        break;
+                    case BOOLEAN:
+                        values[i] = longs[i] != 0;
+                        break;
+                    case CHAR:
+                        values[i] = (char) longs[i];
+                        break;
+                    default:
+                        values[i] = objects[i];
+                }
+            }
+            return values;
+        }
+
+        private int next(byte kind) {
+            Preconditions.checkState(template != null, "Arguments have already been rendered.");
+            if (count == kinds.length) {
+                int size = count * 2;
+                kinds = Arrays.copyOf(kinds, size);
+                longs = Arrays.copyOf(longs, size);
+                doubles = Arrays.copyOf(doubles, size);
+                objects = Arrays.copyOf(objects, size);
+            }
+            kinds[count] = kind;
+            return count++;
+        }
+    }
+}
@@ -4,19 +4,24 @@ import com.google.common.base.Preconditions;
 import com.google.common.base.Strings;
 
 import java.io.*;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
 import java.nio.charset.StandardCharsets;
 import java.nio.file.Files;
+import java.net.URISyntaxException;
+import java.net.URL;
 import java.nio.file.Path;
 import java.util.*;
-import java.util.regex.Matcher;
-import java.util.regex.Pattern;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.function.Function;
 
 
 /**
  * <p>
  * This class wraps the standard Java property file syntax defined by the java.util.Properties.load() method. During
- * import of the property file, each line is first pre-processed for expansions and (#) directives and then passed
- * verbatim to the java.util.Properties.load() method. </p>
+ * import of the property file, each line is first pre-processed for expansions and (#) directives and then parsed
+ * exactly as the java.util.Properties.load() method would parse it. </p>
  * <p>
  * <p>Syntax: <b>${prop}</b> Any instance of ${prop} will be
  * expanded and replaced with the value of the property prop as defined earlier in the file or, depending on the
@@ -61,13 +66,7 @@ import java.util.regex.Pattern;
 public final class PropertyImporter {
     private static final String COMMENT_CHAR = "#";
     private static final String DIRECTIVE = COMMENT_CHAR;
-    private static final String LINE_CONTINUATION_CHAR = "\\";
-    private static final String EXPANSION_OPEN = "${";
-    private static final String EXPANSION_CLOSE = "}";
-    private static final String ESCAPE_CHAR = "\\";
-    private static final String[] ESCAPE_STRINGS = {ESCAPE_CHAR, COMMENT_CHAR};
     private static final String NEW_LINE = System.lineSeparator();
-    private static final Map<Keyword, Pattern> DIRECTIVE_CAPTURE_PATTERNS = new HashMap<>();
     private static final int DEBUG_LEVEL_1 = 1;
     private static final int DEBUG_LEVEL_2 = 2;
     private static final int DEBUG_LEVEL_3 = 3;
@@ -77,6 +76,18 @@ public final class PropertyImporter {
     private final ArrayDeque<Location> contextStack = new ArrayDeque<>();
     private int debugLevel = 0;
 
+    // Compiled property values, keyed by value, and expanded values, keyed by property name. Expanded values are
+    // discarded whenever a line redefines a property that was already visible.
+    private final Map<String, ExpansionTemplate> valueTemplates = new HashMap<>();
+    private final Map<String, String> expandedValues = new HashMap<>();
+    private final Set<String> expanding = new HashSet<>();
+    private final Function<String, String> resolver = this::expandProperty;
+    // Records what the import depends on, when importing through a snapshot file.
+    private PropertySnapshot snapshot;
+    // Snapshots of the environment and system properties, taken on first use so each import sees one view of them.
+    private Map<String, String> env;
+    private Map<String, String> sys;
+
     private PropertyImporter(Properties sourceProps) {
         this.sourceProps = sourceProps;
         addPredefProps(this.sourceProps);
@@ -108,106 +119,98 @@ public final class PropertyImporter {
 
         PropertyImporter importer = new PropertyImporter(sourceProps);
         importer.importFile(filePath, false);
-
-        if (importer.debugLevel == DEBUG_LEVEL_1) {
-            dumpProps(importer.props);
-        }
-
-        // Incorporate the imported properties into the target table.
-        resultProps.putAll(importer.props);
-
-        if (importer.debugLevel >= DEBUG_LEVEL_2) {
-            dumpProps(resultProps);
-        }
+        complete(importer.props, importer.debugLevel, resultProps);
     }
 
-    private static boolean isComment(final String line) {
-        return line.startsWith(COMMENT_CHAR) && Keyword.whichDirective(line) == null;
-    }
+    /**
+     * Imports the properties in a file as {@link #importProperties(String, Properties, Properties)} does, but through
+     * a snapshot file holding the fully resolved result. If the snapshot exists, and no file, classpath resource,
+     * environment variable, system property or source property the import depended on has changed since it was
+     * written, its properties are used and the file is not read; otherwise the file is imported and the snapshot
+     * rewritten. This saves the cost of parsing and expanding a deep tree of #include'd files on every start.
+     *
+     * @param snapshotPath the snapshot file, created if it does not exist. A snapshot that cannot be written is
+     *                     reported to the console, and the import still succeeds.
+     */
+    public static void importProperties(final String filePath, final Properties sourceProps,
+                                        final Properties resultProps, final String snapshotPath) {
+        Preconditions.checkNotNull(sourceProps);
+        Preconditions.checkNotNull(resultProps);
+        Preconditions.checkArgument(!Strings.isNullOrEmpty(filePath), "filePath cannot be null or empty");
+        Preconditions.checkArgument(!Strings.isNullOrEmpty(snapshotPath), "snapshotPath cannot be null or empty");
 
-    private static boolean isContinuableLine(final String line) {
-        return !line.startsWith(COMMENT_CHAR);
-    }
+        Path path = new File(snapshotPath).toPath();
+        PropertySnapshot current = readCurrentSnapshot(filePath, sourceProps, path);
+        if (current != null) {
+            complete(current.getProperties(), current.getDebugLevel(), resultProps);
+            return;
+        }
 
-    private static boolean isLineContinued(final String line) {
-        return isContinuableLine(line) && line.endsWith(LINE_CONTINUATION_CHAR);
+        PropertyImporter importer = new PropertyImporter(sourceProps);
+        importer.snapshot = new PropertySnapshot(new File(filePath).getAbsolutePath());
+        importer.importFile(filePath, false);
+        importer.snapshot.setResult(importer.props, importer.debugLevel);
+        try {
+            importer.snapshot.write(path);
+        } catch (IOException e) {
+            Env.consoleErr("Exception occurred writing property snapshot " + snapshotPath);
+            Env.printStackTrace(e);
+        }
+        complete(importer.props, importer.debugLevel, resultProps);
     }
 
-    private static boolean isEscaped(final String source, final int index) {
-        // Return true if the character at source[index] is escaped. False otherwise.
-        // A character is escaped if it is procceded by an unescaped escape char.
-        int idx = index;
-        if (idx >= source.length()) {
-            return true;
+    /**
+     * Returns the snapshot of a file's import, or null if there is none or it is out of date.
+     */
+    static PropertySnapshot readCurrentSnapshot(final String filePath, final Properties sourceProps,
+                                                final Path snapshotPath) {
+        PropertySnapshot snapshot;
+        try {
+            snapshot = PropertySnapshot.read(snapshotPath);
+        } catch (IOException e) {
+            return null;
         }
-        if (idx <= 0) {
-            return true;
+        if (snapshot == null || !new File(filePath).getAbsolutePath().equals(snapshot.getSource())) {
+            return null;
         }
-        // inspect the previous character.
-        idx--;
-        return (source.charAt(idx) != ESCAPE_CHAR.charAt(0) || !isEscaped(source, idx));
+        // An importer that has imported nothing looks referenced properties up as the snapshot's import did.
+        PropertyImporter lookup = new PropertyImporter(sourceProps);
+        return snapshot.isCurrent(lookup::lookupProperty) ? snapshot : null;
     }
 
-    private static int lastUnescapedIndexOf(final String source, final int fromIndex) {
-        int index = fromIndex;
-
-        while (index >= 0) {
-            index = source.lastIndexOf(PropertyImporter.EXPANSION_OPEN, index);
-            if (isEscaped(source, index)) {
-                return index;
-            }
-            index--;
+    private static void complete(final Properties imported, final int debugLevel, final Properties resultProps) {
+        if (debugLevel == DEBUG_LEVEL_1) {
+            dumpProps(imported);
         }
-        return -1;
-    }
-
-    private static int unescapedIndexOf(final String source) {
-        int index = 0;
 
-        while (index < source.length()) {
-            index = source.indexOf(PropertyImporter.EXPANSION_CLOSE, index);
-            if (index == -1) {
-                break;
-            }
-            if (isEscaped(source, index)) {
-                return index;
-            }
-            index++;
-        }
-        return -1;
-    }
+        // Incorporate the imported properties into the target table.
+        resultProps.putAll(imported);
 
-    private static String escape(final String source) {
-        String src = source;
-        // Look for instances in 'source' of all strings that must be escaped, and prepend them with the escape char.
-        for (String s : ESCAPE_STRINGS) {
-            src = src.replace(s, ESCAPE_CHAR + s);
+        if (debugLevel >= DEBUG_LEVEL_2) {
+            dumpProps(resultProps);
         }
-
-        // Special case, need to replace crlf with its escape sequence: \n
-        src = src.replace("\n", "\\n");
-        return src;
     }
 
     private static String getDirectiveArgument(final String line, final Keyword keyword) {
-        // Directives have the syntax: "#keyword argument"
-        // Use a regular expression to capture the argument given this syntax. Cache the regular expressions
-        // so we don't have to recompile them for each call.
-
-        Pattern pattern = DIRECTIVE_CAPTURE_PATTERNS.get(keyword);
-        if (pattern == null) {
-            String regex = DIRECTIVE + keyword.toString() + "[ \\t]+([^ \\t\\n\\r\\f]+)";
-            pattern = Pattern.compile(regex);
-            DIRECTIVE_CAPTURE_PATTERNS.put(keyword, pattern);
+        // Directives have the syntax: "#keyword argument", where the argument runs to the next white space.
+        int start = DIRECTIVE.length() + keyword.toString().length();
+        int end = start;
+        while (end < line.length() && (line.charAt(end) == ' ' || line.charAt(end) == '\t')) {
+            end++;
         }
-
-        Matcher matcher = pattern.matcher(line);
-        if (!matcher.find()) {
+        if (end == start || end == line.length()) {
             return null;
         }
 
-        int directiveArgumentGroup = 1;
-        return matcher.group(directiveArgumentGroup);
+        start = end;
+        while (end < line.length() && !isArgumentDelimiter(line.charAt(end))) {
+            end++;
+        }
+        return line.substring(start, end);
+    }
+
+    private static boolean isArgumentDelimiter(final char c) {
+        return c == ' ' || c == '\t' || c == '\n' || c == '\r' || c == '\f';
     }
 
     private static void dumpProps(final Properties props) {
@@ -266,16 +269,31 @@ public final class PropertyImporter {
     }
 
     private String lookupProperty(final String key) {
+        String result = findProperty(key);
+        if (snapshot != null && (result == null || props.getProperty(key) == null)) {
+            // The value comes from outside the imported files, so a snapshot must check it is still the same.
+            snapshot.addReference(key, result);
+        }
+        return result;
+    }
+
+    private String findProperty(final String key) {
         if (key.startsWith("env.")) {
             String envVarName = key.substring("env.".length(), key.length());
-            String result = System.getenv(envVarName);
+            if (env == null) {
+                env = System.getenv();
+            }
+            String result = env.get(envVarName);
             if (result == null && sourceProps != null) {
                 result = sourceProps.getProperty(envVarName);
             }
             return result;
         } else if (key.startsWith("sys.")) {
             String envVarName = key.substring("sys.".length(), key.length());
-            String result = System.getProperty(envVarName);
+            if (sys == null) {
+                sys = snapshot(System.getProperties());
+            }
+            String result = sys.get(envVarName);
             if (result == null && sourceProps != null) {
                 result = sourceProps.getProperty(envVarName);
             }
@@ -289,57 +307,75 @@ public final class PropertyImporter {
         }
     }
 
-    private String processExpansions(final String line) {
-        String expanding = line;
-        int i = 0;
-        writeDebug(DEBUG_LEVEL_3, i++ + "> " + expanding);
+    private static Map<String, String> snapshot(final Properties properties) {
+        Map<String, String> copy = new HashMap<>();
+        for (String name : properties.stringPropertyNames()) {
+            copy.put(name, properties.getProperty(name));
+        }
+        return copy;
+    }
+
+    /**
+     * Returns the value of a property with its own expansions, if any, expanded.
+     */
+    private String expandProperty(final String name) {
+        String expanded = expandedValues.get(name);
+        if (expanded != null) {
+            return expanded;
+        }
 
+        String value = lookupProperty(name);
+        if (value == null) {
+            throw createIllegalStateException("Property does not exist: " + name);
+        }
+        ExpansionTemplate template = valueTemplates.computeIfAbsent(value, v -> ExpansionTemplate.compile(v, false));
+        if (template.hasReferences()) {
+            if (!expanding.add(name)) {
+                throw createIllegalStateException("Property refers to itself: " + name);
+            }
+            try {
+                value = template.render(resolver, false);
+            } finally {
+                expanding.remove(name);
+            }
+        }
+        expandedValues.put(name, value);
+        return value;
+    }
+
+    private String processExpansions(final String line) {
         // An expansion is defined as the sub-string "${name}", and is replaced by the value of property 'name'.
         // Expansions may be nested:
         // x.y=10 : index=y : value=${x.${index}} -> value=${x.y} -> value=10
-        //ALGO:
-        // Process all expansions in a depth-first, left-to-right order. Find the first '}' token in the
-        // string. From that index, look backwards for the first '${' token. Expand the value and repeat until no
-        // more expansions can be found.
         //
-        // Note that expansion tokens must be ignored if escaped.
-
-        while (true) {
-            int endIndex = unescapedIndexOf(expanding);
-            int startIndex = lastUnescapedIndexOf(expanding, endIndex);
-
-            if (startIndex == -1 || endIndex == -1) {
-                // Expansion cannot be found, so done.
-                break;
-            }
-
-            String propertyName = expanding.substring(startIndex + EXPANSION_OPEN.length(), endIndex);
-            String lookup = lookupProperty(propertyName);
-
-            if (lookup == null) {
-                throw createIllegalStateException("Property does not exist: " + propertyName);
-            } else {
-                // The line we are processing has been read from the property file and so will have certain
-                // characters escaped according to Java's property file syntax. However, expanded values come
-                // from the property table and are not escaped. Therefore, we need to escape the expansion
-                // before inserting it into the line.
-                //
-                lookup = escape(lookup);
-            }
+        // The line is compiled once into literal text and references, and each reference is replaced by the
+        // property's value, itself expanded once and remembered. The line we are processing has been read from the
+        // property file and so will have certain characters escaped according to Java's property file syntax.
+        // However, expanded values come from the property table and are not escaped, so they are escaped as they
+        // are inserted into the line.
+        ExpansionTemplate template = ExpansionTemplate.compile(line, true);
+        if (!template.hasReferences()) {
+            return line;
+        }
 
-            expanding = expanding.substring(0, startIndex) +
-                    lookup +
-                    expanding.substring(endIndex + EXPANSION_CLOSE.length());
+        writeDebug(DEBUG_LEVEL_3, "0> " + line);
+        String expanded = template.render(resolver, true);
+        writeDebug(DEBUG_LEVEL_3, "1> " + expanded);
+        return expanded;
+    }
 
-            writeDebug(DEBUG_LEVEL_3, i++ + "> " + expanding);
+    private void importLine(final String line) {
+        if (!Strings.isNullOrEmpty(line)) {
+            PropertyLexer.parse(line, this::importProperty);
         }
-
-        return expanding;
     }
 
-    private void importLine(final String line) throws IOException {
-        if (!Strings.isNullOrEmpty(line))
-            props.load(new StringReader(line));
+    private void importProperty(final String key, final String value) {
+        if (props.getProperty(key) != null || (sourceProps != null && sourceProps.getProperty(key) != null)) {
+            // A property that may already have been expanded is changing, along with anything expanded from it.
+            expandedValues.clear();
+        }
+        props.put(key, value);
     }
 
     private void processDirective(final String line, final Keyword keyword) //NOSONAR -  MethodCyclomaticComplexity
@@ -392,46 +428,20 @@ public final class PropertyImporter {
         }
     }
 
-    private String readLogicalLine(final BufferedReader inputStream) throws IOException {
-        // Java's property file syntax allows line continuation. This function reads line-by-line
-        // from the input stream, but will batch together lines that are continued.
-        Preconditions.checkNotNull(inputStream);
-
-        if (!inputStream.ready()) {
-            return null;
-        }
-
-        StringBuilder result = new StringBuilder("");
-        while (inputStream.ready()) {
-            // Increment the current line number.
-            contextStack.peek().nextLineNum();
-
-            String oneLine = inputStream.readLine();
-            if (oneLine == null) {
-                return null;
-            }
-            // Remove leading/trailing whitespace. makes analysis easier.
-            result.append(oneLine.trim());
-            if (!isLineContinued(oneLine)) {
-                break;
-            }
-            // Break the line to separate it from the next one.
-            result.append("\n");
-        }
-
-        return result.toString();
-    }
-
-    private void importFromReader(final BufferedReader reader) throws IOException {
+    private void importLines(final PropertyLexer.LogicalLines lines) throws IOException {
+        // Java's property file syntax allows line continuation, so the lexer batches together lines that are
+        // continued.
         String line;
         Keyword keyword;
 
-        while ((line = readLogicalLine(reader)) != null) {
+        for (int i = 0; i < lines.size(); i++) {
+            line = lines.line(i);
+            contextStack.peek().lineNumber = lines.lineNumber(i);
             keyword = Keyword.whichDirective(line);
-            if (isComment(line)) {
-                writeDebug(DEBUG_LEVEL_3, COMMENT_CHAR + line);
-            } else if (keyword != null) {
+            if (keyword != null) {
                 processDirective(line, keyword);
+            } else if (line.startsWith(COMMENT_CHAR)) {
+                writeDebug(DEBUG_LEVEL_3, COMMENT_CHAR + line);
             } else {
                 line = processExpansions(line);
 
@@ -441,51 +451,57 @@ public final class PropertyImporter {
         }
     }
 
+    private static CharBuffer decode(final byte[] content) {
+        // Malformed input is replaced, as an InputStreamReader would.
+        return StandardCharsets.UTF_8.decode(ByteBuffer.wrap(content));
+    }
+
     private void importFile(final String fileName, //NOSONAR -  MethodCyclomaticComplexity
                             final boolean ignoreFileNotFound) {
         try {
-            BufferedReader reader = null;
-
-            try {
-                if (fileName == null) {
-                    throw createIllegalStateException("import fileName is null");
-                }
+            if (fileName == null) {
+                throw createIllegalStateException("import fileName is null");
+            }
 
-                File file = new File(fileName);
+            File file = new File(fileName);
 
-                // If can't find the file, look in the directory of the file that #include'd this one.
-                if (!file.isFile() && !contextStack.isEmpty()) {
-                    writeDebug(DEBUG_LEVEL_2, String.format("Cannot find '%s'. Is directory executable?", file));
-                    file = new File(contextStack.peek().file.getParentFile(), file.getName());
+            // If can't find the file, look in the directory of the file that #include'd this one.
+            if (!file.isFile() && !contextStack.isEmpty() && contextStack.peek().file != null) {
+                writeDebug(DEBUG_LEVEL_2, String.format("Cannot find '%s'. Is directory executable?", file));
+                if (snapshot != null) {
+                    snapshot.addMissingFile(file);
                 }
+                file = new File(contextStack.peek().file.getParentFile(), file.getName());
+            }
 
-                writeDebug(DEBUG_LEVEL_2, COMMENT_CHAR + "loading: " + file.getCanonicalPath());
+            writeDebug(DEBUG_LEVEL_2, COMMENT_CHAR + "loading: " + file.getCanonicalPath());
 
-                if (!file.isFile()) {
-                    String notFoundMessage = COMMENT_CHAR + "cannot find file: " + file.getCanonicalPath();
-                    writeDebug(DEBUG_LEVEL_2, notFoundMessage);
+            if (!file.isFile()) {
+                String notFoundMessage = COMMENT_CHAR + "cannot find file: " + file.getCanonicalPath();
+                writeDebug(DEBUG_LEVEL_2, notFoundMessage);
 
-                    if (ignoreFileNotFound) {
-                        // Skip this file and keep going.
-                        return;
+                if (ignoreFileNotFound) {
+                    if (snapshot != null) {
+                        snapshot.addMissingFile(file);
                     }
-                    throw createIllegalStateException(notFoundMessage);
+                    // Skip this file and keep going.
+                    return;
                 }
+                throw createIllegalStateException(notFoundMessage);
+            }
 
-                if (!file.canRead()) {
-                    throw createIllegalStateException("cannot read file: " + file.getCanonicalPath());
-                }
+            if (!file.canRead()) {
+                throw createIllegalStateException("cannot read file: " + file.getCanonicalPath());
+            }
 
-                // Start importing the file.
-                contextStack.push(new Location(file));
-                reader = new BufferedReader(new InputStreamReader(new FileInputStream(file), StandardCharsets.UTF_8));
-                importFromReader(reader);
-                contextStack.pop();
-            } finally {
-                if (reader != null) {
-                    reader.close();
-                }
+            // Start importing the file.
+            byte[] content = Files.readAllBytes(file.toPath());
+            if (snapshot != null) {
+                snapshot.addFile(file, content);
             }
+            contextStack.push(new Location(file, null));
+            importLines(PropertyLexer.split(decode(content)));
+            contextStack.pop();
         } catch (FileNotFoundException e) {
             throw createIllegalStateException("File not found: ", e);
         } catch (IOException e) {
@@ -499,75 +515,31 @@ public final class PropertyImporter {
      * <p> <ol> <li>A config file referring to a claasspath config file, that classpath config file <b>MUST</b> must not
      * have any <i>realtive paths</i> only other classpath includes or full fle system path</li> <li>If the file
      * #includecp refers to does not exist then this is simply ignored</li> </ol> </p>
+     * <p> The resource is read straight from the classpath, and its lines are cached, so a resource included by many
+     * files, or on every import, is read and split only once. </p>
      */
-    private void importFileOnClasspath(final String fileOnClasspath)   //NOSONAR -  MethodCyclomaticComplexity
-    {
-        FileOutputStream tempFileStream = null;
-        InputStream classpathFileStream = null;
-        BufferedReader inputStream = null;
-        Path tempFilePath = null;
-        String fileName = fileOnClasspath.substring(fileOnClasspath.lastIndexOf('/') + 1);
-        try { //NOSONAR - false complaint cleaning up stream
-            tempFilePath = Files.createTempFile(fileName, null);
-            classpathFileStream = PropertyImporter.class.getResourceAsStream("/" + fileOnClasspath);
-
-            if (classpathFileStream == null) {
-                //can't find on the treacherous classpath
-                return; //NOSONAR - false complaint cleaning up stream
-            }
-            tempFileStream = new FileOutputStream(tempFilePath.toFile()); //NOSONAR - false complaint cleaning up stream
-            byte[] buffer = new byte[1024];  //NOSONAR - magic number
-            int n;
-            while (-1 != (n = classpathFileStream.read(buffer))) {
-                tempFileStream.write(buffer, 0, n);
-            }
-
-            File file = tempFilePath.toFile();
-
-            // If can't find the file, look in the directory of the file that #include'd this one.
-            if (!file.isFile() && !contextStack.isEmpty()) {
-                writeDebug(DEBUG_LEVEL_2, String.format("Cannot find '%s'. Is directory executable?", file));
-                file = new File(contextStack.peek().file.getParentFile(), file.getName());
-            }
-
-            writeDebug(DEBUG_LEVEL_2, COMMENT_CHAR + "loading: " + file.getCanonicalPath());
-
-            if (!file.isFile()) {
-                String notFoundMessage = COMMENT_CHAR + "cannot find file: " + file.getCanonicalPath();
-                writeDebug(DEBUG_LEVEL_2, notFoundMessage);
+    private void importFileOnClasspath(final String fileOnClasspath) {
+        URL url = PropertyImporter.class.getResource("/" + fileOnClasspath);
+        if (url == null) {
+            //can't find on the treacherous classpath
+            writeDebug(DEBUG_LEVEL_2, COMMENT_CHAR + "cannot find on classpath: " + fileOnClasspath);
+            if (snapshot != null) {
+                snapshot.addMissingResource(fileOnClasspath);
             }
+            return;
+        }
 
-            if (!file.canRead()) {
-                throw createIllegalStateException("cannot read file: " + file.getCanonicalPath());
+        writeDebug(DEBUG_LEVEL_2, COMMENT_CHAR + "loading: " + url);
+        try {
+            ClasspathResource resource = ClasspathResource.load(url);
+            if (snapshot != null) {
+                snapshot.addResource(fileOnClasspath, resource.size, resource.crc);
             }
-
-            // Start importing the file.
-            contextStack.push(new Location(file));
-            inputStream = new BufferedReader(new InputStreamReader(new FileInputStream(file), StandardCharsets.UTF_8));
-            importFromReader(inputStream);
+            contextStack.push(new Location(resource.file, url.toString()));
+            importLines(resource.lines);
             contextStack.pop();
-        } catch (FileNotFoundException e) {
-            throw createIllegalStateException("File not found: ", e);
         } catch (IOException e) {
             throw createIllegalStateException("IO exception: ", e);
-        } finally {
-            try {
-                if (inputStream != null) {
-                    inputStream.close();
-                }
-                if (tempFileStream != null) {
-                    tempFileStream.close();
-                }
-                if (classpathFileStream != null) {
-                    classpathFileStream.close();
-                }
-                if (tempFilePath != null && !tempFilePath.toFile().delete()) {
-                    Env.consoleOut(tempFilePath.toString());
-                }
-            } catch (IOException e) {
-                Env.consoleErr("Exception occurred cleaning up after property file import");
-                Env.printStackTrace(e);
-            }
         }
     }
 
@@ -593,7 +565,15 @@ public final class PropertyImporter {
         }
 
         public static boolean isDirective(final Keyword k, final String line) {
-            return line.matches(String.format("^%s%s\\b.*", DIRECTIVE, k.toString()));
+            // The keyword must follow the directive character, and end at a word boundary.
+            int end = DIRECTIVE.length() + k.description.length();
+            return line.startsWith(DIRECTIVE)
+                    && line.startsWith(k.description, DIRECTIVE.length())
+                    && (end == line.length() || !isWordChar(line.charAt(end)));
+        }
+
+        private static boolean isWordChar(final char c) {
+            return (c >= 'a' && c <= 'z') || (c >= 'A' && c <= 'Z') || (c >= '0' && c <= '9') || c == '_';
         }
 
         @Override
@@ -603,22 +583,24 @@ public final class PropertyImporter {
     }
 
     private static final class Location {
-        // An object to represent an import location specified by file and line number.
+        // An object to represent an import location specified by file and line number. A classpath resource is
+        // described by its URL, and has a file only if it is not in a jar.
         private final File file;
+        private final String description;
         private int lineNumber;
 
-        public Location(final File file) {
+        public Location(final File file, final String description) {
             this.file = file;
+            this.description = description;
             lineNumber = 0;
         }
 
-        int nextLineNum() {
-            return lineNumber++;
-        }
 
         public String toString() {
             String fileName = "unknown";
-            if (file != null) {
+            if (description != null) {
+                fileName = description;
+            } else if (file != null) {
                 try {
                     fileName = file.getCanonicalPath();
                 } catch (IOException e) {
@@ -628,5 +610,75 @@ public final class PropertyImporter {
             return fileName + ":" + lineNumber;
         }
     }
-}
 
+    /**
+     * A classpath resource, split into logical lines. Resources are cached by URL, since a resource in a jar cannot
+     * change while the jar is on the classpath; one in a directory is read again if its size or modification time
+     * changes.
+     */
+    private static final class ClasspathResource {
+        private static final ConcurrentMap<String, ClasspathResource> CACHE = new ConcurrentHashMap<>();
+
+        private final File file;
+        private final long lastModified;
+        private final long size;
+        private final long crc;
+        private final PropertyLexer.LogicalLines lines;
+
+        private ClasspathResource(File file, long lastModified, byte[] content) {
+            this.file = file;
+            this.lastModified = lastModified;
+            this.size = content.length;
+            this.crc = PropertySnapshot.crc(content);
+            this.lines = PropertyLexer.split(decode(content));
+        }
+
+        static ClasspathResource load(final URL url) throws IOException {
+            String key = url.toExternalForm();
+            File file = toFile(url);
+            ClasspathResource resource = CACHE.get(key);
+            if (resource != null && (file == null
+                    || (file.lastModified() == resource.lastModified && file.length() == resource.size))) {
+                return resource;
+            }
+
+            // The modification time is taken first, so a change made while reading is seen next time.
+            long lastModified = file == null ? 0 : file.lastModified();
+            byte[] content;
+            if (file != null) {
+                content = Files.readAllBytes(file.toPath());
+            } else {
+                try (InputStream in = url.openStream()) {
+                    content = readFully(in);
+                }
+            }
+            resource = new ClasspathResource(file, lastModified, content);
+            CACHE.put(key, resource);
+            return resource;
+        }
+
+        private static File toFile(final URL url) {
+            if (!"file".equals(url.getProtocol())) {
+                return null;
+            }
+            try {
+                return new File(url.toURI());
+            } catch (URISyntaxException | IllegalArgumentException e) {
+                return null;
+            }
+        }
+
+        private static byte[] readFully(final InputStream in) throws IOException {
+            byte[] buffer = new byte[8192];
+            int length = 0;
+            int n;
+            while ((n = in.read(buffer, length, buffer.length - length)) != -1) {
+                length += n;
+                if (length == buffer.length) {
+                    buffer = Arrays.copyOf(buffer, length * 2);
+                }
+            }
+            return Arrays.copyOf(buffer, length);
+        }
+    }
+}
@@ -0,0 +1,275 @@
+package com.krs.utils;
+
+import javax.annotation.concurrent.Immutable;
+import javax.annotation.concurrent.NotThreadSafe;
+import java.nio.CharBuffer;
+import java.util.Arrays;
+import java.util.function.BiConsumer;
+
+/**
+ * The lexer behind {@link PropertyImporter}. It reads the logical lines of a property file from a {@code CharBuffer}
+ * holding the whole file, and parses key/value pairs by the rules of {@code Properties.load()}, using only character
+ * checks: no regular expressions, readers or intermediate {@code Properties}.<p/>
+ * <p>
+ * A logical line is one physical line, trimmed, or several when each but the last ends in a backslash and does not
+ * start with the comment character; the trimmed physical lines are then joined by "\n", so the backslash-newline
+ * continuation is left for {@link #parse(CharSequence, BiConsumer)} to apply after expansions are processed.<p/>
+ * <p>
+ * This class is not thread safe.
+ *
+ * @author krs
+ */
+@NotThreadSafe
+final class PropertyLexer {
+    private static final char COMMENT = '#';
+    private static final char ALT_COMMENT = '!';
+    private static final char ESCAPE = '\\';
+
+    private final CharBuffer chars;
+    private final StringBuilder logical = new StringBuilder();
+    private int lineNumber;
+
+    PropertyLexer(CharBuffer chars) {
+        this.chars = chars;
+    }
+
+    /**
+     * Returns the number of physical lines read so far.
+     */
+    int getLineNumber() {
+        return lineNumber;
+    }
+
+    /**
+     * Returns the next logical line, or null at the end of the buffer.
+     */
+    String nextLogicalLine() {
+        if (!chars.hasRemaining()) {
+            return null;
+        }
+        logical.setLength(0);
+        while (chars.hasRemaining()) {
+            lineNumber++;
+            int start = chars.position();
+            int end = endOfLine(start);
+            appendTrimmed(start, end);
+            boolean continued = end > start && chars.get(start) != COMMENT && chars.get(end - 1) == ESCAPE;
+            if (!continued) {
+                break;
+            }
+            // Break the line to separate it from the next one.
+            logical.append('\n');
+        }
+        return logical.toString();
+    }
+
+    /**
+     * Reads every logical line of a buffer.
+     */
+    static LogicalLines split(CharBuffer chars) {
+        PropertyLexer lexer = new PropertyLexer(chars);
+        String[] lines = new String[16];
+        int[] lineNumbers = new int[16];
+        int count = 0;
+        for (String line = lexer.nextLogicalLine(); line != null; line = lexer.nextLogicalLine()) {
+            if (count == lines.length) {
+                lines = Arrays.copyOf(lines, count * 2);
+                lineNumbers = Arrays.copyOf(lineNumbers, count * 2);
+            }
+            lines[count] = line;
+            lineNumbers[count++] = lexer.getLineNumber();
+        }
+        return new LogicalLines(Arrays.copyOf(lines, count), Arrays.copyOf(lineNumbers, count));
+    }
+
+    /**
+     * Returns the end of the physical line starting at the specified position, and moves past its terminator: "\n",
+     * "\r" or "\r\n".
+     */
+    private int endOfLine(int start) {
+        int limit = chars.limit();
+        int i = start;
+        while (i < limit) {
+            char c = chars.get(i);
+            if (c == '\n' || c == '\r') {
+                int next = i + 1;
+                if (c == '\r' && next < limit && chars.get(next) == '\n') {
+                    next++;
+                }
+                chars.position(next);
+                return i;
+            }
+            i++;
+        }
+        chars.position(limit);
+        return limit;
+    }
+
+    private void appendTrimmed(int start, int end) {
+        // Trims as String.trim() does.
+        while (start < end && chars.get(start) <= ' ') {
+            start++;
+        }
+        while (end > start && chars.get(end - 1) <= ' ') {
+            end--;
+        }
+        for (int i = start; i < end; i++) {
+            logical.append(chars.get(i));
+        }
+    }
+
+    /**
+     * Parses key/value pairs from text in the format of {@code Properties.load()}: comment and blank lines are
+     * skipped, a backslash at the end of a line continues it onto the next, less the next line's leading white space,
+     * and keys and values are unescaped.
+     *
+     * @param text     the text to parse.
+     * @param consumer receives each key and value, in order.
+     * @throws IllegalArgumentException if the text contains a malformed \\uxxxx escape.
+     */
+    static void parse(CharSequence text, BiConsumer<String, String> consumer) {
+        StringBuilder line = new StringBuilder();
+        int length = text.length();
+        int i = 0;
+        while (i < length) {
+            // Read one natural line, joining continuations, and skipping leading white space.
+            line.setLength(0);
+            boolean skipWhiteSpace = true;
+            boolean continuation = false;
+            boolean comment = false;
+            boolean escaped = false;
+            for (; i < length; i++) {
+                char c = text.charAt(i);
+                if (skipWhiteSpace) {
+                    if (c == ' ' || c == '\t' || c == '\f' || (!continuation && (c == '\n' || c == '\r'))) {
+                        continue;
+                    }
+                    skipWhiteSpace = false;
+                    comment = !continuation && (c == COMMENT || c == ALT_COMMENT);
+                }
+                if (c == '\n' || c == '\r') {
+                    if (comment || !escaped) {
+                        if (c == '\r' && i + 1 < length && text.charAt(i + 1) == '\n') {
+                            i++;
+                        }
+                        i++;
+                        break;
+                    }
+                    // An odd number of backslashes ends the line: drop the last, and continue on the next line.
+                    line.setLength(line.length() - 1);
+                    skipWhiteSpace = true;
+                    continuation = true;
+                    escaped = false;
+                    if (c == '\r' && i + 1 < length && text.charAt(i + 1) == '\n') {
+                        i++;
+                    }
+                    continue;
+                }
+                line.append(c);
+                escaped = c == ESCAPE && !escaped;
+            }
+            if (escaped && !comment) {
+                // A continuation at the end of the text continues onto nothing.
+                line.setLength(line.length() - 1);
+            }
+            if (!comment && line.length() > 0) {
+                parseLine(line, consumer);
+            }
+        }
+    }
+
+    private static void parseLine(CharSequence line, BiConsumer<String, String> consumer) {
+        int length = line.length();
+        int keyEnd = 0;
+        int valueStart = length;
+        boolean hasSeparator = false;
+        boolean escaped = false;
+        while (keyEnd < length) {
+            char c = line.charAt(keyEnd);
+            if ((c == '=' || c == ':') && !escaped) {
+                valueStart = keyEnd + 1;
+                hasSeparator = true;
+                break;
+            } else if ((c == ' ' || c == '\t' || c == '\f') && !escaped) {
+                valueStart = keyEnd + 1;
+                break;
+            }
+            escaped = c == ESCAPE && !escaped;
+            keyEnd++;
+        }
+        while (valueStart < length) {
+            char c = line.charAt(valueStart);
+            if (c != ' ' && c != '\t' && c != '\f') {
+                if (!hasSeparator && (c == '=' || c == ':')) {
+                    hasSeparator = true;
+                } else {
+                    break;
+                }
+            }
+            valueStart++;
+        }
+        consumer.accept(unescape(line, 0, keyEnd), unescape(line, valueStart, length));
+    }
+
+    private static String unescape(CharSequence in, int start, int end) {
+        StringBuilder out = new StringBuilder(end - start);
+        int i = start;
+        while (i < end) {
+            char c = in.charAt(i++);
+            if (c != ESCAPE || i >= end) {
+                out.append(c);
+                continue;
+            }
+            c = in.charAt(i++);
+            if (c == 'u') {
+                int value = 0;
+                for (int digit = 0; digit < 4; digit++) {
+                    int hex = i < end ? Character.digit(in.charAt(i++), 16) : -1;
+                    if (hex < 0) {
+                        throw new IllegalArgumentException("Malformed \\uxxxx encoding.");
+                    }
+                    value = (value << 4) + hex;
+                }
+                out.append((char) value);
+            } else if (c == 't') {
+                out.append('\t');
+            } else if (c == 'r') {
+                out.append('\r');
+            } else if (c == 'n') {
+                out.append('\n');
+            } else if (c == 'f') {
+                out.append('\f');
+            } else {
+                out.append(c);
+            }
+        }
+        return out.toString();
+    }
+
+    /**
+     * The logical lines of a file, with the number of the last physical line of each. They depend only on the
+     * file's content, so they can be kept and imported again.
+     */
+    @Immutable
+    static final class LogicalLines {
+        private final String[] lines;
+        private final int[] lineNumbers;
+
+        private LogicalLines(String[] lines, int[] lineNumbers) {
+            this.lines = lines;
+            this.lineNumbers = lineNumbers;
+        }
+
+        int size() {
+            return lines.length;
+        }
+
+        String line(int i) {
+            return lines[i];
+        }
+
+        int lineNumber(int i) {
+            return lineNumbers[i];
+        }
+    }
+}
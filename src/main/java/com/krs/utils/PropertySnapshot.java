@@ -0,0 +1,340 @@
+package com.krs.utils;
+
+import javax.annotation.concurrent.NotThreadSafe;
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Properties;
+import java.util.function.Function;
+import java.util.zip.CRC32;
+
+/**
+ * The fully resolved result of a {@link PropertyImporter} import, with a manifest of everything the result depends
+ * on, so that a later import of the same file can be skipped while nothing has changed. The manifest records the
+ * working directory, each file and classpath resource read, or looked for and not found, and each environment,
+ * system or source property referenced by an expansion.<p/>
+ * <p>
+ * A snapshot file is laid out as:
+ * <pre><tt>
+ *      int     magic, "KRSP"
+ *      int     version
+ *      string  working directory
+ *      string  absolute path of the imported file
+ *      int     debug level
+ *      int     dependency count, then for each:
+ *          byte    kind (FILE or RESOURCE)
+ *          string  absolute path or resource name
+ *          long    size, or -1 if it was not found
+ *          long    last modified time, in epoch millis
+ *          long    CRC32 of the content
+ *      int     reference count, then for each: string name, string value
+ *      int     property count, then for each: string key, string value
+ *      long    CRC32 of everything above
+ * </tt></pre>
+ * where a string is an int length, or -1 for null, followed by that many bytes of UTF-8. Snapshots are written to a
+ * temporary file and moved into place, and are read through a memory mapping; one that is truncated, fails its
+ * checksum or has another version is treated as missing.<p/>
+ * <p>
+ * This class is not thread safe.
+ *
+ * @author krs
+ */
+@NotThreadSafe
+final class PropertySnapshot {
+    private static final int MAGIC = 0x4B525350;
+    private static final int VERSION = 1;
+    private static final byte FILE = 1;
+    private static final byte RESOURCE = 2;
+    private static final long MISSING = -1;
+
+    private final String workingDirectory;
+    private final String source;
+    private final List<Dependency> dependencies = new ArrayList<>();
+    // The value of each referenced property that came from outside the imported files.
+    private final Map<String, String> references = new LinkedHashMap<>();
+    private final Properties properties = new Properties();
+    private int debugLevel;
+
+    /**
+     * Constructs an empty snapshot for recording an import.
+     *
+     * @param source the absolute path of the imported file.
+     */
+    PropertySnapshot(String source) {
+        this(System.getProperty("user.dir"), source);
+    }
+
+    private PropertySnapshot(String workingDirectory, String source) {
+        this.workingDirectory = workingDirectory;
+        this.source = source;
+    }
+
+    /**
+     * Records a file that was read.
+     */
+    void addFile(File file, byte[] content) {
+        dependencies.add(new Dependency(FILE, file.getAbsolutePath(), content.length, file.lastModified(),
+                crc(content)));
+    }
+
+    /**
+     * Records a file that was looked for, but not found.
+     */
+    void addMissingFile(File file) {
+        dependencies.add(new Dependency(FILE, file.getAbsolutePath(), MISSING, 0, 0));
+    }
+
+    /**
+     * Records a classpath resource that was read.
+     */
+    void addResource(String name, long size, long crc) {
+        dependencies.add(new Dependency(RESOURCE, name, size, 0, crc));
+    }
+
+    /**
+     * Records a classpath resource that was looked for, but not found.
+     */
+    void addMissingResource(String name) {
+        dependencies.add(new Dependency(RESOURCE, name, MISSING, 0, 0));
+    }
+
+    /**
+     * Records the value of a property from outside the imported files. Only the first value is kept, since an
+     * import sees one view of them.
+     */
+    void addReference(String name, String value) {
+        if (!references.containsKey(name)) {
+            references.put(name, value);
+        }
+    }
+
+    void setResult(Properties result, int level) {
+        properties.clear();
+        properties.putAll(result);
+        debugLevel = level;
+    }
+
+    String getSource() {
+        return source;
+    }
+
+    Properties getProperties() {
+        return properties;
+    }
+
+    int getDebugLevel() {
+        return debugLevel;
+    }
+
+    /**
+     * Returns true if nothing this snapshot depends on has changed. A file whose size and modification time are
+     * unchanged is taken to be unchanged; one that has only been touched is compared by checksum.
+     *
+     * @param lookup returns the current value of a referenced property, as the importer would have.
+     */
+    boolean isCurrent(Function<String, String> lookup) {
+        if (!Objects.equals(workingDirectory, System.getProperty("user.dir"))) {
+            return false;
+        }
+        for (Dependency dependency : dependencies) {
+            if (!dependency.isCurrent()) {
+                return false;
+            }
+        }
+        for (Map.Entry<String, String> reference : references.entrySet()) {
+            if (!Objects.equals(reference.getValue(), lookup.apply(reference.getKey()))) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Reads a snapshot file.
+     *
+     * @return the snapshot, or null if the file does not exist or is not a valid snapshot.
+     * @throws IOException if the file cannot be read.
+     */
+    static PropertySnapshot read(Path path) throws IOException {
+        ByteBuffer buffer;
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+        } catch (NoSuchFileException e) {
+            return null;
+        }
+        if (buffer.capacity() < 16 || buffer.getInt(0) != MAGIC || buffer.getInt(4) != VERSION) {
+            return null;
+        }
+        int end = buffer.capacity() - 8;
+        ByteBuffer body = buffer.duplicate();
+        body.limit(end);
+        CRC32 crc = new CRC32();
+        crc.update(body);
+        if (crc.getValue() != buffer.getLong(end)) {
+            return null;
+        }
+
+        try {
+            buffer.position(8);
+            buffer.limit(end);
+            PropertySnapshot snapshot = new PropertySnapshot(readString(buffer), readString(buffer));
+            snapshot.debugLevel = buffer.getInt();
+            for (int i = buffer.getInt(); i > 0; i--) {
+                byte kind = buffer.get();
+                snapshot.dependencies.add(new Dependency(kind, readString(buffer), buffer.getLong(), buffer.getLong(),
+                        buffer.getLong()));
+            }
+            for (int i = buffer.getInt(); i > 0; i--) {
+                snapshot.references.put(readString(buffer), readString(buffer));
+            }
+            for (int i = buffer.getInt(); i > 0; i--) {
+                snapshot.properties.put(readString(buffer), readString(buffer));
+            }
+            return snapshot;
+        } catch (RuntimeException e) {
+            // A checksummed file that does not parse was written by something else.
+            return null;
+        }
+    }
+
+    /**
+     * Writes this snapshot, replacing any existing file atomically where the file system allows.
+     */
+    void write(Path path) throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream(4096);
+        DataOutputStream data = new DataOutputStream(bytes);
+        data.writeInt(MAGIC);
+        data.writeInt(VERSION);
+        writeString(data, workingDirectory);
+        writeString(data, source);
+        data.writeInt(debugLevel);
+        data.writeInt(dependencies.size());
+        for (Dependency dependency : dependencies) {
+            data.writeByte(dependency.kind);
+            writeString(data, dependency.name);
+            data.writeLong(dependency.size);
+            data.writeLong(dependency.lastModified);
+            data.writeLong(dependency.crc);
+        }
+        data.writeInt(references.size());
+        for (Map.Entry<String, String> reference : references.entrySet()) {
+            writeString(data, reference.getKey());
+            writeString(data, reference.getValue());
+        }
+        data.writeInt(properties.size());
+        for (Map.Entry<Object, Object> property : properties.entrySet()) {
+            writeString(data, property.getKey().toString());
+            writeString(data, property.getValue().toString());
+        }
+        data.writeLong(crc(bytes.toByteArray()));
+
+        Path absolute = path.toAbsolutePath();
+        Path temp = Files.createTempFile(absolute.getParent(), absolute.getFileName().toString(), ".tmp");
+        try {
+            Files.write(temp, bytes.toByteArray());
+            try {
+                Files.move(temp, absolute, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+            } catch (AtomicMoveNotSupportedException e) {
+                Files.move(temp, absolute, StandardCopyOption.REPLACE_EXISTING);
+            }
+        } finally {
+            Files.deleteIfExists(temp);
+        }
+    }
+
+    private static void writeString(DataOutputStream data, String s) throws IOException {
+        if (s == null) {
+            data.writeInt(-1);
+            return;
+        }
+        byte[] utf8 = s.getBytes(StandardCharsets.UTF_8);
+        data.writeInt(utf8.length);
+        data.write(utf8);
+    }
+
+    private static String readString(ByteBuffer buffer) {
+        int length = buffer.getInt();
+        if (length < 0) {
+            return null;
+        }
+        ByteBuffer utf8 = buffer.slice();
+        utf8.limit(length);
+        buffer.position(buffer.position() + length);
+        return StandardCharsets.UTF_8.decode(utf8).toString();
+    }
+
+    static long crc(byte[] content) {
+        CRC32 crc = new CRC32();
+        crc.update(content, 0, content.length);
+        return crc.getValue();
+    }
+
+    /**
+     * A file or classpath resource an import read, or looked for.
+     */
+    private static final class Dependency {
+        private final byte kind;
+        private final String name;
+        private final long size;
+        private final long lastModified;
+        private final long crc;
+
+        Dependency(byte kind, String name, long size, long lastModified, long crc) {
+            this.kind = kind;
+            this.name = name;
+            this.size = size;
+            this.lastModified = lastModified;
+            this.crc = crc;
+        }
+
+        boolean isCurrent() {
+            try {
+                return kind == FILE ? isFileCurrent() : kind == RESOURCE && isResourceCurrent();
+            } catch (IOException e) {
+                return false;
+            }
+        }
+
+        private boolean isFileCurrent() throws IOException {
+            File file = new File(name);
+            if (size == MISSING || !file.isFile()) {
+                return size == MISSING && !file.isFile();
+            }
+            if (file.length() != size) {
+                return false;
+            }
+            return file.lastModified() == lastModified || crc(Files.readAllBytes(file.toPath())) == crc;
+        }
+
+        private boolean isResourceCurrent() throws IOException {
+            try (InputStream in = PropertySnapshot.class.getResourceAsStream("/" + name)) {
+                if (in == null || size == MISSING) {
+                    return in == null && size == MISSING;
+                }
+                ByteArrayOutputStream content = new ByteArrayOutputStream();
+                byte[] buffer = new byte[4096];
+                int n;
+                while ((n = in.read(buffer)) != -1) {
+                    content.write(buffer, 0, n);
+                }
+                return content.size() == size && crc(content.toByteArray()) == crc;
+            }
+        }
+    }
+}
@@ -0,0 +1,274 @@
+package com.krs.utils.logging;
+
+import com.google.common.base.Preconditions;
+import com.google.common.base.Ticker;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import javax.annotation.concurrent.ThreadSafe;
+import java.lang.ref.WeakReference;
+import java.util.Arrays;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Decides which throwables are worth logging in full when the same failure repeats at a high rate. Throwables are
+ * fingerprinted by their type plus their top stack frames; the first occurrence of a fingerprint in each interval
+ * should be logged in full, and later occurrences are only counted. The suppressed counts are emitted as summary
+ * lines, at most once per interval, by whichever thread records a throwable after the interval has elapsed, or
+ * otherwise by a shared daemon thread that checks every interval, so the counts from the tail of an outage are
+ * still reported. That thread holds each throttle only weakly.<p/>
+ * <p>
+ * Recording is lock-free: known fingerprints are found with a plain map read and claimed with a single CAS.<p/>
+ * <p>
+ * For example:
+ * <pre><tt>
+ *      if (throttle.record(e)) {
+ *          LOGGER.error("Operation failed", e);
+ *      }
+ * </tt></pre>
+ * <p>
+ * This class is thread safe.
+ *
+ * @author krs
+ */
+@ThreadSafe
+public final class ThrottledExceptionLog {
+    private static final Logger LOGGER = LoggerFactory.getLogger(ThrottledExceptionLog.class);
+    private static final int DEFAULT_MAX_FRAMES = 5;
+    private static final long MIN_TICK_NANOS = TimeUnit.MILLISECONDS.toNanos(10);
+    // Marks an entry that has been evicted, so it is neither claimed nor counted again.
+    private static final long RETIRED = Long.MIN_VALUE;
+
+    private final Logger summaryLogger;
+    private final int maxFrames;
+    private final long intervalNanos;
+    private final Ticker ticker;
+    private final ConcurrentMap<Fingerprint, Entry> entries = new ConcurrentHashMap<>();
+    private final AtomicLong nextSummaryNanos;
+
+    /**
+     * Constructs a throttle that fingerprints throwables by their type and top five frames, and writes summaries
+     * to this class's logger.
+     *
+     * @param interval the minimum time between full logs of the same fingerprint.
+     * @param unit     the unit of interval.
+     */
+    public ThrottledExceptionLog(long interval, TimeUnit unit) {
+        this(LOGGER, DEFAULT_MAX_FRAMES, interval, unit);
+    }
+
+    /**
+     * Constructs a throttle.
+     *
+     * @param summaryLogger the logger summary counts are written to, as warnings.
+     * @param maxFrames     the number of top stack frames included in a fingerprint.
+     * @param interval      the minimum time between full logs of the same fingerprint.
+     * @param unit          the unit of interval.
+     * @throws IllegalArgumentException if maxFrames is negative or interval is not positive.
+     */
+    public ThrottledExceptionLog(Logger summaryLogger, int maxFrames, long interval, TimeUnit unit) {
+        this(summaryLogger, maxFrames, interval, unit, Ticker.systemTicker());
+        SummaryTick.schedule(this);
+    }
+
+    ThrottledExceptionLog(Logger summaryLogger, int maxFrames, long interval, TimeUnit unit, Ticker ticker) {
+        Preconditions.checkArgument(maxFrames >= 0, "maxFrames [%s] cannot be negative.", maxFrames);
+        Preconditions.checkArgument(interval > 0, "interval [%s] must be positive.", interval);
+
+        this.summaryLogger = Preconditions.checkNotNull(summaryLogger);
+        this.maxFrames = maxFrames;
+        this.intervalNanos = unit.toNanos(interval);
+        this.ticker = Preconditions.checkNotNull(ticker);
+        this.nextSummaryNanos = new AtomicLong(ticker.read() + intervalNanos);
+    }
+
+    /**
+     * Records an occurrence of the specified throwable.
+     *
+     * @param t the throwable to record.
+     * @return true if the throwable should be logged in full, false if it has been counted for a later summary.
+     */
+    public boolean record(Throwable t) {
+        long now = ticker.read();
+        Fingerprint fp = new Fingerprint(t, maxFrames);
+        boolean logFull;
+        while (true) {
+            Entry entry = entryFor(fp, now);
+            long next = entry.nextFullNanos.get();
+            if (next == RETIRED) {
+                // Evicted by a summary; make sure it is gone, then start a new entry.
+                entries.remove(fp, entry);
+            } else if (now - next < 0) {
+                entry.suppressed.increment();
+                logFull = false;
+                break;
+            } else if (entry.nextFullNanos.compareAndSet(next, now + intervalNanos)) {
+                logFull = true;
+                break;
+            }
+        }
+
+        summarizeIfDue(now);
+        return logFull;
+    }
+
+    /**
+     * Immediately writes summaries for any suppressed throwables, for example on shutdown.
+     */
+    public void flush() {
+        summarize(ticker.read());
+    }
+
+    /**
+     * Returns the number of fingerprints being tracked.
+     */
+    int size() {
+        return entries.size();
+    }
+
+    /**
+     * Writes summaries if an interval has passed since the last.
+     */
+    void summarizeIfDue(long now) {
+        long nextSummary = nextSummaryNanos.get();
+        if (now - nextSummary >= 0 && nextSummaryNanos.compareAndSet(nextSummary, now + intervalNanos)) {
+            summarize(now);
+        }
+    }
+
+    private Entry entryFor(Fingerprint fp, long now) {
+        Entry entry = entries.get(fp);
+        if (entry == null) {
+            Entry created = new Entry(fp.describe(), now);
+            entry = entries.putIfAbsent(fp, created);
+            if (entry == null) {
+                entry = created;
+            }
+        }
+        return entry;
+    }
+
+    private void summarize(long now) {
+        long intervalMillis = TimeUnit.NANOSECONDS.toMillis(intervalNanos);
+        for (Map.Entry<Fingerprint, Entry> e : entries.entrySet()) {
+            Entry entry = e.getValue();
+            long count = entry.suppressed.sumThenReset();
+            long next = entry.nextFullNanos.get();
+            if (count == 0 && next != RETIRED && now - next >= intervalNanos
+                    && entry.nextFullNanos.compareAndSet(next, RETIRED)) {
+                // Idle for a whole interval, forget it so the map only holds active failures. Retiring the entry
+                // first makes a concurrent record() start a new entry rather than count into this one; a count
+                // made between the sum above and retirement is reported below.
+                entries.remove(e.getKey(), entry);
+                count = entry.suppressed.sumThenReset();
+            }
+            if (count > 0) {
+                summaryLogger.warn("Suppressed {} repeats of {} (full trace at most once every {} ms)",
+                        count, entry.description, intervalMillis);
+            }
+        }
+    }
+
+    /**
+     * Summarizes a throttle every interval, from a shared daemon thread, until the throttle is garbage collected.
+     */
+    private static final class SummaryTick implements Runnable {
+        // Created on first use, so no thread is started unless a throttle is.
+        private static final ScheduledExecutorService EXECUTOR = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread t = new Thread(r, "throttled-exception-log");
+            t.setDaemon(true);
+            return t;
+        });
+
+        private final WeakReference<ThrottledExceptionLog> throttle;
+        private volatile ScheduledFuture<?> future;
+
+        private SummaryTick(ThrottledExceptionLog throttle) {
+            this.throttle = new WeakReference<>(throttle);
+        }
+
+        static void schedule(ThrottledExceptionLog throttle) {
+            SummaryTick tick = new SummaryTick(throttle);
+            long period = Math.max(throttle.intervalNanos, MIN_TICK_NANOS);
+            tick.future = EXECUTOR.scheduleAtFixedRate(tick, period, period, TimeUnit.NANOSECONDS);
+        }
+
+        @Override
+        public void run() {
+            ThrottledExceptionLog log = throttle.get();
+            if (log == null) {
+                ScheduledFuture<?> scheduled = future;
+                if (scheduled != null) {
+                    scheduled.cancel(false);
+                }
+                return;
+            }
+            try {
+                log.summarizeIfDue(log.ticker.read());
+            } catch (RuntimeException e) {
+                // A failing logger must not cancel the tick.
+                LOGGER.warn("Failed to write exception summaries", e);
+            }
+        }
+    }
+
+    /**
+     * Per-fingerprint state: when a full log may next be claimed, and how many occurrences were suppressed.
+     */
+    private static final class Entry {
+        private final String description;
+        private final AtomicLong nextFullNanos;
+        private final LongAdder suppressed = new LongAdder();
+
+        private Entry(String description, long now) {
+            this.description = description;
+            this.nextFullNanos = new AtomicLong(now);
+        }
+
+    }
+
+    /**
+     * Identifies a throwable by its type and top stack frames.
+     */
+    private static final class Fingerprint {
+        private final Class<?> type;
+        private final StackTraceElement[] frames;
+        private final int hash;
+
+        private Fingerprint(Throwable t, int maxFrames) {
+            StackTraceElement[] trace = t.getStackTrace();
+            this.type = t.getClass();
+            this.frames = trace.length > maxFrames ? Arrays.copyOf(trace, maxFrames) : trace;
+            this.hash = 31 * type.hashCode() + Arrays.hashCode(frames);
+        }
+
+        private String describe() {
+            return frames.length == 0 ? type.getName() : type.getName() + " at " + frames[0];
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) {
+                return true;
+            }
+            if (!(o instanceof Fingerprint)) {
+                return false;
+            }
+            Fingerprint other = (Fingerprint) o;
+            return hash == other.hash && type == other.type && Arrays.equals(frames, other.frames);
+        }
+
+        @Override
+        public int hashCode() {
+            return hash;
+        }
+    }
+}
@@ -0,0 +1,62 @@
+package com.krs.utils.retry;
+
+import com.google.common.base.Preconditions;
+
+import javax.annotation.concurrent.ThreadSafe;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * An additive-increase/multiplicative-decrease limit. The limit grows by one for each successful call made while
+ * at least half the limit was in use, and shrinks by ten percent for each call that was dropped or slower than a
+ * latency threshold.<p/>
+ * <p>
+ * This class is thread safe.
+ *
+ * @author krs
+ */
+@ThreadSafe
+final class AimdLimit implements LimitAlgorithm {
+    private static final double BACKOFF_RATIO = 0.9;
+
+    private final int minLimit;
+    private final int maxLimit;
+    private final long thresholdNanos;
+    private final AtomicInteger limit;
+
+    AimdLimit(int initialLimit, int minLimit, int maxLimit, long thresholdNanos) {
+        Preconditions.checkArgument(minLimit > 0, "minLimit [%s] must be positive.", minLimit);
+        Preconditions.checkArgument(minLimit <= initialLimit && initialLimit <= maxLimit,
+                "initialLimit [%s] must be between minLimit [%s] and maxLimit [%s].", initialLimit, minLimit, maxLimit);
+        Preconditions.checkArgument(thresholdNanos > 0, "latency threshold [%s] must be positive.", thresholdNanos);
+
+        this.minLimit = minLimit;
+        this.maxLimit = maxLimit;
+        this.thresholdNanos = thresholdNanos;
+        this.limit = new AtomicInteger(initialLimit);
+    }
+
+    @Override
+    public int getLimit() {
+        return limit.get();
+    }
+
+    @Override
+    public void onSample(long rttNanos, int inFlight, boolean dropped) {
+        while (true) {
+            int current = limit.get();
+            int next;
+            if (dropped || rttNanos > thresholdNanos) {
+                next = Math.max(minLimit, (int) (current * BACKOFF_RATIO));
+            } else if (inFlight * 2 >= current) {
+                next = Math.min(maxLimit, current + 1);
+            } else {
+                // Not using enough of the limit to learn anything about it.
+                return;
+            }
+
+            if (next == current || limit.compareAndSet(current, next)) {
+                return;
+            }
+        }
+    }
+}
@@ -0,0 +1,286 @@
+package com.krs.utils.retry;
+
+import com.google.common.base.Preconditions;
+
+import javax.annotation.concurrent.ThreadSafe;
+import java.util.Queue;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * A bulkhead that caps the number of calls in flight to a single dependency, adapting the cap from observed
+ * latency through a {@link LimitAlgorithm}. Where a {@link RetryPolicy} protects against transient errors, a
+ * limiter protects a dependency, and its callers, from overload.<p/>
+ * <p>
+ * Calls over the limit are either shed immediately ({@link #tryAcquire()}) or queued for a bounded time
+ * ({@link #acquire(long, TimeUnit)}). Each successful acquisition returns a {@link Permit} that must be released
+ * exactly once, reporting how the call went. Acquiring and releasing is lock-free.<p/>
+ * <p>
+ * For example:
+ * <pre><tt>
+ *      ConcurrencyLimiter.Permit permit = limiter.tryAcquire();
+ *      if (permit == null) {
+ *          throw new LimitExceededException(limiter.getLimit());
+ *      }
+ *      try {
+ *          Result r = callDependency();
+ *          permit.success();
+ *          return r;
+ *      } catch (TimeoutException e) {
+ *          permit.dropped();
+ *          throw e;
+ *      } finally {
+ *          permit.ignore(); // no-op if already released
+ *      }
+ * </tt></pre>
+ * <p>
+ * {@link #call(Callable)} implements this pattern. Rejected calls surface as {@link LimitExceededException}, which
+ * a retry policy can treat as retryable or not via {@link RetryUtils#classifyRejections(RetryPolicy, boolean)}.<p/>
+ * <p>
+ * This class is thread safe.
+ *
+ * @author krs
+ */
+@ThreadSafe
+public final class ConcurrencyLimiter {
+    private final LimitAlgorithm algorithm;
+    private final AtomicInteger inFlight = new AtomicInteger(0);
+    private final Queue<Waiter> waiters = new ConcurrentLinkedQueue<>();
+
+    /**
+     * Constructs a limiter driven by the specified algorithm.
+     *
+     * @param algorithm the algorithm that adapts the limit.
+     */
+    public ConcurrencyLimiter(LimitAlgorithm algorithm) {
+        this.algorithm = Preconditions.checkNotNull(algorithm);
+    }
+
+    /**
+     * Returns a limiter using additive-increase/multiplicative-decrease: the limit grows by one while calls succeed
+     * within the latency threshold, and shrinks by ten percent when calls are dropped or exceed it.
+     *
+     * @param initialLimit     the starting limit.
+     * @param minLimit         the smallest the limit may shrink to.
+     * @param maxLimit         the largest the limit may grow to.
+     * @param latencyThreshold calls slower than this are treated as a sign of overload.
+     * @param unit             the unit of latencyThreshold.
+     * @return the limiter.
+     * @throws IllegalArgumentException if the limits are not positive and ordered, or the threshold is not positive.
+     */
+    public static ConcurrencyLimiter aimd(
+            int initialLimit,
+            int minLimit,
+            int maxLimit,
+            long latencyThreshold,
+            TimeUnit unit) {
+
+        return new ConcurrencyLimiter(new AimdLimit(initialLimit, minLimit, maxLimit, unit.toNanos(latencyThreshold)));
+    }
+
+    /**
+     * Returns a limiter that adjusts its limit by the gradient between the long-term average latency and the
+     * latency of each call, so no latency threshold has to be configured.
+     *
+     * @param initialLimit the starting limit.
+     * @param minLimit     the smallest the limit may shrink to.
+     * @param maxLimit     the largest the limit may grow to.
+     * @return the limiter.
+     * @throws IllegalArgumentException if the limits are not positive and ordered.
+     */
+    public static ConcurrencyLimiter gradient(int initialLimit, int minLimit, int maxLimit) {
+        return new ConcurrencyLimiter(new GradientLimit(initialLimit, minLimit, maxLimit));
+    }
+
+    /**
+     * Returns the current limit on concurrent calls.
+     */
+    public int getLimit() {
+        return algorithm.getLimit();
+    }
+
+    /**
+     * Returns the number of calls currently in flight.
+     */
+    public int getInFlight() {
+        return inFlight.get();
+    }
+
+    /**
+     * Returns the number of threads queued in {@link #acquire(long, TimeUnit)}.
+     */
+    int getWaiterCount() {
+        return waiters.size();
+    }
+
+    /**
+     * Acquires a permit if the limit allows, without waiting.
+     *
+     * @return the permit, or null if the limit has been reached and the call should be shed.
+     */
+    public Permit tryAcquire() {
+        while (true) {
+            int current = inFlight.get();
+            if (current >= algorithm.getLimit()) {
+                return null;
+            }
+            if (inFlight.compareAndSet(current, current + 1)) {
+                return new Permit(current + 1);
+            }
+        }
+    }
+
+    /**
+     * Acquires a permit, waiting up to the specified time for one to become available.
+     *
+     * @param timeout the maximum time to wait.
+     * @param unit    the unit of timeout.
+     * @return the permit, or null if none became available in time.
+     * @throws InterruptedException if the current thread is interrupted while waiting.
+     */
+    public Permit acquire(long timeout, TimeUnit unit) throws InterruptedException {
+        Permit permit = tryAcquire();
+        if (permit != null) {
+            return permit;
+        }
+
+        long deadline = System.nanoTime() + unit.toNanos(timeout);
+        Waiter waiter = new Waiter(Thread.currentThread());
+        waiters.add(waiter);
+        try {
+            while (true) {
+                // Retry after registering, so a release between the first attempt and now is not missed.
+                permit = tryAcquire();
+                if (permit != null) {
+                    return permit;
+                }
+                long remaining = deadline - System.nanoTime();
+                if (remaining <= 0) {
+                    return null;
+                }
+                LockSupport.parkNanos(this, remaining);
+                if (Thread.interrupted()) {
+                    throw new InterruptedException();
+                }
+                if (waiter.signalled) {
+                    // A release removed this waiter from the queue to wake it; queue again in case another
+                    // thread takes the permit first.
+                    waiter.signalled = false;
+                    waiters.add(waiter);
+                }
+            }
+        } finally {
+            if (!waiters.remove(waiter)) {
+                // This waiter was signalled, and may be leaving without the permit it was woken for.
+                signal(1);
+            }
+        }
+    }
+
+    /**
+     * Invokes the operation if the limit allows, shedding it otherwise. A {@link TimeoutException} thrown by the
+     * operation is reported as a dropped call; other failures do not affect the limit.
+     *
+     * @param operation the operation to invoke.
+     * @return the result of the operation.
+     * @throws LimitExceededException if the limit has been reached.
+     * @throws Exception              if the operation fails.
+     */
+    public <T> T call(Callable<T> operation) throws Exception {
+        Permit permit = tryAcquire();
+        if (permit == null) {
+            throw new LimitExceededException(getLimit());
+        }
+
+        try {
+            T result = operation.call();
+            permit.success();
+            return result;
+        } catch (TimeoutException e) {
+            permit.dropped();
+            throw e;
+        } finally {
+            permit.ignore();
+        }
+    }
+
+    private void release() {
+        int current = inFlight.decrementAndGet();
+        // Wake one waiter for the permit released, and more if the limit has grown.
+        signal(Math.max(1, algorithm.getLimit() - current));
+    }
+
+    /**
+     * Removes up to the specified number of waiters from the queue and wakes them. A waiter is removed as it is
+     * signalled, so releases made close together wake different waiters.
+     */
+    private void signal(int count) {
+        for (int i = 0; i < count; i++) {
+            Waiter next = waiters.poll();
+            if (next == null) {
+                return;
+            }
+            next.signalled = true;
+            LockSupport.unpark(next.thread);
+        }
+    }
+
+    private static final class Waiter {
+        private final Thread thread;
+        private volatile boolean signalled;
+
+        Waiter(Thread thread) {
+            this.thread = thread;
+        }
+    }
+
+    /**
+     * The right to make one call through the limiter. A permit is owned by the thread that acquired it and must be
+     * released exactly once, through one of its methods; releasing it again has no effect.
+     */
+    public final class Permit {
+        private final long startNanos = System.nanoTime();
+        private final int inFlightAtStart;
+        private boolean released;
+
+        private Permit(int inFlightAtStart) {
+            this.inFlightAtStart = inFlightAtStart;
+        }
+
+        /**
+         * Releases the permit, reporting that the call succeeded and how long it took.
+         */
+        public void success() {
+            release(false, true);
+        }
+
+        /**
+         * Releases the permit, reporting that the call failed in a way that signals overload, such as a timeout.
+         */
+        public void dropped() {
+            release(true, true);
+        }
+
+        /**
+         * Releases the permit without affecting the limit, for calls that failed for unrelated reasons.
+         */
+        public void ignore() {
+            release(false, false);
+        }
+
+        private void release(boolean dropped, boolean sample) {
+            if (released) {
+                return;
+            }
+            released = true;
+            if (sample) {
+                algorithm.onSample(System.nanoTime() - startNanos, inFlightAtStart, dropped);
+            }
+            ConcurrencyLimiter.this.release();
+        }
+    }
+}
@@ -0,0 +1,370 @@
+package com.krs.utils.retry;
+
+import com.google.common.base.Preconditions;
+import com.krs.utils.threads.ThreadUtils;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import javax.annotation.concurrent.ThreadSafe;
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ConcurrentSkipListSet;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * A queue of pending retries that survives process restarts. Where {@link com.krs.utils.retry.strategy.DelayRetryStrategy}
+ * keeps the pending retry in a sleeping thread, this queue records each work item, with its attempt count and the
+ * time it is next due, in a memory-mapped append-only journal which is replayed when the queue is opened.<p/>
+ * <p>
+ * Changes are handed to a single writer thread which appends them in batches and forces the journal once per
+ * batch, so the cost of each fsync is shared by every change made while the previous one was in progress. The
+ * futures returned by {@link #schedule}, {@link #reschedule} and {@link #complete} complete once the change is
+ * durable. The journal is compacted to the live items whenever it fills up or is mostly made of superseded
+ * records.<p/>
+ * <p>
+ * Items are delivered at least once: an item handed out by {@link #pollDue(int)} stays in the journal until it is
+ * completed or rescheduled, so it is delivered again if the process restarts first.<p/>
+ * <p>
+ * For example:
+ * <pre><tt>
+ *      for (DurableRetryQueue.WorkItem item : queue.pollDue(100)) {
+ *          try {
+ *              send(item.getPayload());
+ *              queue.complete(item);
+ *          } catch (IOException e) {
+ *              queue.reschedule(item, 30, TimeUnit.SECONDS);
+ *          }
+ *      }
+ * </tt></pre>
+ * <p>
+ * This class is thread safe.
+ *
+ * @author krs
+ */
+@ThreadSafe
+public final class DurableRetryQueue implements Closeable {
+    private static final Logger LOGGER = LoggerFactory.getLogger(DurableRetryQueue.class);
+    private static final int DEFAULT_CAPACITY = 16 * 1024 * 1024;
+    private static final int MAX_BATCH = 1024;
+    private static final Comparator<WorkItem> BY_DUE_TIME =
+            Comparator.comparingLong(WorkItem::getDueMillis).thenComparingLong(WorkItem::getId);
+
+    private final BlockingQueue<Change> changes = new LinkedBlockingQueue<>();
+    private final ConcurrentMap<Long, WorkItem> live = new ConcurrentHashMap<>();
+    private final ConcurrentSkipListSet<WorkItem> scheduled = new ConcurrentSkipListSet<>(BY_DUE_TIME);
+    private final AtomicLong nextId;
+    private final RetryJournal journal;
+    private final Thread writer;
+    private volatile boolean closed;
+    // Only accessed by the writer thread.
+    private long liveBytes;
+
+    private DurableRetryQueue(Path path, int capacity) throws IOException {
+        Map<Long, WorkItem> replayed = new HashMap<>();
+        this.journal = RetryJournal.open(path, capacity, replayed);
+
+        long maxId = 0;
+        for (WorkItem item : replayed.values()) {
+            live.put(item.getId(), item);
+            scheduled.add(item);
+            liveBytes += RetryJournal.recordSize(item);
+            maxId = Math.max(maxId, item.getId());
+        }
+        this.nextId = new AtomicLong(maxId + 1);
+
+        this.writer = ThreadUtils.newNamedDaemonThreadFactory("retry-journal-%d").newThread(this::writeLoop);
+        this.writer.start();
+    }
+
+    /**
+     * Opens the queue journaled at the specified path, creating it if needed, and replays any pending items.
+     *
+     * @param path the journal file.
+     * @return the queue.
+     * @throws IOException if the journal cannot be opened.
+     */
+    public static DurableRetryQueue open(Path path) throws IOException {
+        return open(path, DEFAULT_CAPACITY);
+    }
+
+    /**
+     * Opens the queue journaled at the specified path, creating it if needed, and replays any pending items.
+     *
+     * @param path     the journal file.
+     * @param capacity the initial size of the journal in bytes. The journal grows if the live items need more.
+     * @return the queue.
+     * @throws IOException if the journal cannot be opened.
+     */
+    public static DurableRetryQueue open(Path path, int capacity) throws IOException {
+        return new DurableRetryQueue(Preconditions.checkNotNull(path), capacity);
+    }
+
+    /**
+     * Adds a new work item, due after the specified delay.
+     *
+     * @param payload the work to retry.
+     * @param delay   the time until the item is due.
+     * @param unit    the unit of delay.
+     * @return a future completed with the item once it is durable.
+     */
+    public CompletableFuture<WorkItem> schedule(byte[] payload, long delay, TimeUnit unit) {
+        WorkItem item = new WorkItem(nextId.getAndIncrement(), 0, dueMillis(delay, unit), payload.clone());
+        return submit(RetryJournal.PUT, item);
+    }
+
+    /**
+     * Returns an item to the queue after a failed attempt, with its attempt count incremented.
+     *
+     * @param item  the item that was attempted.
+     * @param delay the time until the item is due again.
+     * @param unit  the unit of delay.
+     * @return a future completed with the updated item once it is durable.
+     */
+    public CompletableFuture<WorkItem> reschedule(WorkItem item, long delay, TimeUnit unit) {
+        WorkItem next = new WorkItem(item.getId(), item.getAttempts() + 1, dueMillis(delay, unit), item.payload());
+        return submit(RetryJournal.PUT, next);
+    }
+
+    /**
+     * Removes an item from the queue, for example after it has finally succeeded or been given up on.
+     *
+     * @param item the item to remove.
+     * @return a future completed once the removal is durable.
+     */
+    public CompletableFuture<Void> complete(WorkItem item) {
+        return submit(RetryJournal.REMOVE, item).thenApply(i -> null);
+    }
+
+    /**
+     * Hands out items whose due time has passed, earliest first. Items handed out are not due again until they are
+     * rescheduled, but remain in the journal until they are completed or rescheduled.
+     *
+     * @param max the maximum number of items to return.
+     * @return the due items, possibly empty.
+     */
+    public List<WorkItem> pollDue(int max) {
+        long now = System.currentTimeMillis();
+        List<WorkItem> due = new ArrayList<>();
+        for (WorkItem item : scheduled) {
+            if (due.size() >= max || item.getDueMillis() > now) {
+                break;
+            }
+            if (scheduled.remove(item)) {
+                due.add(item);
+            }
+        }
+        return due;
+    }
+
+    /**
+     * Returns the number of items in the queue, including those handed out but not yet completed or rescheduled.
+     */
+    public int size() {
+        return live.size();
+    }
+
+    /**
+     * Stops accepting changes, waits for pending ones to become durable, and closes the journal.
+     */
+    @Override
+    public void close() throws IOException {
+        if (closed) {
+            return;
+        }
+        closed = true;
+        changes.add(Change.CLOSE);
+        try {
+            writer.join();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        journal.close();
+    }
+
+    private static long dueMillis(long delay, TimeUnit unit) {
+        return System.currentTimeMillis() + unit.toMillis(delay);
+    }
+
+    private CompletableFuture<WorkItem> submit(byte type, WorkItem item) {
+        Change change = new Change(type, item);
+        if (closed) {
+            change.future.completeExceptionally(new IllegalStateException("Retry queue is closed."));
+            return change.future;
+        }
+        changes.add(change);
+        if (closed && changes.remove(change)) {
+            // close() began after the check above, and the writer may already have made its final drain. A change
+            // the writer has taken is always written or refused by it.
+            change.future.completeExceptionally(new IllegalStateException("Retry queue is closed."));
+        }
+        return change.future;
+    }
+
+    private void writeLoop() {
+        List<Change> batch = new ArrayList<>(MAX_BATCH);
+        boolean stop = false;
+        while (!stop) {
+            try {
+                batch.add(changes.take());
+            } catch (InterruptedException e) {
+                break;
+            }
+            changes.drainTo(batch, MAX_BATCH - 1);
+            stop = write(batch);
+            batch.clear();
+        }
+
+        // Changes submitted concurrently with close() are refused rather than left hanging; any added after this
+        // drain are refused by submit() itself.
+        changes.drainTo(batch);
+        for (Change change : batch) {
+            change.future.completeExceptionally(new IllegalStateException("Retry queue is closed."));
+        }
+    }
+
+    /**
+     * Appends, forces and applies a batch of changes.
+     *
+     * @return true if the batch contained the close marker.
+     */
+    private boolean write(List<Change> batch) {
+        int applied = 0;
+        try {
+            for (int i = 0; i < batch.size(); i++) {
+                Change change = batch.get(i);
+                if (change == Change.CLOSE) {
+                    commit(batch, applied, i);
+                    for (Change refused : batch.subList(i + 1, batch.size())) {
+                        refused.future.completeExceptionally(new IllegalStateException("Retry queue is closed."));
+                    }
+                    return true;
+                }
+
+                int size = RetryJournal.recordSize(change.item);
+                if (!journal.hasRoom(size)) {
+                    // Compaction rewrites the applied state, so everything appended so far must be applied first.
+                    commit(batch, applied, i);
+                    applied = i;
+                    journal.compact(live.values(), size);
+                }
+                journal.append(change.type, change.item);
+            }
+            commit(batch, applied, batch.size());
+
+            if (journal.isMostlyGarbage(liveBytes)) {
+                journal.compact(live.values(), 0);
+            }
+        } catch (IOException | RuntimeException e) {
+            LOGGER.error("Failed to write retry journal", e);
+            for (Change change : batch) {
+                change.future.completeExceptionally(e);
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Forces the journal, then applies changes [from, to) to the in-memory state and completes their futures.
+     */
+    private void commit(List<Change> batch, int from, int to) {
+        if (from == to) {
+            return;
+        }
+        journal.force();
+
+        for (Change change : batch.subList(from, to)) {
+            WorkItem item = change.item;
+            WorkItem previous = change.type == RetryJournal.PUT ? live.put(item.getId(), item) : live.remove(item.getId());
+            if (previous != null) {
+                scheduled.remove(previous);
+                liveBytes -= RetryJournal.recordSize(previous);
+            }
+            if (change.type == RetryJournal.PUT) {
+                scheduled.add(item);
+                liveBytes += RetryJournal.recordSize(item);
+            }
+            change.future.complete(item);
+        }
+    }
+
+    /**
+     * A unit of work waiting to be retried. Instances are immutable.
+     */
+    public static final class WorkItem {
+        private final long id;
+        private final int attempts;
+        private final long dueMillis;
+        private final byte[] payload;
+
+        WorkItem(long id, int attempts, long dueMillis, byte[] payload) {
+            this.id = id;
+            this.attempts = attempts;
+            this.dueMillis = dueMillis;
+            this.payload = payload;
+        }
+
+        public long getId() {
+            return id;
+        }
+
+        /**
+         * Returns the number of times the item has been rescheduled after a failed attempt.
+         */
+        public int getAttempts() {
+            return attempts;
+        }
+
+        /**
+         * Returns the time the item is due, in milliseconds since the epoch.
+         */
+        public long getDueMillis() {
+            return dueMillis;
+        }
+
+        public byte[] getPayload() {
+            return payload.clone();
+        }
+
+        byte[] payload() {
+            return payload;
+        }
+
+        int payloadLength() {
+            return payload.length;
+        }
+
+        @Override
+        public String toString() {
+            return "WorkItem{id=" + id + ", attempts=" + attempts + ", dueMillis=" + dueMillis
+                    + ", payload=" + payload.length + " bytes}";
+        }
+    }
+
+    /**
+     * A change waiting for the writer thread.
+     */
+    private static final class Change {
+        private static final Change CLOSE = new Change((byte) 0, null);
+
+        private final byte type;
+        private final WorkItem item;
+        private final CompletableFuture<WorkItem> future = new CompletableFuture<>();
+
+        private Change(byte type, WorkItem item) {
+            this.type = type;
+            this.item = item;
+        }
+    }
+}
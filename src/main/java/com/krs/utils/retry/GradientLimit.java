@@ -0,0 +1,84 @@
+package com.krs.utils.retry;
+
+import com.google.common.base.Preconditions;
+
+import javax.annotation.concurrent.ThreadSafe;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * A limit driven by the gradient between the long-term average latency and the latency of each call. While calls
+ * are as fast as usual the limit grows by a queue allowance of {@code sqrt(limit)}; as latency rises above the
+ * average the limit shrinks in proportion, by at most half per sample. Dropped calls count as the worst gradient.
+ * Changes are smoothed so a single slow call cannot collapse the limit. The limit is kept as a fraction, so that
+ * small limits, whose smoothed growth is less than one per sample, still grow.<p/>
+ * <p>
+ * This class is thread safe.
+ *
+ * @author krs
+ */
+@ThreadSafe
+final class GradientLimit implements LimitAlgorithm {
+    private static final double TOLERANCE = 1.5;
+    private static final double SMOOTHING = 0.2;
+    private static final double MIN_GRADIENT = 0.5;
+    private static final int LONG_WINDOW = 600;
+
+    private final int minLimit;
+    private final int maxLimit;
+    // The limit before rounding down, stored as double bits so it can be updated with a CAS.
+    private final AtomicLong limit;
+    // Long-term average latency in nanoseconds, stored as double bits so it can be updated with a CAS.
+    private final AtomicLong longRtt = new AtomicLong(Double.doubleToRawLongBits(0.0));
+
+    GradientLimit(int initialLimit, int minLimit, int maxLimit) {
+        Preconditions.checkArgument(minLimit > 0, "minLimit [%s] must be positive.", minLimit);
+        Preconditions.checkArgument(minLimit <= initialLimit && initialLimit <= maxLimit,
+                "initialLimit [%s] must be between minLimit [%s] and maxLimit [%s].", initialLimit, minLimit, maxLimit);
+
+        this.minLimit = minLimit;
+        this.maxLimit = maxLimit;
+        this.limit = new AtomicLong(Double.doubleToRawLongBits(initialLimit));
+    }
+
+    @Override
+    public int getLimit() {
+        return (int) Double.longBitsToDouble(limit.get());
+    }
+
+    @Override
+    public void onSample(long rttNanos, int inFlight, boolean dropped) {
+        double average = updateLongRtt(rttNanos);
+        long bits = limit.get();
+        double current = Double.longBitsToDouble(bits);
+        if (!dropped && inFlight * 2 < (int) current) {
+            // Not using enough of the limit to learn anything about it.
+            return;
+        }
+
+        double gradient = dropped
+                ? MIN_GRADIENT
+                : Math.max(MIN_GRADIENT, Math.min(1.0, TOLERANCE * average / Math.max(1, rttNanos)));
+
+        while (true) {
+            double target = current * gradient + Math.sqrt(current);
+            double smoothed = current * (1 - SMOOTHING) + target * SMOOTHING;
+            double next = Math.max(minLimit, Math.min(maxLimit, smoothed));
+            if (next == current || limit.compareAndSet(bits, Double.doubleToRawLongBits(next))) {
+                return;
+            }
+            bits = limit.get();
+            current = Double.longBitsToDouble(bits);
+        }
+    }
+
+    private double updateLongRtt(long rttNanos) {
+        while (true) {
+            long bits = longRtt.get();
+            double average = Double.longBitsToDouble(bits);
+            double next = average == 0.0 ? rttNanos : average + (rttNanos - average) / LONG_WINDOW;
+            if (longRtt.compareAndSet(bits, Double.doubleToRawLongBits(next))) {
+                return next;
+            }
+        }
+    }
+}
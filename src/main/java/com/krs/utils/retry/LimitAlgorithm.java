@@ -0,0 +1,30 @@
+package com.krs.utils.retry;
+
+/**
+ * An algorithm that adapts the number of concurrent calls a {@link ConcurrencyLimiter} allows, from the latency
+ * and outcome of completed calls.<p/>
+ * <p>
+ * Implementations are invoked concurrently by every thread releasing a permit, and must be thread safe.
+ *
+ * @author krs
+ * @see ConcurrencyLimiter#aimd(int, int, int, long, java.util.concurrent.TimeUnit)
+ * @see ConcurrencyLimiter#gradient(int, int, int)
+ */
+public interface LimitAlgorithm {
+
+    /**
+     * Returns the current limit on the number of concurrent calls.
+     *
+     * @return the current limit, always at least one.
+     */
+    int getLimit();
+
+    /**
+     * Updates the limit from a completed call.
+     *
+     * @param rttNanos the time the call took, in nanoseconds.
+     * @param inFlight the number of calls in flight when the call was started, including itself.
+     * @param dropped  true if the call failed in a way that signals overload, such as a timeout.
+     */
+    void onSample(long rttNanos, int inFlight, boolean dropped);
+}
@@ -0,0 +1,17 @@
+package com.krs.utils.retry;
+
+/**
+ * Exception thrown when a {@link ConcurrencyLimiter} sheds a call because its limit on concurrent calls has been
+ * reached. The call was never attempted, so whether it may be retried is up to the {@link RetryPolicy} in use
+ * (see {@link RetryUtils#classifyRejections(RetryPolicy, boolean)}).<p/>
+ * <p>
+ * Rejections happen in bursts exactly when the system is overloaded, so no stack trace is captured.
+ *
+ * @author krs
+ */
+public class LimitExceededException extends RuntimeException {
+
+    public LimitExceededException(int limit) {
+        super("Concurrency limit [" + limit + "] reached.", null, false, false);
+    }
+}
@@ -7,12 +7,27 @@ package com.krs.utils.retry;
  * <p>
  * Exception thrown when a retry attempt cannot be performed by a {@link RetryPolicy} but should instead be
  * processed by a handler higher up on the stack, if any. It is similar in concept to {@link InterruptedException}
- * and {@link java.util.concurrent.TimeoutException}.
+ * and {@link java.util.concurrent.TimeoutException}.<p/>
+ * <p>
+ * Retry exceptions are mostly carriers for their cause, so for hot failure paths a lightweight form that skips
+ * {@link #fillInStackTrace()} is available through {@link #withoutStackTrace(Throwable)}. Fixed conditions that carry
+ * no cause at all are represented by the shared, preallocated {@link #CIRCUIT_OPEN} and {@link #BUDGET_EXHAUSTED}
+ * instances.
  *
  * @author krs
  */
 public class RetryException extends RuntimeException {
 
+    /**
+     * Shared instance signalling that calls are currently being rejected without being attempted.
+     */
+    public static final RetryException CIRCUIT_OPEN = new RetryException("Circuit open.", null, false);
+
+    /**
+     * Shared instance signalling that no more retries may be spent, regardless of the failure.
+     */
+    public static final RetryException BUDGET_EXHAUSTED = new RetryException("Retry budget exhausted.", null, false);
+
     public RetryException() {
     }
 
@@ -23,4 +38,39 @@ public class RetryException extends RuntimeException {
     public RetryException(Throwable cause) {
         super("Max retries reached.", cause);
     }
+
+    /**
+     * Constructs a retry exception that optionally skips capturing a stack trace. Exceptions constructed without a
+     * writable stack trace also have suppression disabled, so they are safe to share between threads.
+     *
+     * @param message            the detail message.
+     * @param cause              the cause, may be null.
+     * @param writableStackTrace whether or not the stack trace should be captured.
+     */
+    protected RetryException(String message, Throwable cause, boolean writableStackTrace) {
+        super(message, cause, writableStackTrace, writableStackTrace);
+    }
+
+    /**
+     * Returns a retry exception wrapping the specified cause, without paying for a stack walk. The cause keeps its
+     * own stack trace, which is normally the only one of interest.
+     *
+     * @param cause the exception which caused the operation to fail.
+     * @return a retry exception without a stack trace.
+     */
+    public static RetryException withoutStackTrace(Throwable cause) {
+        return withoutStackTrace("Max retries reached.", cause);
+    }
+
+    /**
+     * Returns a retry exception with the specified message wrapping the specified cause, without paying for a
+     * stack walk.
+     *
+     * @param message the detail message.
+     * @param cause   the exception which caused the operation to fail.
+     * @return a retry exception without a stack trace.
+     */
+    public static RetryException withoutStackTrace(String message, Throwable cause) {
+        return new RetryException(message, cause, false);
+    }
 }
@@ -0,0 +1,221 @@
+package com.krs.utils.retry;
+
+import com.google.common.base.Preconditions;
+
+import javax.annotation.concurrent.NotThreadSafe;
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.Collection;
+import java.util.Map;
+import java.util.zip.CRC32;
+
+/**
+ * An append-only journal of {@link DurableRetryQueue.WorkItem} changes, stored in a memory-mapped file.<p/>
+ * <p>
+ * Each record is laid out as:
+ * <pre><tt>
+ *      int    length of the rest of the record
+ *      int    CRC32 of the body
+ *      byte   type (PUT or REMOVE)
+ *      long   id
+ *      int    attempts
+ *      long   due time, in epoch millis
+ *      int    payload length
+ *      byte[] payload
+ * </tt></pre>
+ * A zero length marks the end of the journal. Replay stops at the first record that is truncated or fails its
+ * checksum, which is where a crash during a write would leave the file.<p/>
+ * <p>
+ * Appends only write to the mapped buffer; {@link #force()} makes everything appended so far durable, so callers
+ * can group many appends into one fsync. When the journal fills up, or is mostly made of superseded records,
+ * {@link #compact(Collection, int)} rewrites it with only the live items and atomically replaces the file.<p/>
+ * <p>
+ * This class is not thread safe; it is owned by the writer thread of a {@link DurableRetryQueue}.
+ *
+ * @author krs
+ */
+@NotThreadSafe
+final class RetryJournal implements Closeable {
+    static final byte PUT = 1;
+    static final byte REMOVE = 2;
+
+    private static final int LENGTH_BYTES = 4;
+    private static final int HEADER_BYTES = LENGTH_BYTES + 4;
+    private static final int BODY_BYTES = 1 + 8 + 4 + 8 + 4;
+
+    private final Path path;
+    private int capacity;
+    private FileChannel channel;
+    private MappedByteBuffer buffer;
+
+    private RetryJournal(Path path, int capacity) throws IOException {
+        this.path = path;
+        this.capacity = capacity;
+        map();
+    }
+
+    /**
+     * Opens the journal at the specified path, creating it if needed, and replays it into the specified map of
+     * live items keyed by id. The journal is positioned for appending after the last valid record.
+     */
+    static RetryJournal open(Path path, int capacity, Map<Long, DurableRetryQueue.WorkItem> live) throws IOException {
+        Preconditions.checkArgument(capacity > HEADER_BYTES + BODY_BYTES, "capacity [%s] is too small.", capacity);
+
+        int existing = Files.exists(path) ? (int) Math.min(Integer.MAX_VALUE, Files.size(path)) : 0;
+        RetryJournal journal = new RetryJournal(path, Math.max(capacity, existing));
+        journal.replay(live);
+        return journal;
+    }
+
+    static int recordSize(DurableRetryQueue.WorkItem item) {
+        return HEADER_BYTES + BODY_BYTES + item.payloadLength();
+    }
+
+    /**
+     * Returns true if a record of the specified size fits in the remaining space, leaving room for the end marker.
+     */
+    boolean hasRoom(int recordSize) {
+        return buffer.position() + recordSize + LENGTH_BYTES <= capacity;
+    }
+
+    /**
+     * Returns true if the journal is more than half full, and mostly made of superseded records.
+     *
+     * @param liveBytes the total {@link #recordSize} of the live items.
+     */
+    boolean isMostlyGarbage(long liveBytes) {
+        return buffer.position() > capacity / 2 && liveBytes < buffer.position() / 2;
+    }
+
+    void append(byte type, DurableRetryQueue.WorkItem item) {
+        int start = buffer.position();
+        int size = recordSize(item);
+
+        buffer.position(start + HEADER_BYTES);
+        buffer.put(type).putLong(item.getId()).putInt(item.getAttempts()).putLong(item.getDueMillis());
+        buffer.putInt(item.payloadLength()).put(item.payload());
+
+        buffer.putInt(start + LENGTH_BYTES, checksum(start + HEADER_BYTES, start + size));
+        // Mark the end before publishing the length, so a crash never exposes a record followed by stale bytes.
+        buffer.putInt(start + size, 0);
+        buffer.putInt(start, size - LENGTH_BYTES);
+    }
+
+    /**
+     * Makes every record appended so far durable.
+     */
+    void force() {
+        buffer.force();
+    }
+
+    /**
+     * Replaces the journal with one holding only a PUT record for each of the specified live items, growing the
+     * file until they, plus the specified number of bytes about to be appended, fill at most half of it.
+     */
+    void compact(Collection<DurableRetryQueue.WorkItem> items, int reserve) throws IOException {
+        long needed = LENGTH_BYTES + (long) reserve;
+        for (DurableRetryQueue.WorkItem item : items) {
+            needed += recordSize(item);
+        }
+        int newCapacity = capacity;
+        while (needed > newCapacity / 2 && newCapacity < Integer.MAX_VALUE / 2) {
+            newCapacity *= 2;
+        }
+
+        Path compacted = path.resolveSibling(path.getFileName() + ".compact");
+        Files.deleteIfExists(compacted);
+        RetryJournal replacement = new RetryJournal(compacted, newCapacity);
+        try {
+            for (DurableRetryQueue.WorkItem item : items) {
+                replacement.append(PUT, item);
+            }
+            replacement.force();
+            Files.move(compacted, path, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } catch (IOException | RuntimeException e) {
+            // This journal is untouched, and stays open.
+            replacement.close();
+            Files.deleteIfExists(compacted);
+            throw e;
+        }
+        syncDirectory(path);
+
+        // The replacement's mapping now backs the journal's path, positioned after its last record.
+        channel.close();
+        channel = replacement.channel;
+        buffer = replacement.buffer;
+        capacity = newCapacity;
+    }
+
+    @Override
+    public void close() throws IOException {
+        if (channel.isOpen()) {
+            buffer.force();
+            channel.close();
+        }
+    }
+
+    /**
+     * Forces the directory holding a file, so that a rename into it is durable. Not every platform can open a
+     * directory; there the rename is left to the file system.
+     */
+    private static void syncDirectory(Path file) {
+        Path dir = file.toAbsolutePath().getParent();
+        try (FileChannel channel = FileChannel.open(dir, StandardOpenOption.READ)) {
+            channel.force(true);
+        } catch (IOException e) {
+            // Directories cannot be opened on this platform.
+        }
+    }
+
+    private void map() throws IOException {
+        channel = FileChannel.open(path, StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+        buffer = channel.map(FileChannel.MapMode.READ_WRITE, 0, capacity);
+    }
+
+    private int checksum(int from, int to) {
+        ByteBuffer body = buffer.duplicate();
+        body.limit(to).position(from);
+        CRC32 crc = new CRC32();
+        crc.update(body);
+        return (int) crc.getValue();
+    }
+
+    private void replay(Map<Long, DurableRetryQueue.WorkItem> live) {
+        buffer.position(0);
+        while (buffer.remaining() >= HEADER_BYTES + BODY_BYTES) {
+            int start = buffer.position();
+            int length = buffer.getInt(start);
+            if (length < BODY_BYTES + LENGTH_BYTES || start + LENGTH_BYTES + length > capacity - LENGTH_BYTES) {
+                break;
+            }
+
+            if (checksum(start + HEADER_BYTES, start + LENGTH_BYTES + length) != buffer.getInt(start + LENGTH_BYTES)) {
+                break;
+            }
+
+            buffer.position(start + HEADER_BYTES);
+            byte type = buffer.get();
+            long id = buffer.getLong();
+            int attempts = buffer.getInt();
+            long dueMillis = buffer.getLong();
+            byte[] payload = new byte[buffer.getInt()];
+            buffer.get(payload);
+
+            if (type == PUT) {
+                live.put(id, new DurableRetryQueue.WorkItem(id, attempts, dueMillis, payload));
+            } else {
+                live.remove(id);
+            }
+        }
+
+        // Anything after the last valid record is a torn write; overwrite it from here on.
+        buffer.putInt(buffer.position(), 0);
+    }
+}
@@ -31,6 +31,8 @@ package com.krs.utils.retry;
  *      }
  * </tt></pre>
  * <p>
+ * {@link RetryUtils#execute(java.util.concurrent.Callable, RetryPolicy)} and its variants implement this loop.<p/>
+ * <p>
  * Normally, a RetryPolicy wraps a {@link com.krs.utils.retry.strategy.RetryStrategy} providing
  * the logic for {@link #beforeRetry(Throwable)}, with the wrapper providing the domain-specific logic
  * for {@link #canRetry(Throwable)}.
@@ -3,12 +3,19 @@ package com.krs.utils.retry;
 import com.google.common.base.Preconditions;
 import com.krs.utils.retry.strategy.RetryStrategy;
 
+import java.util.concurrent.Callable;
 import java.util.function.Function;
+import java.util.function.IntSupplier;
+import java.util.function.LongSupplier;
 
 /**
  * Created: 2014-04-28 09:14<p/>
  * <p>
- * Factory and utility methods for {@link RetryPolicy}.
+ * Factory and utility methods for {@link RetryPolicy}.<p/>
+ * <p>
+ * The {@code execute} methods implement the canonical retry loop described by {@link RetryPolicy}. Only the
+ * first attempt is made inline; the retry loop lives in a separate method so the success path costs no more
+ * than calling the operation directly, and nothing is allocated unless the operation fails.
  *
  * @author Kareem Shabazz
  */
@@ -52,4 +59,157 @@ public final class RetryUtils {
             }
         };
     }
+
+    /**
+     * Returns a retry policy that classifies calls shed by a {@link ConcurrencyLimiter} as retryable or not, and
+     * otherwise delegates to the specified policy. Retries of shed calls are still paced by the specified policy.
+     *
+     * @param policy          the policy to delegate to.
+     * @param retryRejections true if a {@link LimitExceededException} allows the operation to be retried.
+     * @return a retry policy wrapping the specified policy.
+     * @throws IllegalArgumentException if policy is null.
+     */
+    public static RetryPolicy classifyRejections(final RetryPolicy policy, final boolean retryRejections) {
+        Preconditions.checkNotNull(policy);
+
+        return new RetryPolicy() {
+
+            @Override
+            public boolean canRetry(Throwable t) {
+                return t instanceof LimitExceededException ? retryRejections : policy.canRetry(t);
+            }
+
+            @Override
+            public void beforeRetry(Throwable t) throws RetryException {
+                policy.beforeRetry(t);
+            }
+        };
+    }
+
+    /**
+     * Invokes the operation, retrying failures for as long as the policy allows.
+     *
+     * @param operation the operation to invoke.
+     * @param policy    the policy deciding which failures are retried.
+     * @return the result of the first successful invocation.
+     * @throws Exception the last failure, if the policy does not allow it to be retried.
+     * @throws RetryException if the policy cannot handle the attempted retry.
+     */
+    public static <T> T execute(Callable<T> operation, RetryPolicy policy) throws Exception {
+        Preconditions.checkNotNull(policy);
+        try {
+            return operation.call();
+        } catch (Exception e) {
+            return retry(operation, policy, e);
+        }
+    }
+
+    /**
+     * Invokes the operation, retrying failures for as long as the policy allows.
+     *
+     * @param operation the operation to invoke.
+     * @param policy    the policy deciding which failures are retried.
+     * @throws RuntimeException the last failure, if the policy does not allow it to be retried.
+     * @throws RetryException if the policy cannot handle the attempted retry.
+     */
+    public static void execute(Runnable operation, RetryPolicy policy) {
+        Preconditions.checkNotNull(policy);
+        try {
+            operation.run();
+        } catch (RuntimeException e) {
+            retry(operation, policy, e);
+        }
+    }
+
+    /**
+     * Invokes the operation, retrying failures for as long as the policy allows, without boxing the result.
+     *
+     * @param operation the operation to invoke.
+     * @param policy    the policy deciding which failures are retried.
+     * @return the result of the first successful invocation.
+     * @throws RuntimeException the last failure, if the policy does not allow it to be retried.
+     * @throws RetryException if the policy cannot handle the attempted retry.
+     */
+    public static int executeAsInt(IntSupplier operation, RetryPolicy policy) {
+        Preconditions.checkNotNull(policy);
+        try {
+            return operation.getAsInt();
+        } catch (RuntimeException e) {
+            return retry(operation, policy, e);
+        }
+    }
+
+    /**
+     * Invokes the operation, retrying failures for as long as the policy allows, without boxing the result.
+     *
+     * @param operation the operation to invoke.
+     * @param policy    the policy deciding which failures are retried.
+     * @return the result of the first successful invocation.
+     * @throws RuntimeException the last failure, if the policy does not allow it to be retried.
+     * @throws RetryException if the policy cannot handle the attempted retry.
+     */
+    public static long executeAsLong(LongSupplier operation, RetryPolicy policy) {
+        Preconditions.checkNotNull(policy);
+        try {
+            return operation.getAsLong();
+        } catch (RuntimeException e) {
+            return retry(operation, policy, e);
+        }
+    }
+
+    private static <T> T retry(Callable<T> operation, RetryPolicy policy, Exception failure) throws Exception {
+        Exception e = failure;
+        while (true) {
+            beforeRetry(policy, e);
+            try {
+                return operation.call();
+            } catch (Exception next) {
+                e = next;
+            }
+        }
+    }
+
+    private static void retry(Runnable operation, RetryPolicy policy, RuntimeException failure) {
+        RuntimeException e = failure;
+        while (true) {
+            beforeRetry(policy, e);
+            try {
+                operation.run();
+                return;
+            } catch (RuntimeException next) {
+                e = next;
+            }
+        }
+    }
+
+    private static int retry(IntSupplier operation, RetryPolicy policy, RuntimeException failure) {
+        RuntimeException e = failure;
+        while (true) {
+            beforeRetry(policy, e);
+            try {
+                return operation.getAsInt();
+            } catch (RuntimeException next) {
+                e = next;
+            }
+        }
+    }
+
+    private static long retry(LongSupplier operation, RetryPolicy policy, RuntimeException failure) {
+        RuntimeException e = failure;
+        while (true) {
+            beforeRetry(policy, e);
+            try {
+                return operation.getAsLong();
+            } catch (RuntimeException next) {
+                e = next;
+            }
+        }
+    }
+
+    private static <E extends Exception> void beforeRetry(RetryPolicy policy, E e) throws E {
+        if (!policy.canRetry(e)) {
+            throw e;
+        }
+        policy.beforeRetry(e);
+    }
 }
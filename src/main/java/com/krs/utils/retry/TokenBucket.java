@@ -0,0 +1,117 @@
+package com.krs.utils.retry;
+
+import com.google.common.base.Preconditions;
+import com.google.common.base.Ticker;
+
+import javax.annotation.concurrent.ThreadSafe;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * A token bucket that hands out permits at a fixed rate, allowing bursts of up to its capacity. Meant to be shared
+ * by every caller of a dependency, so the process as a whole never exceeds the rate no matter how many threads
+ * want permits at once.<p/>
+ * <p>
+ * Rather than storing a token count and refilling it, the bucket stores the time at which the next token becomes
+ * available. Refill is implied by the {@link System#nanoTime()} delta since then, so taking a token is a single CAS
+ * on one {@code long} and no refill thread or lock is needed.<p/>
+ * <p>
+ * This class is thread safe.
+ *
+ * @author krs
+ */
+@ThreadSafe
+public final class TokenBucket {
+    private final long nanosPerToken;
+    private final long burstNanos;
+    private final Ticker ticker;
+    // The time at which the next token becomes available. Never further in the past than a full bucket allows.
+    private final AtomicLong nextTokenNanos;
+
+    /**
+     * Constructs a full bucket.
+     *
+     * @param permitsPerSecond the rate at which tokens are added to the bucket.
+     * @param capacity         the maximum number of tokens the bucket holds, i.e. the largest burst allowed.
+     * @throws IllegalArgumentException if the rate or capacity is not positive.
+     */
+    public TokenBucket(double permitsPerSecond, int capacity) {
+        this(permitsPerSecond, capacity, Ticker.systemTicker());
+    }
+
+    TokenBucket(double permitsPerSecond, int capacity, Ticker ticker) {
+        Preconditions.checkArgument(permitsPerSecond > 0, "permitsPerSecond [%s] must be positive.", permitsPerSecond);
+        Preconditions.checkArgument(capacity > 0, "capacity [%s] must be positive.", capacity);
+
+        this.nanosPerToken = Math.max(1L, (long) (TimeUnit.SECONDS.toNanos(1) / permitsPerSecond));
+        this.burstNanos = (capacity - 1) * nanosPerToken;
+        this.ticker = Preconditions.checkNotNull(ticker);
+        this.nextTokenNanos = new AtomicLong(ticker.read() - burstNanos);
+    }
+
+    /**
+     * Takes a token if one is available, without waiting.
+     *
+     * @return true if a token was taken.
+     */
+    public boolean tryAcquire() {
+        long now = ticker.read();
+        while (true) {
+            long next = nextTokenNanos.get();
+            long available = Math.max(next, now - burstNanos);
+            if (available - now > 0) {
+                return false;
+            }
+            if (nextTokenNanos.compareAndSet(next, available + nanosPerToken)) {
+                return true;
+            }
+        }
+    }
+
+    /**
+     * Takes a token, waiting up to the specified time for one to become available. A token that would only become
+     * available after the timeout is not reserved.
+     *
+     * @param timeout the maximum time to wait.
+     * @param unit    the unit of timeout.
+     * @return true if a token was taken.
+     * @throws InterruptedException if the current thread is interrupted while waiting. The token stays taken.
+     */
+    public boolean tryAcquire(long timeout, TimeUnit unit) throws InterruptedException {
+        long wait = reserve(unit.toNanos(timeout));
+        if (wait < 0) {
+            return false;
+        }
+        TimeUnit.NANOSECONDS.sleep(wait);
+        return true;
+    }
+
+    /**
+     * Takes a token, waiting for as long as it takes for one to become available.
+     *
+     * @throws InterruptedException if the current thread is interrupted while waiting. The token stays taken.
+     */
+    public void acquire() throws InterruptedException {
+        TimeUnit.NANOSECONDS.sleep(reserve(Long.MAX_VALUE));
+    }
+
+    /**
+     * Reserves the next token if it becomes available within maxWaitNanos.
+     *
+     * @return the nanoseconds to wait before using the token, or -1 if it was not reserved.
+     */
+    private long reserve(long maxWaitNanos) {
+        long now = ticker.read();
+        while (true) {
+            long next = nextTokenNanos.get();
+            long available = Math.max(next, now - burstNanos);
+            long wait = Math.max(0L, available - now);
+            if (wait > maxWaitNanos) {
+                return -1L;
+            }
+            if (nextTokenNanos.compareAndSet(next, available + nanosPerToken)) {
+                return wait;
+            }
+        }
+    }
+}
@@ -11,14 +11,37 @@ import com.krs.utils.retry.RetryException;
  * A strategy that throws a {@link RetryException} when a retry is attempted. This strategy defers
  * retry behavior to a handler higher up on the stack, if any. Its primary purpose is to map retryable
  * exceptions into instances of {@link RetryException} to communicate to other handlers higher up on
- * the stack, if they exist, that a retry is possible.
+ * the stack, if they exist, that a retry is possible.<p/>
+ * <p>
+ * Since every deferred retry creates a new exception, this strategy can optionally create them without
+ * stack traces (see {@link RetryException#withoutStackTrace(Throwable)}).
  *
  * @author Kareem Shabazz
  */
 public final class DeferRetryStrategy implements RetryStrategy {
+    private final boolean captureStackTrace;
+
+    /**
+     * Constructs a strategy that defers retries with fully populated retry exceptions.
+     */
+    public DeferRetryStrategy() {
+        this(true);
+    }
+
+    /**
+     * Constructs a strategy that defers retries.
+     *
+     * @param captureStackTrace false if the retry exceptions thrown should skip capturing their stack traces.
+     */
+    public DeferRetryStrategy(boolean captureStackTrace) {
+        this.captureStackTrace = captureStackTrace;
+    }
 
     @Override
     public void beforeRetry(Throwable t) throws RetryException {
-        throw t instanceof RetryException ? (RetryException) t : new RetryException(t);
+        if (t instanceof RetryException) {
+            throw (RetryException) t;
+        }
+        throw captureStackTrace ? new RetryException(t) : RetryException.withoutStackTrace(t);
     }
 }
@@ -2,6 +2,7 @@ package com.krs.utils.retry.strategy;
 
 import com.google.common.base.Preconditions;
 import com.google.common.base.Throwables;
+import com.krs.utils.logging.ThrottledExceptionLog;
 import com.krs.utils.retry.RetryException;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -16,6 +17,10 @@ import java.util.concurrent.atomic.AtomicInteger;
  * A strategy that sleeps a specific amount of time between subsequent retries, up to a maximum number
  * of retries.<p/>
  * <p>
+ * Each retry is logged as an error with its stack trace. When many threads fail at once, a shared
+ * {@link ThrottledExceptionLog} can be supplied so repeated failures are only counted, and retries can be sent
+ * to a logger other than this class's own.<p/>
+ * <p>
  * This class is thread safe.
  *
  * @author Kareem Shabazz
@@ -27,6 +32,8 @@ public final class DelayRetryStrategy implements RetryStrategy {
     private final long sleepMillis;
     private final int maxAttempts;
     private final AtomicInteger retryCount = new AtomicInteger(0);
+    private final ThrottledExceptionLog throttle;
+    private final Logger logger;
 
     /**
      * Constructs a strategy that sleeps a specific amount of time between retry attempts, up to a
@@ -42,11 +49,53 @@ public final class DelayRetryStrategy implements RetryStrategy {
             TimeUnit unit,
             int maxAttempts) {
 
+        this(time, unit, maxAttempts, null);
+    }
+
+    /**
+     * Constructs a strategy that sleeps a specific amount of time between retry attempts, up to a
+     * maximum number of attempts, logging retries through the specified throttle.
+     *
+     * @param time        amount of time to sleep between retries.
+     * @param unit        the unit of sleep time.
+     * @param maxAttempts the maximum number of retries to attempt.
+     * @param throttle    the throttle deciding which retries are logged in full, or null to log every retry.
+     * @throws IllegalArgumentException if maxAttempts or sleepTime is negative.
+     */
+    public DelayRetryStrategy(
+            long time,
+            TimeUnit unit,
+            int maxAttempts,
+            ThrottledExceptionLog throttle) {
+
+        this(time, unit, maxAttempts, throttle, LOGGER);
+    }
+
+    /**
+     * Constructs a strategy that sleeps a specific amount of time between retry attempts, up to a
+     * maximum number of attempts, logging retries through the specified throttle to the specified logger.
+     *
+     * @param time        amount of time to sleep between retries.
+     * @param unit        the unit of sleep time.
+     * @param maxAttempts the maximum number of retries to attempt.
+     * @param throttle    the throttle deciding which retries are logged in full, or null to log every retry.
+     * @param logger      the logger retries are logged to.
+     * @throws IllegalArgumentException if maxAttempts or sleepTime is negative.
+     */
+    public DelayRetryStrategy(
+            long time,
+            TimeUnit unit,
+            int maxAttempts,
+            ThrottledExceptionLog throttle,
+            Logger logger) {
+
         Preconditions.checkArgument(maxAttempts > 0, "maxAttempts [%s] cannot be negative.", maxAttempts);
         Preconditions.checkArgument(time > 0, "sleepTime [%s] cannot be negative.", time);
 
         this.sleepMillis = unit.toMillis(time);
         this.maxAttempts = maxAttempts;
+        this.throttle = throttle;
+        this.logger = Preconditions.checkNotNull(logger);
     }
 
     /**
@@ -59,14 +108,17 @@ public final class DelayRetryStrategy implements RetryStrategy {
 
     /**
      * Invoked immediately before the thread is put to sleep. This implementation logs the retry as
-     * an error.
+     * an error, unless the throttle, if any, suppresses it.
      *
      * @param t           the exception which caused the retry attempt.
      * @param retryCount  the number of attempts that have occurred.
      * @param sleepMillis the number of milliseconds to sleep.
      */
     void beforeSleep(Throwable t, long retryCount, long sleepMillis) {
-        LOGGER.error("Waiting {} ms before retry attempt #{}", sleepMillis, retryCount, t);
+        if (throttle != null && !throttle.record(t)) {
+            return;
+        }
+        logger.error("Waiting {} ms before retry attempt #{}", sleepMillis, retryCount, t);
     }
 
     @Override
@@ -1,6 +1,7 @@
 package com.krs.utils.retry.strategy;
 
 import com.google.common.base.Preconditions;
+import com.krs.utils.logging.ThrottledExceptionLog;
 import com.krs.utils.retry.RetryException;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -15,7 +16,10 @@ import java.util.concurrent.atomic.AtomicLong;
  * Time: 4:04:20 PM<p/>
  * <p>
  * A strategy that sleeps an exponentially increasing amount of time between subsequent retries, starting
- * at a minimum duration and increasing the sleep time after each retry up to a maximum duration.
+ * at a minimum duration and increasing the sleep time after each retry up to a maximum duration.<p/>
+ * <p>
+ * Each retry is logged as a warning with its stack trace. When many threads fail at once, a shared
+ * {@link ThrottledExceptionLog} can be supplied so repeated failures are only counted.
  *
  * @author Kareem Shabazz
  */
@@ -27,6 +31,7 @@ public final class ExponentialDelayRetryStrategy implements RetryStrategy {
     private final long maxWaitMillis;
     private final int maxAttempts;
     private final AtomicLong retryCount = new AtomicLong(0);
+    private final ThrottledExceptionLog throttle;
 
     /**
      * Create an exponential retry strategy that sleeps {@code minTime} on the first retry and increases
@@ -44,9 +49,31 @@ public final class ExponentialDelayRetryStrategy implements RetryStrategy {
             int maxTime,
             int maxAttempts) {
 
+        this(maxUnit, maxTime, maxAttempts, null);
+    }
+
+    /**
+     * Create an exponential retry strategy that sleeps {@code minTime} on the first retry and increases
+     * exponentially the amount of sleep time on each subsequent retry, up to a maximum of {@code maxTime},
+     * up to a maximum number of attempts, logging retries through the specified throttle.
+     *
+     * @param maxUnit     unit for max time.
+     * @param maxTime     the amount of time to max sleep.
+     * @param maxAttempts the maximum number of retries to attempt.
+     * @param throttle    the throttle deciding which retries are logged in full, or null to log every retry.
+     * @throws IllegalArgumentException if the min time is negative or greater than the max time,
+     *                                  or max attempts is negative.
+     */
+    public ExponentialDelayRetryStrategy(
+            TimeUnit maxUnit,
+            int maxTime,
+            int maxAttempts,
+            ThrottledExceptionLog throttle) {
+
         this.minWaitMillis = 5l;
         this.maxWaitMillis = TimeUnit.MILLISECONDS.convert((long) maxTime, maxUnit);
         this.maxAttempts = maxAttempts;
+        this.throttle = throttle;
 
         Preconditions.checkArgument(maxAttempts > 0, "maxAttempts [%s] cannot be negative.", maxAttempts);
         Preconditions.checkArgument(maxWaitMillis > 0, "min [%s] time cannot be negative.", minWaitMillis);
@@ -64,13 +91,16 @@ public final class ExponentialDelayRetryStrategy implements RetryStrategy {
 
     /**
      * Invoked immediately before the thread is put to sleep. This implementation logs the retry as
-     * an warn.
+     * an warn, unless the throttle, if any, suppresses it.
      *
      * @param t           the exception which caused the retry attempt.
      * @param retryCount  the number of attempts that have occurred.
      * @param sleepMillis the number of milliseconds to sleep.
      */
     void beforeSleep(Throwable t, long retryCount, long sleepMillis) {
+        if (throttle != null && !throttle.record(t)) {
+            return;
+        }
         LOGGER.warn("Waiting {} ms before retry attempt #{}", sleepMillis, retryCount, t);
     }
 
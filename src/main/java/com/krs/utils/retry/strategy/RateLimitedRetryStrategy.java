@@ -0,0 +1,71 @@
+package com.krs.utils.retry.strategy;
+
+import com.google.common.base.Preconditions;
+import com.krs.utils.retry.RetryException;
+import com.krs.utils.retry.TokenBucket;
+
+import javax.annotation.concurrent.ThreadSafe;
+
+/**
+ * A strategy that paces retries through a shared {@link TokenBucket}, on top of the behavior of the strategy it
+ * wraps. Where {@link DelayRetryStrategy} paces each caller independently, sharing one bucket between the strategies
+ * of every caller of a dependency bounds the retries sent to it per second across the whole process.<p/>
+ * <p>
+ * The wrapped strategy runs first, so attempts it refuses do not consume tokens. Then, in blocking mode, the retry
+ * waits for a token; otherwise, if no token is available the retry is deferred by throwing a
+ * {@link RetryException} wrapping the original failure.<p/>
+ * <p>
+ * This class is thread safe if the wrapped strategy is.
+ *
+ * @author krs
+ */
+@ThreadSafe
+public final class RateLimitedRetryStrategy implements RetryStrategy {
+    private final RetryStrategy strategy;
+    private final TokenBucket bucket;
+    private final boolean blocking;
+
+    /**
+     * Constructs a strategy that waits for a token before each retry.
+     *
+     * @param strategy the strategy to wrap.
+     * @param bucket   the bucket shared by every caller to be paced together.
+     */
+    public RateLimitedRetryStrategy(RetryStrategy strategy, TokenBucket bucket) {
+        this(strategy, bucket, true);
+    }
+
+    /**
+     * Constructs a strategy that paces retries through the specified bucket.
+     *
+     * @param strategy the strategy to wrap.
+     * @param bucket   the bucket shared by every caller to be paced together.
+     * @param blocking true to wait for a token, false to defer the retry if none is available.
+     */
+    public RateLimitedRetryStrategy(RetryStrategy strategy, TokenBucket bucket, boolean blocking) {
+        this.strategy = Preconditions.checkNotNull(strategy);
+        this.bucket = Preconditions.checkNotNull(bucket);
+        this.blocking = blocking;
+    }
+
+    @Override
+    public void beforeRetry(Throwable t) throws RetryException {
+        strategy.beforeRetry(t);
+
+        if (!blocking) {
+            if (!bucket.tryAcquire()) {
+                throw RetryException.withoutStackTrace("Retry rate limit reached.", t);
+            }
+            return;
+        }
+
+        try {
+            bucket.acquire();
+        } catch (InterruptedException ie) {
+            Thread.currentThread().interrupt();
+            // If we're interrupted, presumably someone wants to cancel this and handle the retry in
+            // their own way.
+            throw new RetryException(ie);
+        }
+    }
+}
@@ -0,0 +1,252 @@
+package com.krs.utils.threads;
+
+import com.google.common.base.Preconditions;
+
+import javax.annotation.concurrent.ThreadSafe;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Consumer;
+
+/**
+ * Coalesces individually submitted items into batches, so that work which is cheaper done in bulk, such as writes
+ * to a file, socket or database, costs one operation per batch rather than one per item. A single thread hands
+ * the batch handler a {@code List} of items as soon as either the maximum batch size is reached, or the maximum
+ * delay has passed since the first item of the batch arrived.<p/>
+ * <p>
+ * Items wait in a bounded queue. {@link #submit(Object)} blocks while it is full, pushing back on producers that
+ * outpace the handler, while {@link #offer(Object)} fails instead. Exceptions thrown by the handler are logged by
+ * {@link ThreadUtils#exceptionLogger()} and do not stop the executor. {@link #shutdown()} flushes every item
+ * already accepted before the thread exits. Interrupting the thread shuts the executor down in the same way.<p/>
+ * <p>
+ * For example:
+ * <pre><tt>
+ *      BatchingExecutor&lt;Event&gt; writer = new BatchingExecutor&lt;&gt;(
+ *              "event-writer-%d", events -> store.insertAll(events), 500, 10, TimeUnit.MILLISECONDS, 10000);
+ *      writer.submit(event);
+ * </tt></pre>
+ * <p>
+ * This class is thread safe.
+ *
+ * @author krs
+ */
+@ThreadSafe
+public final class BatchingExecutor<T> {
+    // Upper bound on how long the thread waits for an item before checking for shutdown.
+    private static final long MAX_IDLE_NANOS = TimeUnit.MILLISECONDS.toNanos(100);
+
+    private final Consumer<? super List<T>> handler;
+    private final int maxBatchSize;
+    private final long maxDelayNanos;
+    private final BlockingQueue<T> queue;
+    private final AtomicInteger submitting = new AtomicInteger();
+    private final CountDownLatch terminated = new CountDownLatch(1);
+    private volatile boolean shutdown;
+
+    /**
+     * Constructs an executor running the handler on a named daemon thread.
+     *
+     * @param nameFormat   the format string used to name the thread, e.g.: "Batch writer %d"
+     * @param handler      processes each batch.
+     * @param maxBatchSize the largest batch handed to the handler.
+     * @param maxDelay     the longest the first item of a batch waits for more items to join it.
+     * @param unit         the unit of maxDelay.
+     * @param capacity     the maximum number of items waiting to be batched.
+     * @see ThreadUtils#newNamedDaemonThreadFactory(String)
+     */
+    public BatchingExecutor(
+            String nameFormat,
+            Consumer<? super List<T>> handler,
+            int maxBatchSize,
+            long maxDelay,
+            TimeUnit unit,
+            int capacity) {
+
+        this(ThreadUtils.newNamedDaemonThreadFactory(nameFormat), handler, maxBatchSize, maxDelay, unit, capacity);
+    }
+
+    /**
+     * Constructs an executor.
+     *
+     * @param threadFactory the factory for the batching thread.
+     * @param handler       processes each batch.
+     * @param maxBatchSize  the largest batch handed to the handler.
+     * @param maxDelay      the longest the first item of a batch waits for more items to join it.
+     * @param unit          the unit of maxDelay.
+     * @param capacity      the maximum number of items waiting to be batched.
+     */
+    public BatchingExecutor(
+            ThreadFactory threadFactory,
+            Consumer<? super List<T>> handler,
+            int maxBatchSize,
+            long maxDelay,
+            TimeUnit unit,
+            int capacity) {
+
+        Preconditions.checkArgument(maxBatchSize > 0, "maxBatchSize [%s] must be positive.", maxBatchSize);
+        Preconditions.checkArgument(maxDelay >= 0, "maxDelay [%s] must not be negative.", maxDelay);
+
+        this.handler = Preconditions.checkNotNull(handler);
+        this.maxBatchSize = maxBatchSize;
+        this.maxDelayNanos = unit.toNanos(maxDelay);
+        this.queue = new ArrayBlockingQueue<>(capacity);
+        threadFactory.newThread(this::runLoop).start();
+    }
+
+    /**
+     * Adds an item to the next batch, waiting for space if the queue is full.
+     *
+     * @throws RejectedExecutionException if the executor has been shut down.
+     * @throws InterruptedException       if interrupted while waiting for space.
+     */
+    public void submit(T item) throws InterruptedException {
+        Preconditions.checkNotNull(item);
+        enter();
+        try {
+            queue.put(item);
+        } finally {
+            submitting.decrementAndGet();
+        }
+    }
+
+    /**
+     * Adds an item to the next batch if there is space for it.
+     *
+     * @return false if the queue is full.
+     * @throws RejectedExecutionException if the executor has been shut down.
+     */
+    public boolean offer(T item) {
+        Preconditions.checkNotNull(item);
+        enter();
+        try {
+            return queue.offer(item);
+        } finally {
+            submitting.decrementAndGet();
+        }
+    }
+
+    /**
+     * Adds an item to the next batch, waiting up to the specified time for space if the queue is full.
+     *
+     * @return false if no space became available in time.
+     * @throws RejectedExecutionException if the executor has been shut down.
+     * @throws InterruptedException       if interrupted while waiting for space.
+     */
+    public boolean offer(T item, long timeout, TimeUnit unit) throws InterruptedException {
+        Preconditions.checkNotNull(item);
+        enter();
+        try {
+            return queue.offer(item, timeout, unit);
+        } finally {
+            submitting.decrementAndGet();
+        }
+    }
+
+    /**
+     * Returns the number of items waiting to be batched.
+     */
+    public int getQueueSize() {
+        return queue.size();
+    }
+
+    /**
+     * Stops accepting items. Items already accepted are flushed to the handler without waiting for the batch delay.
+     */
+    public void shutdown() {
+        shutdown = true;
+    }
+
+    public boolean isShutdown() {
+        return shutdown;
+    }
+
+    public boolean isTerminated() {
+        return terminated.getCount() == 0;
+    }
+
+    /**
+     * Waits until every accepted item has been handled after a shutdown, or the timeout elapses.
+     *
+     * @return true if the executor terminated.
+     */
+    public boolean awaitTermination(long timeout, TimeUnit unit) throws InterruptedException {
+        return terminated.await(timeout, unit);
+    }
+
+    private void enter() {
+        // Registering before checking the flag means the thread cannot finish while an accepted item is in transit.
+        submitting.incrementAndGet();
+        if (shutdown) {
+            submitting.decrementAndGet();
+            throw new RejectedExecutionException("Batching executor has been shut down.");
+        }
+    }
+
+    private void runLoop() {
+        try {
+            while (true) {
+                T first = queue.poll(MAX_IDLE_NANOS, TimeUnit.NANOSECONDS);
+                if (first == null) {
+                    if (shutdown && submitting.get() == 0 && queue.isEmpty()) {
+                        return;
+                    }
+                    continue;
+                }
+                List<T> batch = new ArrayList<>(Math.min(maxBatchSize, 1024));
+                batch.add(first);
+                fill(batch);
+                flush(batch);
+            }
+        } catch (InterruptedException e) {
+            // Stop accepting items, then hand over whatever has been accepted, including items still in transit,
+            // before exiting.
+            shutdown = true;
+            while (true) {
+                List<T> rest = new ArrayList<>();
+                queue.drainTo(rest);
+                for (int i = 0; i < rest.size(); i += maxBatchSize) {
+                    flush(new ArrayList<>(rest.subList(i, Math.min(rest.size(), i + maxBatchSize))));
+                }
+                if (rest.isEmpty()) {
+                    if (submitting.get() == 0 && queue.isEmpty()) {
+                        break;
+                    }
+                    Thread.yield();
+                }
+            }
+        } finally {
+            terminated.countDown();
+        }
+    }
+
+    /**
+     * Adds items to the batch until it is full, or the batch delay has passed, or the executor is shut down.
+     */
+    private void fill(List<T> batch) throws InterruptedException {
+        long deadline = System.nanoTime() + maxDelayNanos;
+        while (batch.size() < maxBatchSize) {
+            if (queue.drainTo(batch, maxBatchSize - batch.size()) > 0) {
+                continue;
+            }
+            long remaining = deadline - System.nanoTime();
+            if (remaining <= 0 || shutdown) {
+                return;
+            }
+            // Wake up periodically, so a shutdown flushes a long-delayed batch promptly.
+            T next = queue.poll(Math.min(remaining, MAX_IDLE_NANOS), TimeUnit.NANOSECONDS);
+            if (next != null) {
+                batch.add(next);
+            }
+        }
+    }
+
+    private void flush(List<T> batch) {
+        ThreadUtils.guard(() -> handler.accept(batch)).run();
+    }
+}
@@ -0,0 +1,274 @@
+package com.krs.utils.threads;
+
+import com.google.common.base.Preconditions;
+import com.krs.utils.Env;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import javax.annotation.concurrent.NotThreadSafe;
+import javax.annotation.concurrent.ThreadSafe;
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * An {@link InstrumentedThreadPoolExecutor} that sizes itself. Once per sample period a controller compares the
+ * queue wait, throughput and CPU time of the period against the previous one, and grows or shrinks the pool by one
+ * thread within the configured bounds:
+ * <ul>
+ * <li>while tasks wait no longer than the target, the pool has threads to spare, and shrinks;</li>
+ * <li>while the pool's threads already use nearly all of the machine's CPU, more threads would only add
+ * contention, so the size holds;</li>
+ * <li>otherwise the controller hill-climbs on throughput: it keeps moving the size in the same direction while
+ * throughput improves, and reverses once a move stops paying off, which is where blocking-heavy and CPU-heavy
+ * workloads settle at different sizes.</li>
+ * </ul>
+ * Threads are named through {@link NamedThreadFactory}, so resizing shows up in thread dumps, and each change is
+ * logged at debug.<p/>
+ * <p>
+ * This class is thread safe.
+ *
+ * @author krs
+ */
+@ThreadSafe
+public class ElasticThreadPoolExecutor extends InstrumentedThreadPoolExecutor {
+    private static final Logger LOGGER = LoggerFactory.getLogger(ElasticThreadPoolExecutor.class);
+    private static final ThreadMXBean THREADS = ManagementFactory.getThreadMXBean();
+    private static final double MAX_CPU_UTILIZATION = 0.9;
+
+    private final Set<Thread> workers;
+    private final HillClimber climber;
+    private final ScheduledExecutorService tuner;
+    private final long samplePeriodNanos;
+    // Only accessed by the tuner thread.
+    private final Map<Thread, Long> lastCpuNanos = new HashMap<>();
+    private long lastCompleted;
+    private long lastWaitNanos;
+    private long lastWaitCount;
+
+    /**
+     * Constructs a pool that samples once a second.
+     *
+     * @param nameFormat    the format string used to name new Threads, in the form expected by String.format().
+     *                      E.g.: "Worker %d"
+     * @param minThreads    the smallest size the pool shrinks to; also its initial size.
+     * @param maxThreads    the largest size the pool grows to.
+     * @param queueCapacity the maximum number of tasks waiting for a thread.
+     * @param targetWait    the mean queue wait the pool sizes itself to stay under.
+     * @param unit          the unit of targetWait.
+     */
+    public ElasticThreadPoolExecutor(
+            String nameFormat,
+            int minThreads,
+            int maxThreads,
+            int queueCapacity,
+            long targetWait,
+            TimeUnit unit) {
+
+        this(nameFormat, minThreads, maxThreads, queueCapacity, targetWait, unit, 1, TimeUnit.SECONDS);
+    }
+
+    /**
+     * Constructs a pool.
+     *
+     * @param nameFormat    the format string used to name new Threads, in the form expected by String.format().
+     * @param minThreads    the smallest size the pool shrinks to; also its initial size.
+     * @param maxThreads    the largest size the pool grows to.
+     * @param queueCapacity the maximum number of tasks waiting for a thread.
+     * @param targetWait    the mean queue wait the pool sizes itself to stay under.
+     * @param waitUnit      the unit of targetWait.
+     * @param samplePeriod  the time between resizing decisions.
+     * @param periodUnit    the unit of samplePeriod.
+     * @throws IllegalArgumentException if the bounds are not positive and ordered.
+     */
+    public ElasticThreadPoolExecutor(
+            String nameFormat,
+            int minThreads,
+            int maxThreads,
+            int queueCapacity,
+            long targetWait,
+            TimeUnit waitUnit,
+            long samplePeriod,
+            TimeUnit periodUnit) {
+
+        this(new NamedThreadFactory(nameFormat), ConcurrentHashMap.newKeySet(), minThreads, maxThreads, queueCapacity,
+                waitUnit.toNanos(targetWait), periodUnit.toNanos(samplePeriod), nameFormat);
+    }
+
+    private ElasticThreadPoolExecutor(
+            ThreadFactory threadFactory,
+            Set<Thread> workers,
+            int minThreads,
+            int maxThreads,
+            int queueCapacity,
+            long targetWaitNanos,
+            long samplePeriodNanos,
+            String nameFormat) {
+
+        super(minThreads, minThreads, 0L, TimeUnit.MILLISECONDS, new LinkedBlockingQueue<>(queueCapacity),
+                r -> {
+                    Thread t = threadFactory.newThread(r);
+                    workers.add(t);
+                    return t;
+                },
+                new AbortPolicy());
+
+        Preconditions.checkArgument(samplePeriodNanos > 0, "samplePeriod [%s] must be positive.", samplePeriodNanos);
+        this.workers = workers;
+        this.climber = new HillClimber(minThreads, maxThreads, targetWaitNanos);
+        this.samplePeriodNanos = samplePeriodNanos;
+        this.tuner = Executors.newSingleThreadScheduledExecutor(
+                ThreadUtils.newNamedDaemonThreadFactory(nameFormat.replace("%d", "tuner-%d")));
+        this.tuner.scheduleAtFixedRate(
+                ThreadUtils.guard(this::adjust), samplePeriodNanos, samplePeriodNanos, TimeUnit.NANOSECONDS);
+    }
+
+    public int getMinThreads() {
+        return climber.minThreads;
+    }
+
+    public int getMaxThreads() {
+        return climber.maxThreads;
+    }
+
+    @Override
+    protected void terminated() {
+        tuner.shutdown();
+        super.terminated();
+    }
+
+    /**
+     * Samples the last period and applies the controller's decision.
+     */
+    private void adjust() {
+        if (isShutdown()) {
+            return;
+        }
+
+        long completed = getExecutionTime().getCount();
+        long waitNanos = getQueueWait().getTotalNanos();
+        long waitCount = getQueueWait().getCount();
+        long cpuNanos = workerCpuDeltaNanos();
+
+        double throughput = (completed - lastCompleted) * 1e9 / samplePeriodNanos;
+        long started = waitCount - lastWaitCount;
+        long meanWaitNanos;
+        if (started > 0) {
+            meanWaitNanos = (waitNanos - lastWaitNanos) / started;
+        } else {
+            // Tasks still queued count as waiting the whole period, so a stalled pool is not mistaken for an idle one.
+            meanWaitNanos = getQueue().isEmpty() ? 0 : samplePeriodNanos;
+        }
+        double cpu = cpuNanos < 0 ? 0.0
+                : (double) cpuNanos / samplePeriodNanos / Env.effectiveProcessors();
+
+        lastCompleted = completed;
+        lastWaitNanos = waitNanos;
+        lastWaitCount = waitCount;
+
+        int current = getCorePoolSize();
+        int next = climber.next(current, throughput, meanWaitNanos, cpu);
+        if (next != current) {
+            LOGGER.debug("Resizing pool from {} to {} threads: throughput={}/s, meanWaitNanos={}, cpu={}",
+                    current, next, (long) throughput, meanWaitNanos, cpu);
+            resize(next);
+        }
+    }
+
+    private void resize(int size) {
+        // The core size may never exceed the maximum size, so the order of the two updates depends on direction.
+        if (size > getCorePoolSize()) {
+            setMaximumPoolSize(size);
+            setCorePoolSize(size);
+        } else {
+            setCorePoolSize(size);
+            setMaximumPoolSize(size);
+        }
+    }
+
+    /**
+     * Returns the CPU time used by the live pool threads since the last sample, or -1 if it cannot be measured.
+     */
+    private long workerCpuDeltaNanos() {
+        if (!THREADS.isThreadCpuTimeSupported() || !THREADS.isThreadCpuTimeEnabled()) {
+            return -1;
+        }
+        long delta = 0;
+        for (Iterator<Thread> it = workers.iterator(); it.hasNext(); ) {
+            Thread t = it.next();
+            long cpu = t.isAlive() ? THREADS.getThreadCpuTime(t.getId()) : -1;
+            if (cpu < 0) {
+                it.remove();
+                lastCpuNanos.remove(t);
+                continue;
+            }
+            Long previous = lastCpuNanos.put(t, cpu);
+            delta += cpu - (previous == null ? 0 : previous);
+        }
+        return delta;
+    }
+
+    /**
+     * Decides the next pool size from one period's samples. Not thread safe; used only by the tuner thread.
+     */
+    @NotThreadSafe
+    static final class HillClimber {
+        // A move must change throughput by more than this fraction to count as better or worse.
+        private static final double TOLERANCE = 0.05;
+
+        private final int minThreads;
+        private final int maxThreads;
+        private final long targetWaitNanos;
+        private int direction = 1;
+        private double lastThroughput = -1;
+
+        HillClimber(int minThreads, int maxThreads, long targetWaitNanos) {
+            Preconditions.checkArgument(minThreads > 0, "minThreads [%s] must be positive.", minThreads);
+            Preconditions.checkArgument(maxThreads >= minThreads,
+                    "maxThreads [%s] must not be less than minThreads [%s].", maxThreads, minThreads);
+            Preconditions.checkArgument(targetWaitNanos >= 0, "targetWait [%s] cannot be negative.", targetWaitNanos);
+
+            this.minThreads = minThreads;
+            this.maxThreads = maxThreads;
+            this.targetWaitNanos = targetWaitNanos;
+        }
+
+        /**
+         * Returns the pool size for the next period.
+         *
+         * @param current       the current pool size.
+         * @param throughput    tasks completed per second in the last period.
+         * @param meanWaitNanos the mean queue wait of tasks started in the last period.
+         * @param cpu           the fraction of the machine's CPU used by the pool in the last period.
+         */
+        int next(int current, double throughput, long meanWaitNanos, double cpu) {
+            int next;
+            if (meanWaitNanos <= targetWaitNanos) {
+                // No queueing to speak of: give a thread back, and restart the climb from here next time.
+                next = current - 1;
+                direction = 1;
+                lastThroughput = -1;
+            } else if (cpu >= MAX_CPU_UTILIZATION) {
+                next = current;
+                lastThroughput = throughput;
+            } else {
+                if (lastThroughput >= 0 && throughput < lastThroughput * (1 + TOLERANCE)) {
+                    // The last move did not pay off, so try the other way.
+                    direction = -direction;
+                }
+                lastThroughput = throughput;
+                next = current + direction;
+            }
+            return Math.max(minThreads, Math.min(maxThreads, next));
+        }
+    }
+}
@@ -0,0 +1,173 @@
+package com.krs.utils.threads;
+
+import com.google.common.base.Preconditions;
+
+import javax.annotation.concurrent.ThreadSafe;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.AbstractExecutorService;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * An executor that runs every task on a single thread, in submission order, fed by a bounded
+ * {@link MpscArrayQueue}. Submitting a task costs one compare-and-set and, only when the loop is idle, an
+ * unpark; the loop drains tasks in batches without taking any lock. This suits fan-in workloads where many
+ * threads hand small tasks to one owner of some state.<p/>
+ * <p>
+ * Tasks that throw are logged by {@link ThreadUtils#exceptionLogger()} and do not stop the loop. Tasks submitted
+ * while the queue is full are rejected with a {@code RejectedExecutionException}, leaving the caller to decide
+ * whether to retry, drop or run the task itself. Tasks queued before {@link #shutdown()} still run.<p/>
+ * <p>
+ * This class is thread safe.
+ *
+ * @author krs
+ */
+@ThreadSafe
+public final class EventLoopExecutor extends AbstractExecutorService {
+    private static final int RUNNING = 0;
+    private static final int SHUTDOWN = 1;
+    private static final int STOP = 2;
+    private static final int MAX_BATCH = 1024;
+
+    private final MpscArrayQueue<Runnable> queue;
+    private final AtomicInteger state = new AtomicInteger(RUNNING);
+    private final CountDownLatch terminated = new CountDownLatch(1);
+    private final List<Runnable> unprocessed = new ArrayList<>();
+    private final Thread thread;
+    private volatile boolean sleeping;
+
+    /**
+     * Constructs an event loop running on a named daemon thread.
+     *
+     * @param nameFormat the format string used to name the loop thread, e.g.: "Event loop %d"
+     * @param capacity   the maximum number of queued tasks, rounded up to a power of two.
+     * @see ThreadUtils#newNamedDaemonThreadFactory(String)
+     */
+    public EventLoopExecutor(String nameFormat, int capacity) {
+        this(ThreadUtils.newNamedDaemonThreadFactory(nameFormat), capacity);
+    }
+
+    /**
+     * Constructs an event loop.
+     *
+     * @param threadFactory the factory for the loop thread.
+     * @param capacity      the maximum number of queued tasks, rounded up to a power of two.
+     */
+    public EventLoopExecutor(ThreadFactory threadFactory, int capacity) {
+        this.queue = new MpscArrayQueue<>(capacity);
+        this.thread = threadFactory.newThread(this::runLoop);
+        this.thread.start();
+    }
+
+    @Override
+    public void execute(Runnable command) {
+        Preconditions.checkNotNull(command);
+        if (!queue.offer(command)) {
+            throw new RejectedExecutionException(
+                    isShutdown() ? "Event loop has been shut down." : "Event loop queue is full.");
+        }
+        if (sleeping) {
+            LockSupport.unpark(thread);
+        }
+    }
+
+    /**
+     * Returns true if the current thread is the loop thread, for example to run a task directly rather than
+     * queueing it behind others.
+     */
+    public boolean inEventLoop() {
+        return Thread.currentThread() == thread;
+    }
+
+    /**
+     * Returns the number of tasks waiting to run.
+     */
+    public int getQueueSize() {
+        return queue.size();
+    }
+
+    @Override
+    public void shutdown() {
+        state.compareAndSet(RUNNING, SHUTDOWN);
+        queue.close();
+        LockSupport.unpark(thread);
+    }
+
+    /**
+     * Stops the loop after the task in progress, if any, and returns the tasks that never ran. If invoked from a
+     * task on the loop thread, an empty list is returned and the pending tasks are discarded.
+     */
+    @Override
+    public List<Runnable> shutdownNow() {
+        state.set(STOP);
+        queue.close();
+        LockSupport.unpark(thread);
+        if (inEventLoop()) {
+            return new ArrayList<>();
+        }
+        try {
+            terminated.await();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        return new ArrayList<>(unprocessed);
+    }
+
+    @Override
+    public boolean isShutdown() {
+        return state.get() != RUNNING;
+    }
+
+    @Override
+    public boolean isTerminated() {
+        return terminated.getCount() == 0;
+    }
+
+    @Override
+    public boolean awaitTermination(long timeout, TimeUnit unit) throws InterruptedException {
+        return terminated.await(timeout, unit);
+    }
+
+    private void runLoop() {
+        try {
+            while (state.get() != STOP) {
+                int ran = 0;
+                Runnable task;
+                while (ran < MAX_BATCH && state.get() != STOP && (task = queue.poll()) != null) {
+                    runTask(task);
+                    ran++;
+                }
+                if (ran > 0) {
+                    continue;
+                }
+                if (queue.isClosed() && queue.isEmpty()) {
+                    break;
+                }
+
+                // Publish that the loop is idle before the final check, so a producer either sees the flag and
+                // unparks, or its task is seen here.
+                sleeping = true;
+                if (queue.isEmpty() && state.get() == RUNNING) {
+                    LockSupport.park(this);
+                }
+                sleeping = false;
+            }
+        } finally {
+            queue.drain(unprocessed::add, Integer.MAX_VALUE);
+            terminated.countDown();
+        }
+    }
+
+    private static void runTask(Runnable task) {
+        try {
+            task.run();
+        } catch (Throwable t) {
+            ThreadUtils.exceptionLogger().uncaughtException(Thread.currentThread(), t);
+        }
+    }
+}
@@ -1,5 +1,6 @@
 package com.krs.utils.threads;
 
+import com.krs.utils.logging.ThrottledExceptionLog;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -8,7 +9,8 @@ import org.slf4j.LoggerFactory;
  * Date: Aug 27, 2014
  * Time: 4:12:30 PM<p/>
  *
- * An exception handler that logs throwables, and their callstacks, as errors.
+ * An exception handler that logs throwables, and their callstacks, as errors. A throttled variant logs only the
+ * first occurrence of each repeating failure in full, and counts the rest; see {@link ThrottledExceptionLog}.
  *
  * @author krs
  */
@@ -17,10 +19,23 @@ final class ExceptionLogger implements Thread.UncaughtExceptionHandler {
     static final ExceptionLogger INSTANCE = new ExceptionLogger();
     private static final Logger LOGGER = LoggerFactory.getLogger(ExceptionLogger.class);
 
+    private final ThrottledExceptionLog throttle;
+
     private ExceptionLogger() {
+        this(null);
+    }
+
+    /**
+     * Constructs a handler that logs only the throwables the specified throttle lets through, or every throwable if
+     * the throttle is null.
+     */
+    ExceptionLogger(ThrottledExceptionLog throttle) {
+        this.throttle = throttle;
     }
 
     public void uncaughtException(Thread t, Throwable e) {
-        LOGGER.error("Uncaught exception for thread: {}", t, e);
+        if (throttle == null || throttle.record(e)) {
+            LOGGER.error("Uncaught exception for thread: {}", t, e);
+        }
     }
 }
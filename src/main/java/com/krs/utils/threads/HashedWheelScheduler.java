@@ -0,0 +1,438 @@
+package com.krs.utils.threads;
+
+import com.google.common.base.Preconditions;
+
+import javax.annotation.concurrent.ThreadSafe;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.AbstractExecutorService;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Delayed;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Executors;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.RunnableScheduledFuture;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * A {@link ScheduledExecutorService} backed by a hashed timing wheel, for scheduling very large numbers of short
+ * timeouts and delayed tasks. Time is divided into ticks; a task due in {@code n} ticks goes in bucket
+ * {@code (now + n) % wheelSize} with {@code n / wheelSize} remaining rounds, so scheduling and cancelling are O(1),
+ * unlike the O(log n) heap behind {@link java.util.concurrent.ScheduledThreadPoolExecutor}.<p/>
+ * <p>
+ * A single tick thread owns the wheel. Other threads never touch it: new tasks and cancellations are handed over
+ * through lock-free multi-producer queues, and drained by the tick thread once per tick. Tasks run no earlier than
+ * their delay, and up to one tick late. By default they run on the tick thread, so they should be short; pass an
+ * executor to run them elsewhere.<p/>
+ * <p>
+ * As with {@code ScheduledThreadPoolExecutor}'s defaults, delayed tasks still run after {@link #shutdown()}, while
+ * periodic tasks are cancelled.<p/>
+ * <p>
+ * This class is thread safe.
+ *
+ * @author krs
+ */
+@ThreadSafe
+public final class HashedWheelScheduler extends AbstractExecutorService implements ScheduledExecutorService {
+    private static final int RUNNING = 0;
+    private static final int SHUTDOWN = 1;
+    private static final int STOP = 2;
+    private static final int MAX_TRANSFERS_PER_TICK = 100000;
+
+    private final long tickNanos;
+    private final Bucket[] wheel;
+    private final int mask;
+    private final Executor taskExecutor;
+    private final Queue<WheelTask<?>> submissions = new ConcurrentLinkedQueue<>();
+    private final Queue<WheelTask<?>> cancellations = new ConcurrentLinkedQueue<>();
+    private final AtomicInteger state = new AtomicInteger(RUNNING);
+    private final CountDownLatch terminated = new CountDownLatch(1);
+    private final List<Runnable> unprocessed = new ArrayList<>();
+    private final long startNanos;
+    private final Thread worker;
+
+    /**
+     * Constructs a scheduler with a ten millisecond tick and 512 buckets, running tasks on its tick thread.
+     *
+     * @param nameFormat the format string used to name the tick thread, e.g.: "Timer %d"
+     * @see ThreadUtils#newNamedDaemonThreadFactory(String)
+     */
+    public HashedWheelScheduler(String nameFormat) {
+        this(nameFormat, 10, TimeUnit.MILLISECONDS, 512);
+    }
+
+    /**
+     * Constructs a scheduler running tasks on its tick thread.
+     *
+     * @param nameFormat   the format string used to name the tick thread, e.g.: "Timer %d"
+     * @param tickDuration the resolution of the wheel.
+     * @param unit         the unit of tickDuration.
+     * @param wheelSize    the number of buckets, rounded up to a power of two.
+     */
+    public HashedWheelScheduler(String nameFormat, long tickDuration, TimeUnit unit, int wheelSize) {
+        this(ThreadUtils.newNamedDaemonThreadFactory(nameFormat), tickDuration, unit, wheelSize, null);
+    }
+
+    /**
+     * Constructs a scheduler.
+     *
+     * @param threadFactory the factory for the tick thread.
+     * @param tickDuration  the resolution of the wheel.
+     * @param unit          the unit of tickDuration.
+     * @param wheelSize     the number of buckets, rounded up to a power of two.
+     * @param taskExecutor  the executor tasks are run on when due, or null to run them on the tick thread.
+     * @throws IllegalArgumentException if tickDuration or wheelSize is not positive.
+     */
+    public HashedWheelScheduler(
+            ThreadFactory threadFactory,
+            long tickDuration,
+            TimeUnit unit,
+            int wheelSize,
+            Executor taskExecutor) {
+
+        Preconditions.checkArgument(tickDuration > 0, "tickDuration [%s] must be positive.", tickDuration);
+        Preconditions.checkArgument(wheelSize > 0 && wheelSize <= 1 << 30, "wheelSize [%s] out of range.", wheelSize);
+
+        this.tickNanos = unit.toNanos(tickDuration);
+        int size = Integer.highestOneBit(wheelSize - 1) << 1;
+        this.wheel = new Bucket[Math.max(1, size)];
+        for (int i = 0; i < wheel.length; i++) {
+            wheel[i] = new Bucket();
+        }
+        this.mask = wheel.length - 1;
+        this.taskExecutor = taskExecutor;
+        this.startNanos = System.nanoTime();
+        this.worker = threadFactory.newThread(this::runWorker);
+        this.worker.start();
+    }
+
+    @Override
+    public ScheduledFuture<?> schedule(Runnable command, long delay, TimeUnit unit) {
+        Preconditions.checkNotNull(command);
+        return enqueue(new WheelTask<Void>(command, null, deadline(delay, unit), 0));
+    }
+
+    @Override
+    public <V> ScheduledFuture<V> schedule(Callable<V> callable, long delay, TimeUnit unit) {
+        Preconditions.checkNotNull(callable);
+        return enqueue(new WheelTask<>(callable, deadline(delay, unit), 0));
+    }
+
+    @Override
+    public ScheduledFuture<?> scheduleAtFixedRate(Runnable command, long initialDelay, long period, TimeUnit unit) {
+        Preconditions.checkNotNull(command);
+        Preconditions.checkArgument(period > 0, "period [%s] must be positive.", period);
+        return enqueue(new WheelTask<Void>(command, null, deadline(initialDelay, unit), unit.toNanos(period)));
+    }
+
+    @Override
+    public ScheduledFuture<?> scheduleWithFixedDelay(Runnable command, long initialDelay, long delay, TimeUnit unit) {
+        Preconditions.checkNotNull(command);
+        Preconditions.checkArgument(delay > 0, "delay [%s] must be positive.", delay);
+        return enqueue(new WheelTask<Void>(command, null, deadline(initialDelay, unit), -unit.toNanos(delay)));
+    }
+
+    @Override
+    public void execute(Runnable command) {
+        schedule(command, 0, TimeUnit.NANOSECONDS);
+    }
+
+    @Override
+    public void shutdown() {
+        state.compareAndSet(RUNNING, SHUTDOWN);
+    }
+
+    /**
+     * Stops the tick thread and returns the tasks that never ran. If invoked from a task running on the tick thread,
+     * the tasks are cancelled instead, and an empty list is returned.
+     */
+    @Override
+    public List<Runnable> shutdownNow() {
+        state.set(STOP);
+        LockSupport.unpark(worker);
+        if (Thread.currentThread() == worker) {
+            return new ArrayList<>();
+        }
+        try {
+            terminated.await();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        return new ArrayList<>(unprocessed);
+    }
+
+    @Override
+    public boolean isShutdown() {
+        return state.get() != RUNNING;
+    }
+
+    @Override
+    public boolean isTerminated() {
+        return terminated.getCount() == 0;
+    }
+
+    @Override
+    public boolean awaitTermination(long timeout, TimeUnit unit) throws InterruptedException {
+        return terminated.await(timeout, unit);
+    }
+
+    private long deadline(long delay, TimeUnit unit) {
+        // Clamp so deadlines far in the future cannot overflow.
+        return System.nanoTime() + Math.min(Math.max(0L, unit.toNanos(delay)), Long.MAX_VALUE >> 1);
+    }
+
+    private <V> WheelTask<V> enqueue(WheelTask<V> task) {
+        if (isShutdown()) {
+            throw new RejectedExecutionException("Scheduler has been shut down.");
+        }
+        submissions.add(task);
+        return task;
+    }
+
+    private void runWorker() {
+        long tick = 0;
+        int pending = 0;
+        boolean periodicCancelled = false;
+        try {
+            while (true) {
+                int s = state.get();
+                if (s == STOP) {
+                    break;
+                }
+                if (s == SHUTDOWN) {
+                    if (!periodicCancelled) {
+                        cancelPeriodic();
+                        periodicCancelled = true;
+                    }
+                    if (pending == 0 && submissions.isEmpty()) {
+                        break;
+                    }
+                }
+
+                waitForTick(tick);
+                pending -= processCancellations();
+                pending += transferSubmissions(tick);
+                pending -= expire(wheel[(int) (tick & mask)]);
+                tick++;
+            }
+        } finally {
+            drainUnprocessed();
+            terminated.countDown();
+        }
+    }
+
+    private void waitForTick(long tick) {
+        long deadline = startNanos + (tick + 1) * tickNanos;
+        while (state.get() != STOP) {
+            long sleepNanos = deadline - System.nanoTime();
+            if (sleepNanos <= 0) {
+                return;
+            }
+            LockSupport.parkNanos(this, sleepNanos);
+        }
+    }
+
+    private int processCancellations() {
+        int removed = 0;
+        WheelTask<?> task;
+        while ((task = cancellations.poll()) != null) {
+            if (task.bucket != null) {
+                task.bucket.remove(task);
+                removed++;
+            }
+        }
+        return removed;
+    }
+
+    private int transferSubmissions(long tick) {
+        int added = 0;
+        WheelTask<?> task;
+        while (added < MAX_TRANSFERS_PER_TICK && (task = submissions.poll()) != null) {
+            if (task.isCancelled()) {
+                continue;
+            }
+            long dueTick = (task.deadlineNanos - startNanos) / tickNanos;
+            task.remainingRounds = (dueTick - tick) / wheel.length;
+            // Tasks already due go in the current bucket, which is expired straight after this.
+            wheel[(int) (Math.max(dueTick, tick) & mask)].add(task);
+            added++;
+        }
+        return added;
+    }
+
+    private int expire(Bucket bucket) {
+        int expired = 0;
+        WheelTask<?> task = bucket.head;
+        while (task != null) {
+            WheelTask<?> next = task.next;
+            if (task.remainingRounds <= 0) {
+                bucket.remove(task);
+                expired++;
+                dispatch(task);
+            } else {
+                task.remainingRounds--;
+            }
+            task = next;
+        }
+        return expired;
+    }
+
+    private void dispatch(WheelTask<?> task) {
+        if (taskExecutor == null) {
+            task.run();
+            return;
+        }
+        try {
+            taskExecutor.execute(task);
+        } catch (RejectedExecutionException e) {
+            task.cancel(false);
+        }
+    }
+
+    private void cancelPeriodic() {
+        for (Bucket bucket : wheel) {
+            for (WheelTask<?> task = bucket.head; task != null; task = task.next) {
+                if (task.isPeriodic()) {
+                    task.cancel(false);
+                }
+            }
+        }
+        for (WheelTask<?> task : submissions) {
+            if (task.isPeriodic()) {
+                task.cancel(false);
+            }
+        }
+    }
+
+    private void drainUnprocessed() {
+        for (Bucket bucket : wheel) {
+            while (bucket.head != null) {
+                WheelTask<?> task = bucket.head;
+                bucket.remove(task);
+                if (!task.isCancelled()) {
+                    unprocessed.add(task);
+                }
+            }
+        }
+        WheelTask<?> task;
+        while ((task = submissions.poll()) != null) {
+            if (!task.isCancelled()) {
+                unprocessed.add(task);
+            }
+        }
+        if (Thread.currentThread() == worker && state.get() == STOP) {
+            for (Runnable r : unprocessed) {
+                ((WheelTask<?>) r).cancel(false);
+            }
+        }
+    }
+
+    /**
+     * A doubly-linked list of the tasks hashed to one slot of the wheel. Only accessed by the tick thread.
+     */
+    private static final class Bucket {
+        private WheelTask<?> head;
+        private WheelTask<?> tail;
+
+        private void add(WheelTask<?> task) {
+            task.bucket = this;
+            if (head == null) {
+                head = tail = task;
+            } else {
+                tail.next = task;
+                task.prev = tail;
+                tail = task;
+            }
+        }
+
+        private void remove(WheelTask<?> task) {
+            if (task.prev != null) {
+                task.prev.next = task.next;
+            } else {
+                head = task.next;
+            }
+            if (task.next != null) {
+                task.next.prev = task.prev;
+            } else {
+                tail = task.prev;
+            }
+            task.prev = task.next = null;
+            task.bucket = null;
+        }
+    }
+
+    /**
+     * A task in the wheel. Its links, bucket and remaining rounds are only accessed by the tick thread.
+     */
+    private final class WheelTask<V> extends FutureTask<V> implements RunnableScheduledFuture<V> {
+        // Positive for fixed-rate, negative for fixed-delay, zero for one-shot tasks.
+        private final long periodNanos;
+        private volatile long deadlineNanos;
+        private long remainingRounds;
+        private Bucket bucket;
+        private WheelTask<?> prev;
+        private WheelTask<?> next;
+
+        private WheelTask(Runnable runnable, V result, long deadlineNanos, long periodNanos) {
+            super(runnable, result);
+            this.deadlineNanos = deadlineNanos;
+            this.periodNanos = periodNanos;
+        }
+
+        private WheelTask(Callable<V> callable, long deadlineNanos, long periodNanos) {
+            super(callable);
+            this.deadlineNanos = deadlineNanos;
+            this.periodNanos = periodNanos;
+        }
+
+        @Override
+        public boolean isPeriodic() {
+            return periodNanos != 0;
+        }
+
+        @Override
+        public long getDelay(TimeUnit unit) {
+            return unit.convert(deadlineNanos - System.nanoTime(), TimeUnit.NANOSECONDS);
+        }
+
+        @Override
+        public int compareTo(Delayed other) {
+            if (other == this) {
+                return 0;
+            }
+            return Long.compare(getDelay(TimeUnit.NANOSECONDS), other.getDelay(TimeUnit.NANOSECONDS));
+        }
+
+        @Override
+        public boolean cancel(boolean mayInterruptIfRunning) {
+            boolean cancelled = super.cancel(mayInterruptIfRunning);
+            if (cancelled) {
+                cancellations.add(this);
+            }
+            return cancelled;
+        }
+
+        @Override
+        public void run() {
+            if (!isPeriodic()) {
+                super.run();
+            } else if (runAndReset()) {
+                if (state.get() != RUNNING) {
+                    super.cancel(false);
+                    return;
+                }
+                deadlineNanos = periodNanos > 0 ? deadlineNanos + periodNanos : System.nanoTime() - periodNanos;
+                submissions.add(this);
+            }
+        }
+    }
+}
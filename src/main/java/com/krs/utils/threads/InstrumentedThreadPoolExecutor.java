@@ -0,0 +1,158 @@
+package com.krs.utils.threads;
+
+import com.google.common.base.Preconditions;
+
+import javax.annotation.concurrent.ThreadSafe;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.RejectedExecutionHandler;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * A {@link ThreadPoolExecutor} that records, for every task, how long it waited in the queue and how long it ran,
+ * along with the number of rejected tasks and of threads currently running tasks. The recording uses striped
+ * counters only, so unlike {@link #getActiveCount()} and {@link #getCompletedTaskCount()} reading or updating the
+ * metrics never takes the pool's main lock.<p/>
+ * <p>
+ * Tasks are wrapped with their enqueue time on the way in. As a consequence {@link #getQueue()} holds the wrappers
+ * rather than the submitted tasks, and {@link #remove(Runnable)} only finds tasks through those wrappers;
+ * {@link #shutdownNow()} unwraps the tasks it returns.<p/>
+ * <p>
+ * This class is thread safe.
+ *
+ * @author krs
+ * @see ThreadUtils#newInstrumentedThreadPool(String, int, int)
+ */
+@ThreadSafe
+public class InstrumentedThreadPoolExecutor extends ThreadPoolExecutor {
+    private final LatencyHistogram queueWait = new LatencyHistogram();
+    private final LatencyHistogram executionTime = new LatencyHistogram();
+    private final LongAdder rejected = new LongAdder();
+    private final LongAdder active = new LongAdder();
+
+    /**
+     * Constructs an instrumented pool; the parameters are as for {@link ThreadPoolExecutor}.
+     */
+    public InstrumentedThreadPoolExecutor(
+            int corePoolSize,
+            int maximumPoolSize,
+            long keepAliveTime,
+            TimeUnit unit,
+            BlockingQueue<Runnable> workQueue,
+            ThreadFactory threadFactory,
+            RejectedExecutionHandler handler) {
+
+        super(corePoolSize, maximumPoolSize, keepAliveTime, unit, workQueue, threadFactory, new AbortPolicy());
+        setRejectedExecutionHandler(handler);
+    }
+
+    @Override
+    public void execute(Runnable command) {
+        super.execute(new TimedTask(Preconditions.checkNotNull(command)));
+    }
+
+    @Override
+    public void setRejectedExecutionHandler(RejectedExecutionHandler handler) {
+        super.setRejectedExecutionHandler(new CountingHandler(Preconditions.checkNotNull(handler)));
+    }
+
+    @Override
+    public RejectedExecutionHandler getRejectedExecutionHandler() {
+        return ((CountingHandler) super.getRejectedExecutionHandler()).inner;
+    }
+
+    @Override
+    public List<Runnable> shutdownNow() {
+        List<Runnable> pending = super.shutdownNow();
+        List<Runnable> unwrapped = new ArrayList<>(pending.size());
+        for (Runnable r : pending) {
+            unwrapped.add(r instanceof TimedTask ? ((TimedTask) r).inner : r);
+        }
+        return unwrapped;
+    }
+
+    /**
+     * Returns the time tasks spent queued before a thread started running them.
+     */
+    public LatencyHistogram getQueueWait() {
+        return queueWait;
+    }
+
+    /**
+     * Returns the time tasks spent running, including ones that threw.
+     */
+    public LatencyHistogram getExecutionTime() {
+        return executionTime;
+    }
+
+    /**
+     * Returns the number of tasks handed to the rejected execution handler.
+     */
+    public long getRejectedCount() {
+        return rejected.sum();
+    }
+
+    /**
+     * Returns the number of threads currently running a task, without taking the pool's main lock.
+     */
+    public int getActiveThreads() {
+        return active.intValue();
+    }
+
+    @Override
+    public String toString() {
+        return super.toString() + "{queueWait=" + queueWait + ", executionTime=" + executionTime
+                + ", rejected=" + getRejectedCount() + "}";
+    }
+
+    /**
+     * A task stamped with the time it was submitted.
+     */
+    private final class TimedTask implements Runnable {
+        private final Runnable inner;
+        private final long enqueuedNanos = System.nanoTime();
+
+        private TimedTask(Runnable inner) {
+            this.inner = inner;
+        }
+
+        @Override
+        public void run() {
+            long start = System.nanoTime();
+            queueWait.record(start - enqueuedNanos);
+            active.increment();
+            try {
+                inner.run();
+            } finally {
+                active.decrement();
+                executionTime.record(System.nanoTime() - start);
+            }
+        }
+
+        @Override
+        public String toString() {
+            return inner.toString();
+        }
+    }
+
+    /**
+     * Counts rejections before delegating to the configured handler, which is passed the submitted task.
+     */
+    private final class CountingHandler implements RejectedExecutionHandler {
+        private final RejectedExecutionHandler inner;
+
+        private CountingHandler(RejectedExecutionHandler inner) {
+            this.inner = inner;
+        }
+
+        @Override
+        public void rejectedExecution(Runnable r, ThreadPoolExecutor executor) {
+            rejected.increment();
+            inner.rejectedExecution(r instanceof TimedTask ? ((TimedTask) r).inner : r, executor);
+        }
+    }
+}
@@ -0,0 +1,149 @@
+package com.krs.utils.threads;
+
+import com.google.common.base.Preconditions;
+
+import javax.annotation.concurrent.ThreadSafe;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * An executor that runs tasks submitted with the same key one at a time, in submission order, while tasks with
+ * different keys run in parallel. Keys are hashed onto a fixed number of serial lanes, each a single thread with
+ * its own queue, so ordering needs no per-key locks and no lock shared between lanes. Keys that hash to the same
+ * lane are serialized with each other too, so the number of lanes bounds the parallelism.<p/>
+ * <p>
+ * Runnable tasks are guarded with {@link ThreadUtils#guard(Runnable)}, so a task that throws is logged and the lane
+ * moves on to the next task rather than losing its thread. Callable tasks report their failure through the
+ * returned future.<p/>
+ * <p>
+ * For example:
+ * <pre><tt>
+ *      KeyedOrderedExecutor executor = new KeyedOrderedExecutor("account-%d", 8);
+ *      executor.execute(event.getAccountId(), () -> apply(event));
+ * </tt></pre>
+ * <p>
+ * This class is thread safe.
+ *
+ * @author krs
+ */
+@ThreadSafe
+public final class KeyedOrderedExecutor {
+    private final ExecutorService[] lanes;
+
+    /**
+     * Constructs an executor with the specified number of lanes.
+     *
+     * @param nameFormat the format string used to name the lane threads, in the form expected by String.format().
+     *                   E.g.: "Account %d"
+     * @param laneCount  the number of lanes, and so the maximum number of keys processed in parallel.
+     * @see NamedThreadFactory
+     */
+    public KeyedOrderedExecutor(String nameFormat, int laneCount) {
+        this(new NamedThreadFactory(nameFormat), laneCount);
+    }
+
+    /**
+     * Constructs an executor with the specified number of lanes.
+     *
+     * @param threadFactory the factory for the lane threads.
+     * @param laneCount     the number of lanes, and so the maximum number of keys processed in parallel.
+     */
+    public KeyedOrderedExecutor(ThreadFactory threadFactory, int laneCount) {
+        Preconditions.checkNotNull(threadFactory);
+        Preconditions.checkArgument(laneCount > 0, "laneCount [%s] must be positive.", laneCount);
+
+        this.lanes = new ExecutorService[laneCount];
+        for (int i = 0; i < laneCount; i++) {
+            lanes[i] = new ThreadPoolExecutor(1, 1, 0L, TimeUnit.MILLISECONDS, new LinkedBlockingQueue<>(), threadFactory);
+        }
+    }
+
+    /**
+     * Runs the task after every task previously submitted with an equal key.
+     *
+     * @param key  the ordering key.
+     * @param task the task to run.
+     * @throws java.util.concurrent.RejectedExecutionException if the executor has been shut down.
+     */
+    public void execute(Object key, Runnable task) {
+        laneFor(key).execute(ThreadUtils.guard(task));
+    }
+
+    /**
+     * Runs the task after every task previously submitted with an equal key.
+     *
+     * @param key  the ordering key.
+     * @param task the task to run.
+     * @return a future holding the result of the task.
+     * @throws java.util.concurrent.RejectedExecutionException if the executor has been shut down.
+     */
+    public <V> Future<V> submit(Object key, Callable<V> task) {
+        return laneFor(key).submit(Preconditions.checkNotNull(task));
+    }
+
+    public int getLaneCount() {
+        return lanes.length;
+    }
+
+    /**
+     * Stops accepting tasks. Tasks already submitted still run, in order.
+     */
+    public void shutdown() {
+        for (ExecutorService lane : lanes) {
+            lane.shutdown();
+        }
+    }
+
+    /**
+     * Stops accepting tasks, interrupts running ones and returns those that never started.
+     */
+    public List<Runnable> shutdownNow() {
+        List<Runnable> pending = new ArrayList<>();
+        for (ExecutorService lane : lanes) {
+            pending.addAll(lane.shutdownNow());
+        }
+        return pending;
+    }
+
+    public boolean isShutdown() {
+        return lanes[0].isShutdown();
+    }
+
+    public boolean isTerminated() {
+        for (ExecutorService lane : lanes) {
+            if (!lane.isTerminated()) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Waits until every lane has terminated after a shutdown, or the timeout elapses.
+     *
+     * @return true if every lane terminated.
+     */
+    public boolean awaitTermination(long timeout, TimeUnit unit) throws InterruptedException {
+        long deadline = System.nanoTime() + unit.toNanos(timeout);
+        for (ExecutorService lane : lanes) {
+            if (!lane.awaitTermination(deadline - System.nanoTime(), TimeUnit.NANOSECONDS)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    ExecutorService laneFor(Object key) {
+        int h = Preconditions.checkNotNull(key).hashCode();
+        // Spread the high bits down, as HashMap does, so keys differing only in high bits use different lanes.
+        h ^= h >>> 16;
+        return lanes[(h & Integer.MAX_VALUE) % lanes.length];
+    }
+}
@@ -0,0 +1,121 @@
+package com.krs.utils.threads;
+
+import com.google.common.base.Preconditions;
+
+import javax.annotation.concurrent.ThreadSafe;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAccumulator;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * A histogram of durations in nanoseconds, with one bucket per power of two. Recording a value costs a
+ * leading-zero count and two {@link LongAdder} increments, which are striped across cells under contention, so it
+ * can sit on the hot path of every task without becoming a point of contention itself.<p/>
+ * <p>
+ * Percentiles are reported as the upper bound of the bucket they fall in, so they overstate the true value by at
+ * most a factor of two. That is coarse, but enough to tell microseconds from milliseconds from seconds.<p/>
+ * <p>
+ * This class is thread safe. Reads taken while values are being recorded are not an atomic snapshot.
+ *
+ * @author krs
+ */
+@ThreadSafe
+public final class LatencyHistogram {
+    private static final int BUCKETS = 64;
+
+    private final LongAdder[] buckets = new LongAdder[BUCKETS];
+    private final LongAdder total = new LongAdder();
+    private final LongAccumulator max = new LongAccumulator(Long::max, 0L);
+
+    public LatencyHistogram() {
+        for (int i = 0; i < BUCKETS; i++) {
+            buckets[i] = new LongAdder();
+        }
+    }
+
+    /**
+     * Records a duration. Negative durations, which can only come from a misbehaving clock, are recorded as zero.
+     *
+     * @param nanos the duration in nanoseconds.
+     */
+    public void record(long nanos) {
+        long value = Math.max(0L, nanos);
+        // Bucket i holds values in [2^(i-1), 2^i); zero goes in bucket 0.
+        buckets[Math.min(BUCKETS - 1, 64 - Long.numberOfLeadingZeros(value))].increment();
+        total.add(value);
+        max.accumulate(value);
+    }
+
+    /**
+     * Returns the number of durations recorded.
+     */
+    public long getCount() {
+        long count = 0;
+        for (LongAdder bucket : buckets) {
+            count += bucket.sum();
+        }
+        return count;
+    }
+
+    /**
+     * Returns the sum of the durations recorded, in nanoseconds.
+     */
+    public long getTotalNanos() {
+        return total.sum();
+    }
+
+    /**
+     * Returns the longest duration recorded, in nanoseconds.
+     */
+    public long getMaxNanos() {
+        return max.get();
+    }
+
+    /**
+     * Returns the mean duration recorded, in the specified unit, or zero if none have been.
+     */
+    public double getMean(TimeUnit unit) {
+        long count = getCount();
+        return count == 0 ? 0.0 : (double) getTotalNanos() / count / unit.toNanos(1);
+    }
+
+    /**
+     * Returns an upper bound on the specified percentile of the durations recorded, in nanoseconds.
+     *
+     * @param percentile the percentile, between 0 and 100.
+     * @return the upper bound of the bucket holding the percentile, or zero if nothing has been recorded.
+     */
+    public long getPercentileNanos(double percentile) {
+        Preconditions.checkArgument(percentile >= 0 && percentile <= 100, "percentile [%s] out of range.", percentile);
+
+        long[] counts = new long[BUCKETS];
+        long count = 0;
+        for (int i = 0; i < BUCKETS; i++) {
+            counts[i] = buckets[i].sum();
+            count += counts[i];
+        }
+        if (count == 0) {
+            return 0;
+        }
+
+        long rank = (long) Math.ceil(count * percentile / 100.0);
+        long seen = 0;
+        for (int i = 0; i < BUCKETS; i++) {
+            seen += counts[i];
+            if (seen >= rank && counts[i] > 0) {
+                long upperBound = i == 0 ? 0 : (i >= 63 ? Long.MAX_VALUE : (1L << i) - 1);
+                return Math.min(upperBound, getMaxNanos());
+            }
+        }
+        return getMaxNanos();
+    }
+
+    @Override
+    public String toString() {
+        return "LatencyHistogram{count=" + getCount()
+                + ", meanNanos=" + (long) getMean(TimeUnit.NANOSECONDS)
+                + ", p50Nanos=" + getPercentileNanos(50)
+                + ", p99Nanos=" + getPercentileNanos(99)
+                + ", maxNanos=" + getMaxNanos() + "}";
+    }
+}
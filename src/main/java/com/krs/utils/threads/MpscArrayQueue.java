@@ -0,0 +1,153 @@
+package com.krs.utils.threads;
+
+import com.google.common.base.Preconditions;
+
+import javax.annotation.concurrent.ThreadSafe;
+import java.util.AbstractQueue;
+import java.util.Iterator;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.function.Consumer;
+
+/**
+ * A bounded, lock-free queue for any number of producer threads and one consumer thread, backed by a ring buffer.
+ * Unlike {@link java.util.concurrent.LinkedBlockingQueue} it allocates nothing per element and takes no locks:
+ * producers claim a slot with one compare-and-set on the producer index, then publish into it with an ordered
+ * store. The producer and consumer indices are padded onto separate cache lines.<p/>
+ * <p>
+ * Elements are removed only by {@link #poll} and {@link #drain}, which, like {@link #peek}, must only be invoked
+ * from the one consumer thread. Iteration, and with it {@code toString}, {@code contains} and {@code toArray}, is
+ * weakly consistent and may be used from any thread.<p/>
+ * <p>
+ * This class is thread safe for many producers and one consumer.
+ *
+ * @author krs
+ * @see SpscArrayQueue
+ */
+@ThreadSafe
+public final class MpscArrayQueue<E> extends AbstractQueue<E> {
+    // Set in the producer index once the queue is closed, after which every offer fails.
+    private static final long CLOSED = Long.MIN_VALUE;
+
+    private final PaddedAtomicLong producerIndex = new PaddedAtomicLong(0);
+    private final PaddedAtomicLong consumerIndex = new PaddedAtomicLong(0);
+    private final AtomicReferenceArray<E> buffer;
+    private final int mask;
+
+    /**
+     * Constructs a queue.
+     *
+     * @param capacity the maximum number of elements, rounded up to a power of two.
+     */
+    public MpscArrayQueue(int capacity) {
+        Preconditions.checkArgument(capacity > 0 && capacity <= 1 << 30, "capacity [%s] out of range.", capacity);
+        int size = capacity == 1 ? 1 : Integer.highestOneBit(capacity - 1) << 1;
+        this.buffer = new AtomicReferenceArray<>(size);
+        this.mask = size - 1;
+    }
+
+    @Override
+    public boolean offer(E e) {
+        Preconditions.checkNotNull(e);
+        long p;
+        do {
+            p = producerIndex.get();
+            if (p < 0 || p - consumerIndex.get() > mask) {
+                return false;
+            }
+        } while (!producerIndex.compareAndSet(p, p + 1));
+
+        // The consumer clears a slot before advancing past it, so the claimed slot is already empty.
+        buffer.lazySet((int) p & mask, e);
+        return true;
+    }
+
+    @Override
+    public E poll() {
+        long c = consumerIndex.get();
+        int index = (int) c & mask;
+        E e = buffer.get(index);
+        if (e == null) {
+            if (c == producerIndex()) {
+                return null;
+            }
+            // A producer has claimed the slot but not yet published into it; it is at most a few stores away.
+            do {
+                e = buffer.get(index);
+            } while (e == null);
+        }
+        buffer.lazySet(index, null);
+        consumerIndex.lazySet(c + 1);
+        return e;
+    }
+
+    @Override
+    public E peek() {
+        long c = consumerIndex.get();
+        int index = (int) c & mask;
+        E e = buffer.get(index);
+        if (e == null && c != producerIndex()) {
+            do {
+                e = buffer.get(index);
+            } while (e == null);
+        }
+        return e;
+    }
+
+    /**
+     * Removes up to the specified number of elements, passing each to the consumer.
+     *
+     * @return the number of elements removed.
+     */
+    public int drain(Consumer<? super E> consumer, int limit) {
+        int drained = 0;
+        E e;
+        while (drained < limit && (e = poll()) != null) {
+            consumer.accept(e);
+            drained++;
+        }
+        return drained;
+    }
+
+    @Override
+    public int size() {
+        return (int) Math.max(0, Math.min(capacity(), producerIndex() - consumerIndex.get()));
+    }
+
+    @Override
+    public boolean isEmpty() {
+        return producerIndex() == consumerIndex.get();
+    }
+
+    public int capacity() {
+        return mask + 1;
+    }
+
+    /**
+     * Returns a weakly consistent iterator over the elements between the consumer and the producer when it is
+     * invoked. It may be used from any thread, but does not support removal, so neither does
+     * {@link #remove(Object)}.
+     */
+    @Override
+    public Iterator<E> iterator() {
+        long c = consumerIndex.get();
+        return new RingBufferIterator<>(buffer, mask, c, Math.min(c + capacity(), producerIndex()));
+    }
+
+    /**
+     * Makes every later offer fail. Elements already offered can still be polled.
+     */
+    void close() {
+        long p;
+        do {
+            p = producerIndex.get();
+        } while (p >= 0 && !producerIndex.compareAndSet(p, p | CLOSED));
+    }
+
+    boolean isClosed() {
+        return producerIndex.get() < 0;
+    }
+
+    private long producerIndex() {
+        return producerIndex.get() & ~CLOSED;
+    }
+}
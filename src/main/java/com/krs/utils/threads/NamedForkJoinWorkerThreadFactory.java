@@ -0,0 +1,66 @@
+package com.krs.utils.threads;
+
+import com.google.common.base.Preconditions;
+import com.google.common.base.Strings;
+
+import javax.annotation.concurrent.ThreadSafe;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinWorkerThread;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * The {@link ForkJoinPool} counterpart of {@link NamedThreadFactory}. It wraps a worker thread factory, and renames
+ * the workers it creates using a format string. The format string should be in the form expected by
+ * String.format(). It is passed the worker number as an integer substitution.<p/>
+ * <p>
+ * Workers are also given an {@code UncaughtExceptionHandler}, by default one that logs the exception as an error.
+ * Fork/join workers are always daemon threads.
+ *
+ * @author krs
+ * @see ThreadUtils#newWorkStealingPool(String, int)
+ */
+@ThreadSafe
+public class NamedForkJoinWorkerThreadFactory implements ForkJoinPool.ForkJoinWorkerThreadFactory {
+    private final ForkJoinPool.ForkJoinWorkerThreadFactory threadFactory;
+    private final Thread.UncaughtExceptionHandler handler;
+    private final AtomicInteger threadNumber = new AtomicInteger(0);
+    private final String nameFormat;
+
+    /**
+     * Constructs a factory wrapping the default fork/join worker factory, whose workers log uncaught exceptions.
+     *
+     * @param nameFormat the format string used to name new workers, in the form expected by String.format(). The
+     * format string is passed the worker number as an integer substitution during construction. E.g.: "Worker %d"
+     * @see ForkJoinPool#defaultForkJoinWorkerThreadFactory
+     */
+    public NamedForkJoinWorkerThreadFactory(String nameFormat) {
+        this(ForkJoinPool.defaultForkJoinWorkerThreadFactory, nameFormat, ThreadUtils.exceptionLogger());
+    }
+
+    /**
+     * Constructs a factory that wraps an already existing worker factory.
+     *
+     * @param threadFactory the worker factory to wrap.
+     * @param nameFormat the format string used to name new workers, in the form expected by String.format().
+     * @param handler the handler to set on each worker.
+     */
+    public NamedForkJoinWorkerThreadFactory(
+            ForkJoinPool.ForkJoinWorkerThreadFactory threadFactory,
+            String nameFormat,
+            Thread.UncaughtExceptionHandler handler) {
+
+        Preconditions.checkArgument(!Strings.isNullOrEmpty(nameFormat));
+
+        this.threadFactory = Preconditions.checkNotNull(threadFactory);
+        this.handler = Preconditions.checkNotNull(handler);
+        this.nameFormat = nameFormat;
+    }
+
+    @Override
+    public ForkJoinWorkerThread newThread(ForkJoinPool pool) {
+        ForkJoinWorkerThread t = threadFactory.newThread(pool);
+        t.setName(String.format(nameFormat, threadNumber.getAndIncrement()));
+        t.setUncaughtExceptionHandler(handler);
+        return t;
+    }
+}
@@ -50,6 +50,13 @@ public class NamedThreadFactory implements ThreadFactory {
         this.nameFormat = nameFormat;
     }
 
+    /**
+     * Returns the format string used to name new Threads.
+     */
+    public String getNameFormat() {
+        return nameFormat;
+    }
+
     @Override
     public Thread newThread(Runnable r) {
         Thread t = threadFactory.newThread(r);
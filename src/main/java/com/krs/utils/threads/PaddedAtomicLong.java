@@ -0,0 +1,19 @@
+package com.krs.utils.threads;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * An {@link AtomicLong} followed by enough unused fields to fill the rest of a 64 byte cache line, so that two
+ * instances allocated one after the other never share a line. Used for queue indices written by different threads,
+ * where false sharing would otherwise make each write invalidate the other thread's cache.
+ *
+ * @author krs
+ */
+@SuppressWarnings("unused")
+final class PaddedAtomicLong extends AtomicLong {
+    private long p1, p2, p3, p4, p5, p6, p7;
+
+    PaddedAtomicLong(long initialValue) {
+        super(initialValue);
+    }
+}
@@ -0,0 +1,51 @@
+package com.krs.utils.threads;
+
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/**
+ * A weakly consistent iterator over the slots of a ring buffer between a consumer index and a producer index read
+ * when it was created. Slots found empty, because their element has been consumed or not yet published, are
+ * skipped, and a slot reused by a later offer may yield an element added after the iterator was created. It never
+ * throws {@link java.util.ConcurrentModificationException}, and does not support removal.
+ *
+ * @author krs
+ */
+final class RingBufferIterator<E> implements Iterator<E> {
+    private final AtomicReferenceArray<E> buffer;
+    private final int mask;
+    private final long end;
+    private long index;
+    private E next;
+
+    RingBufferIterator(AtomicReferenceArray<E> buffer, int mask, long start, long end) {
+        this.buffer = buffer;
+        this.mask = mask;
+        this.index = start;
+        this.end = end;
+        advance();
+    }
+
+    @Override
+    public boolean hasNext() {
+        return next != null;
+    }
+
+    @Override
+    public E next() {
+        E e = next;
+        if (e == null) {
+            throw new NoSuchElementException();
+        }
+        advance();
+        return e;
+    }
+
+    private void advance() {
+        next = null;
+        while (next == null && index < end) {
+            next = buffer.get((int) index++ & mask);
+        }
+    }
+}
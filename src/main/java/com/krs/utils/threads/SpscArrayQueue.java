@@ -0,0 +1,114 @@
+package com.krs.utils.threads;
+
+import com.google.common.base.Preconditions;
+
+import javax.annotation.concurrent.ThreadSafe;
+import java.util.AbstractQueue;
+import java.util.Iterator;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.function.Consumer;
+
+/**
+ * A bounded, lock-free queue for exactly one producer thread and one consumer thread, backed by a ring buffer. It
+ * allocates nothing per element, and the two threads never write the same memory: a slot is free when it holds
+ * null, so the producer never reads the consumer's index, and the indices are padded onto separate cache lines.<p/>
+ * <p>
+ * Elements are removed only by {@link #poll} and {@link #drain}, and each of offer and poll/peek/drain must only be
+ * invoked from its one thread. Iteration, and with it {@code toString}, {@code contains} and {@code toArray}, is
+ * weakly consistent and may be used from any thread.<p/>
+ * <p>
+ * This class is thread safe for one producer and one consumer.
+ *
+ * @author krs
+ * @see MpscArrayQueue
+ */
+@ThreadSafe
+public final class SpscArrayQueue<E> extends AbstractQueue<E> {
+    private final PaddedAtomicLong producerIndex = new PaddedAtomicLong(0);
+    private final PaddedAtomicLong consumerIndex = new PaddedAtomicLong(0);
+    private final AtomicReferenceArray<E> buffer;
+    private final int mask;
+
+    /**
+     * Constructs a queue.
+     *
+     * @param capacity the maximum number of elements, rounded up to a power of two.
+     */
+    public SpscArrayQueue(int capacity) {
+        Preconditions.checkArgument(capacity > 0 && capacity <= 1 << 30, "capacity [%s] out of range.", capacity);
+        int size = capacity == 1 ? 1 : Integer.highestOneBit(capacity - 1) << 1;
+        this.buffer = new AtomicReferenceArray<>(size);
+        this.mask = size - 1;
+    }
+
+    @Override
+    public boolean offer(E e) {
+        Preconditions.checkNotNull(e);
+        long p = producerIndex.get();
+        int index = (int) p & mask;
+        if (buffer.get(index) != null) {
+            return false;
+        }
+        buffer.lazySet(index, e);
+        producerIndex.lazySet(p + 1);
+        return true;
+    }
+
+    @Override
+    public E poll() {
+        long c = consumerIndex.get();
+        int index = (int) c & mask;
+        E e = buffer.get(index);
+        if (e == null) {
+            return null;
+        }
+        buffer.lazySet(index, null);
+        consumerIndex.lazySet(c + 1);
+        return e;
+    }
+
+    @Override
+    public E peek() {
+        return buffer.get((int) consumerIndex.get() & mask);
+    }
+
+    /**
+     * Removes up to the specified number of elements, passing each to the consumer.
+     *
+     * @return the number of elements removed.
+     */
+    public int drain(Consumer<? super E> consumer, int limit) {
+        int drained = 0;
+        E e;
+        while (drained < limit && (e = poll()) != null) {
+            consumer.accept(e);
+            drained++;
+        }
+        return drained;
+    }
+
+    @Override
+    public int size() {
+        return (int) Math.max(0, Math.min(capacity(), producerIndex.get() - consumerIndex.get()));
+    }
+
+    @Override
+    public boolean isEmpty() {
+        return producerIndex.get() == consumerIndex.get();
+    }
+
+    public int capacity() {
+        return mask + 1;
+    }
+
+    /**
+     * Returns a weakly consistent iterator over the elements between the consumer and the producer when it is
+     * invoked. It may be used from any thread, but does not support removal, so neither does
+     * {@link #remove(Object)}.
+     */
+    @Override
+    public Iterator<E> iterator() {
+        long c = consumerIndex.get();
+        return new RingBufferIterator<>(buffer, mask, c, Math.min(c + capacity(), producerIndex.get()));
+    }
+}
@@ -0,0 +1,284 @@
+package com.krs.utils.threads;
+
+import com.google.common.base.Preconditions;
+
+import javax.annotation.concurrent.ThreadSafe;
+import java.io.Closeable;
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadInfo;
+import java.lang.management.ThreadMXBean;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Accounts CPU time and heap allocation to groups of threads, so a pool that burns CPU or churns the heap can be
+ * spotted in production without attaching a profiler. Threads are grouped by their name with its last run of digits
+ * replaced by {@code %d}, so every thread named by a {@link NamedThreadFactory} with the format "Worker %d" falls in
+ * the group "Worker %d", and the pool threads of {@code Executors.defaultThreadFactory()} in "pool-1-thread-%d".<p/>
+ * <p>
+ * Each {@link #sample()} reads the CPU time and, on HotSpot-derived JVMs, allocated bytes of every live thread in
+ * bulk from the {@link ThreadMXBean}, and publishes per-group rates over the time since the previous sample. Use
+ * {@link #start(long, TimeUnit)} to sample periodically on a named daemon thread. Allocation figures are zero on
+ * JVMs that do not support them.<p/>
+ * <p>
+ * Constructing a sampler turns on thread CPU time measurement and, where supported, thread allocation measurement
+ * for the whole JVM, if they were off, and leaves them on after {@link #close()}. Both add a small cost to every
+ * thread, and other users of the {@link ThreadMXBean} will see them enabled.<p/>
+ * <p>
+ * For example:
+ * <pre><tt>
+ *      ThreadResourceSampler sampler = new ThreadResourceSampler().start(10, TimeUnit.SECONDS);
+ *      ThreadResourceSampler.GroupStats workers = sampler.getGroup(workerFactory);
+ *      LOGGER.info("Workers use {} cores, allocating {} bytes/s",
+ *              workers.getCpuCores(), workers.getAllocatedBytesPerSecond());
+ * </tt></pre>
+ * <p>
+ * This class is thread safe.
+ *
+ * @author krs
+ */
+@ThreadSafe
+public final class ThreadResourceSampler implements Closeable {
+    private static final Pattern LAST_DIGITS = Pattern.compile("\\d+(?=\\D*$)");
+    // The totals of a thread not seen by the previous sample; never modified.
+    private static final long[] NO_TOTALS = new long[2];
+
+    private final ThreadMXBean threads;
+    private final com.sun.management.ThreadMXBean hotspotThreads;
+    // Guarded by this; the per-thread totals at the previous sample, keyed by thread id.
+    private final Map<Long, long[]> previous = new HashMap<>();
+    private final Map<String, long[]> lifetimeTotals = new HashMap<>();
+    private long previousNanos;
+    private volatile Map<String, GroupStats> groups = Collections.emptyMap();
+    private ScheduledExecutorService scheduler;
+
+    /**
+     * Constructs a sampler of the platform's threads, enabling JVM-wide thread CPU time and allocation measurement
+     * if they are supported but off. Nothing is sampled until {@link #sample()} or {@link #start(long, TimeUnit)}
+     * is invoked.
+     */
+    public ThreadResourceSampler() {
+        this.threads = ManagementFactory.getThreadMXBean();
+        this.hotspotThreads = threads instanceof com.sun.management.ThreadMXBean
+                ? (com.sun.management.ThreadMXBean) threads : null;
+        if (threads.isThreadCpuTimeSupported() && !threads.isThreadCpuTimeEnabled()) {
+            threads.setThreadCpuTimeEnabled(true);
+        }
+        if (hotspotThreads != null && hotspotThreads.isThreadAllocatedMemorySupported()
+                && !hotspotThreads.isThreadAllocatedMemoryEnabled()) {
+            hotspotThreads.setThreadAllocatedMemoryEnabled(true);
+        }
+    }
+
+    /**
+     * Samples periodically on a named daemon thread until {@link #close()} is invoked.
+     *
+     * @param period the time between samples.
+     * @param unit   the unit of period.
+     * @return this sampler.
+     * @throws IllegalStateException if the sampler has already been started.
+     */
+    public synchronized ThreadResourceSampler start(long period, TimeUnit unit) {
+        Preconditions.checkState(scheduler == null, "Sampler already started.");
+        scheduler = Executors.newSingleThreadScheduledExecutor(
+                ThreadUtils.newNamedDaemonThreadFactory("thread-resource-sampler-%d"));
+        sample();
+        scheduler.scheduleAtFixedRate(ThreadUtils.guard(this::sample), period, period, unit);
+        return this;
+    }
+
+    /**
+     * Stops periodic sampling.
+     */
+    @Override
+    public synchronized void close() {
+        if (scheduler != null) {
+            scheduler.shutdownNow();
+        }
+    }
+
+    /**
+     * Reads the CPU time and allocated bytes of every live thread, and publishes per-group rates over the time
+     * since the previous sample. The first sample publishes totals but no rates.
+     */
+    public synchronized void sample() {
+        long now = System.nanoTime();
+        long[] ids = threads.getAllThreadIds();
+        ThreadInfo[] infos = threads.getThreadInfo(ids);
+        long[] cpu = cpuTimes(ids);
+        long[] allocated = allocatedBytes(ids);
+        double elapsedSeconds = previousNanos == 0 ? 0 : (now - previousNanos) / 1e9;
+
+        Map<String, long[]> deltas = new HashMap<>();
+        Map<Long, long[]> current = new HashMap<>();
+        for (int i = 0; i < ids.length; i++) {
+            if (infos[i] == null || cpu[i] < 0) {
+                // The thread exited while being sampled.
+                continue;
+            }
+            long[] totals = {Math.max(0, cpu[i]), Math.max(0, allocated[i])};
+            current.put(ids[i], totals);
+            long[] last = previous.getOrDefault(ids[i], NO_TOTALS);
+
+            String group = groupOf(infos[i].getThreadName());
+            long[] delta = deltas.computeIfAbsent(group, g -> new long[3]);
+            delta[0] += Math.max(0, totals[0] - last[0]);
+            delta[1] += Math.max(0, totals[1] - last[1]);
+            delta[2]++;
+        }
+        previous.clear();
+        previous.putAll(current);
+        previousNanos = now;
+
+        Map<String, GroupStats> published = new HashMap<>();
+        for (Map.Entry<String, long[]> e : deltas.entrySet()) {
+            long[] delta = e.getValue();
+            long[] lifetime = lifetimeTotals.computeIfAbsent(e.getKey(), g -> new long[2]);
+            lifetime[0] += delta[0];
+            lifetime[1] += delta[1];
+            published.put(e.getKey(), new GroupStats(
+                    e.getKey(),
+                    (int) delta[2],
+                    elapsedSeconds == 0 ? 0 : delta[0] / 1e9 / elapsedSeconds,
+                    elapsedSeconds == 0 ? 0 : delta[1] / elapsedSeconds,
+                    lifetime[0],
+                    lifetime[1]));
+        }
+        groups = Collections.unmodifiableMap(published);
+    }
+
+    /**
+     * Returns the statistics of every group with live threads at the last sample, keyed by group name.
+     */
+    public Map<String, GroupStats> getGroups() {
+        return groups;
+    }
+
+    /**
+     * Returns the statistics of the threads named with the specified format at the last sample, or null if none
+     * were alive.
+     */
+    public GroupStats getGroup(String nameFormat) {
+        return groups.get(nameFormat);
+    }
+
+    /**
+     * Returns the statistics of the threads named by the specified factory at the last sample, or null if none were
+     * alive.
+     */
+    public GroupStats getGroup(NamedThreadFactory factory) {
+        return getGroup(factory.getNameFormat());
+    }
+
+    /**
+     * Returns the group of a thread: its name with the last run of digits replaced by {@code %d}.
+     */
+    static String groupOf(String threadName) {
+        Matcher m = LAST_DIGITS.matcher(threadName);
+        return m.find() ? threadName.substring(0, m.start()) + "%d" + threadName.substring(m.end()) : threadName;
+    }
+
+    private long[] cpuTimes(long[] ids) {
+        if (!threads.isThreadCpuTimeSupported()) {
+            return new long[ids.length];
+        }
+        if (hotspotThreads != null) {
+            return hotspotThreads.getThreadCpuTime(ids);
+        }
+        long[] cpu = new long[ids.length];
+        for (int i = 0; i < ids.length; i++) {
+            cpu[i] = threads.getThreadCpuTime(ids[i]);
+        }
+        return cpu;
+    }
+
+    private long[] allocatedBytes(long[] ids) {
+        if (hotspotThreads == null || !hotspotThreads.isThreadAllocatedMemorySupported()) {
+            return new long[ids.length];
+        }
+        return hotspotThreads.getThreadAllocatedBytes(ids);
+    }
+
+    /**
+     * Resource usage of one group of threads over the period between two samples. Instances are immutable.
+     */
+    public static final class GroupStats {
+        private final String name;
+        private final int threadCount;
+        private final double cpuCores;
+        private final double allocatedBytesPerSecond;
+        private final long totalCpuNanos;
+        private final long totalAllocatedBytes;
+
+        GroupStats(
+                String name,
+                int threadCount,
+                double cpuCores,
+                double allocatedBytesPerSecond,
+                long totalCpuNanos,
+                long totalAllocatedBytes) {
+
+            this.name = name;
+            this.threadCount = threadCount;
+            this.cpuCores = cpuCores;
+            this.allocatedBytesPerSecond = allocatedBytesPerSecond;
+            this.totalCpuNanos = totalCpuNanos;
+            this.totalAllocatedBytes = totalAllocatedBytes;
+        }
+
+        /**
+         * Returns the group name, which is the name format of its threads, e.g.: "Worker %d".
+         */
+        public String getName() {
+            return name;
+        }
+
+        /**
+         * Returns the number of live threads in the group.
+         */
+        public int getThreadCount() {
+            return threadCount;
+        }
+
+        /**
+         * Returns the CPU used by the group, in cores: 1.5 means one and a half cores were kept busy on average.
+         */
+        public double getCpuCores() {
+            return cpuCores;
+        }
+
+        /**
+         * Returns the rate at which the group allocated heap memory, in bytes per second.
+         */
+        public double getAllocatedBytesPerSecond() {
+            return allocatedBytesPerSecond;
+        }
+
+        /**
+         * Returns the total CPU time of the group's threads in nanoseconds, including threads that have since
+         * exited, up to the last sample each was alive for.
+         */
+        public long getTotalCpuNanos() {
+            return totalCpuNanos;
+        }
+
+        /**
+         * Returns the total heap memory allocated by the group's threads, counted as for CPU time.
+         */
+        public long getTotalAllocatedBytes() {
+            return totalAllocatedBytes;
+        }
+
+        @Override
+        public String toString() {
+            return "GroupStats{name=" + name + ", threads=" + threadCount + ", cpuCores=" + cpuCores
+                    + ", allocatedBytesPerSecond=" + (long) allocatedBytesPerSecond + "}";
+        }
+    }
+}
@@ -1,10 +1,30 @@
 package com.krs.utils.threads;
 
 import com.google.common.base.Preconditions;
+import com.krs.utils.Env;
+import com.krs.utils.logging.ThrottledExceptionLog;
+import org.slf4j.LoggerFactory;
 
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
 import java.util.Optional;
 import java.util.concurrent.Callable;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletionService;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorCompletionService;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Future;
+import java.util.concurrent.LinkedBlockingQueue;
 import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
 
 /**
  * Created by IntelliJ IDEA.
@@ -28,6 +48,34 @@ public final class ThreadUtils {
         return ExceptionLogger.INSTANCE;
     }
 
+    /**
+     * Returns an {@code UncaughtExceptionHandler} that logs uncaught throwables as errors, but deduplicates
+     * repeating failures: throwables are fingerprinted by their type and top five stack frames, only the first
+     * occurrence of a fingerprint in each interval is logged with its stack trace, and later ones are reported as
+     * periodic warning counts. Recording is lock-free.
+     *
+     * @param interval the minimum time between full logs of the same failure.
+     * @param unit     the unit of interval.
+     * @see ThrottledExceptionLog
+     */
+    public static Thread.UncaughtExceptionHandler exceptionLogger(long interval, TimeUnit unit) {
+        return exceptionLogger(5, interval, unit);
+    }
+
+    /**
+     * Returns an {@code UncaughtExceptionHandler} that logs uncaught throwables as errors, but deduplicates
+     * repeating failures, as {@link #exceptionLogger(long, TimeUnit)} does.
+     *
+     * @param maxFrames the number of top stack frames that identify a failure, along with its type.
+     * @param interval  the minimum time between full logs of the same failure.
+     * @param unit      the unit of interval.
+     * @see ThrottledExceptionLog
+     */
+    public static Thread.UncaughtExceptionHandler exceptionLogger(int maxFrames, long interval, TimeUnit unit) {
+        return new ExceptionLogger(new ThrottledExceptionLog(
+                LoggerFactory.getLogger(ExceptionLogger.class), maxFrames, interval, unit));
+    }
+
     /**
      * Returns a {@code Runnable} that wraps the specified {@code Runnable} with an exception handler
      * that catches {@code Throwable} and logs it as an error.
@@ -103,6 +151,246 @@ public final class ThreadUtils {
         return new DaemonThreadFactory(new NamedThreadFactory(nameFormat));
     }
 
+    /**
+     * Returns a thread factory that produces named virtual threads on JDK 21 and later, and named daemon
+     * platform threads on older JVMs. The threads log uncaught exceptions as errors.
+     *
+     * @param nameFormat the format string used to name new Threads, in the form expected by
+     *                   String.format(). E.g.: "Request %d"
+     * @return the desired thread factory
+     * @see NamedThreadFactory
+     */
+    public static ThreadFactory newNamedVirtualThreadFactory(String nameFormat) {
+        return VirtualThreads.newThreadFactory(nameFormat);
+    }
+
+    /**
+     * Returns an executor that runs each task on a new named virtual thread on JDK 21 and later, suiting
+     * thread-per-request blocking I/O at very high concurrency. On older JVMs it falls back to an unbounded
+     * cached pool of named daemon platform threads, which scales far less.
+     *
+     * @param nameFormat the format string used to name new Threads, in the form expected by
+     *                   String.format(). E.g.: "Request %d"
+     * @return the executor
+     * @see #newNamedVirtualThreadFactory(String)
+     */
+    public static ExecutorService newVirtualThreadPerTaskExecutor(String nameFormat) {
+        return VirtualThreads.newThreadPerTaskExecutor(nameFormat);
+    }
+
+    /**
+     * Returns a work-stealing pool with one worker per CPU this process may use, as reported by
+     * {@link Env#effectiveProcessors()}, so that inside a container the pool is sized to the container's CPU quota
+     * rather than to every CPU of the host.
+     *
+     * @param nameFormat the format string used to name new workers, in the form expected by
+     *                   String.format(). E.g.: "Worker %d"
+     * @return the pool
+     * @see #newWorkStealingPool(String, int)
+     */
+    public static ForkJoinPool newWorkStealingPool(String nameFormat) {
+        return newWorkStealingPool(nameFormat, Env.effectiveProcessors());
+    }
+
+    /**
+     * Returns a work-stealing pool whose workers are named using the specified format, and log uncaught
+     * exceptions as errors. As with {@code Executors.newWorkStealingPool}, the pool processes forked tasks that
+     * are never joined in FIFO order, which suits event-style and fan-out workloads.
+     *
+     * @param nameFormat  the format string used to name new workers, in the form expected by
+     *                    String.format(). E.g.: "Worker %d"
+     * @param parallelism the targeted parallelism level.
+     * @return the pool
+     * @see NamedForkJoinWorkerThreadFactory
+     */
+    public static ForkJoinPool newWorkStealingPool(String nameFormat, int parallelism) {
+        return new ForkJoinPool(
+                parallelism,
+                new NamedForkJoinWorkerThreadFactory(nameFormat),
+                exceptionLogger(),
+                true);
+    }
+
+    /**
+     * Returns a fixed-size thread pool with a bounded queue that records per-task queue wait and execution time,
+     * rejections and active threads. Tasks submitted while the queue is full are rejected with a
+     * {@code RejectedExecutionException}.
+     *
+     * @param nameFormat    the format string used to name new Threads, in the form expected by
+     *                      String.format(). E.g.: "Worker %d"
+     * @param poolSize      the number of threads in the pool.
+     * @param queueCapacity the maximum number of tasks waiting for a thread.
+     * @return the instrumented pool
+     * @see NamedThreadFactory
+     * @see InstrumentedThreadPoolExecutor
+     */
+    public static InstrumentedThreadPoolExecutor newInstrumentedThreadPool(
+            String nameFormat,
+            int poolSize,
+            int queueCapacity) {
+
+        return new InstrumentedThreadPoolExecutor(
+                poolSize,
+                poolSize,
+                0L,
+                TimeUnit.MILLISECONDS,
+                new LinkedBlockingQueue<>(queueCapacity),
+                new NamedThreadFactory(nameFormat),
+                new ThreadPoolExecutor.AbortPolicy());
+    }
+
+    /**
+     * Runs the tasks concurrently on the executor, and returns all of their results once every task has completed
+     * or the timeout elapses, whichever comes first. Each task is guarded as by {@link #guard(Callable)}: a task
+     * that fails is logged, and its result is empty, as is the result of a task that returns null. Tasks still
+     * running when the timeout elapses are cancelled, with interruption, and their results are empty too; they
+     * are not logged if they fail once cancelled.
+     *
+     * @param executor the executor to run the tasks on.
+     * @param tasks    the tasks to run.
+     * @param timeout  the maximum time to wait for all of the results.
+     * @param unit     the unit of timeout.
+     * @return the results, in the order of the tasks.
+     * @throws InterruptedException if interrupted while waiting, in which case every task is cancelled.
+     */
+    public static <V> List<Optional<V>> allOf(
+            ExecutorService executor,
+            Collection<? extends Callable<V>> tasks,
+            long timeout,
+            TimeUnit unit) throws InterruptedException {
+
+        return gather(executor, tasks, tasks.size(), false, timeout, unit, exceptionLogger());
+    }
+
+    /**
+     * Runs the tasks concurrently on the executor, and returns the first successful result. Once it arrives, or
+     * the timeout elapses, the remaining tasks are cancelled, with interruption. Tasks are guarded as by
+     * {@link #guard(Callable)}, so failures are logged and do not count as results, except for failures of
+     * tasks that have been cancelled.
+     *
+     * @param executor the executor to run the tasks on.
+     * @param tasks    the tasks to run.
+     * @param timeout  the maximum time to wait for a result.
+     * @param unit     the unit of timeout.
+     * @return the first non-null result, or empty if every task failed or none succeeded in time.
+     * @throws InterruptedException if interrupted while waiting, in which case every task is cancelled.
+     */
+    public static <V> Optional<V> anyOf(
+            ExecutorService executor,
+            Collection<? extends Callable<V>> tasks,
+            long timeout,
+            TimeUnit unit) throws InterruptedException {
+
+        for (Optional<V> result : gather(executor, tasks, 1, false, timeout, unit, exceptionLogger())) {
+            if (result.isPresent()) {
+                return result;
+            }
+        }
+        return Optional.empty();
+    }
+
+    /**
+     * Runs the tasks concurrently on the executor, and returns as soon as the specified number of them have
+     * succeeded. The remaining tasks are then cancelled, with interruption, as they are if the timeout elapses or
+     * so many tasks fail that the quorum can no longer be reached. Tasks are guarded as by
+     * {@link #guard(Callable)}, so failures are logged and do not count towards the quorum, except for failures
+     * of tasks that have been cancelled.
+     *
+     * @param executor the executor to run the tasks on.
+     * @param tasks    the tasks to run.
+     * @param required the number of successful results needed.
+     * @param timeout  the maximum time to wait for the quorum.
+     * @param unit     the unit of timeout.
+     * @return the first {@code required} non-null results in the order of their tasks, or empty if the quorum was
+     * not reached in time.
+     * @throws InterruptedException if interrupted while waiting, in which case every task is cancelled.
+     */
+    public static <V> Optional<List<V>> quorum(
+            ExecutorService executor,
+            Collection<? extends Callable<V>> tasks,
+            int required,
+            long timeout,
+            TimeUnit unit) throws InterruptedException {
+
+        Preconditions.checkArgument(required > 0 && required <= tasks.size(),
+                "required [%s] must be between 1 and the number of tasks [%s].", required, tasks.size());
+
+        List<V> values = new ArrayList<>(required);
+        for (Optional<V> result : gather(executor, tasks, required, true, timeout, unit, exceptionLogger())) {
+            result.ifPresent(values::add);
+        }
+        return values.size() >= required ? Optional.of(values) : Optional.empty();
+    }
+
+    /**
+     * Runs guarded tasks until the specified number have produced a result, every task has completed, or the
+     * deadline passes, then cancels every task still running. If stopWhenUnreachable is set, it also stops as soon
+     * as too many tasks have failed for the required number to succeed. Task failures are reported to the handler
+     * until then, but not after, since the stragglers are interrupted by their cancellation.
+     */
+    static <V> List<Optional<V>> gather(
+            ExecutorService executor,
+            Collection<? extends Callable<V>> tasks,
+            int required,
+            boolean stopWhenUnreachable,
+            long timeout,
+            TimeUnit unit,
+            Thread.UncaughtExceptionHandler handler) throws InterruptedException {
+
+        AtomicBoolean decided = new AtomicBoolean();
+        Thread.UncaughtExceptionHandler undecided = (thread, t) -> {
+            if (!decided.get()) {
+                handler.uncaughtException(thread, t);
+            }
+        };
+        long deadline = System.nanoTime() + unit.toNanos(timeout);
+        CompletionService<Optional<V>> completion = new ExecutorCompletionService<>(executor);
+        Map<Future<Optional<V>>, Integer> positions = new IdentityHashMap<>();
+        List<Optional<V>> results = new ArrayList<>(Collections.nCopies(tasks.size(), Optional.empty()));
+
+        try {
+            for (Callable<V> task : tasks) {
+                positions.put(completion.submit(guard(task, null, undecided)), positions.size());
+            }
+
+            int completed = 0;
+            int succeeded = 0;
+            while (succeeded < required && completed < tasks.size()
+                    && !(stopWhenUnreachable && succeeded + tasks.size() - completed < required)) {
+                long remaining = deadline - System.nanoTime();
+                Future<Optional<V>> f = remaining > 0 ? completion.poll(remaining, TimeUnit.NANOSECONDS) : null;
+                if (f == null) {
+                    break;
+                }
+                completed++;
+                Optional<V> result = resultOf(f, handler);
+                if (result.isPresent()) {
+                    succeeded++;
+                    results.set(positions.get(f), result);
+                }
+            }
+        } finally {
+            decided.set(true);
+            for (Future<Optional<V>> f : positions.keySet()) {
+                f.cancel(true);
+            }
+        }
+        return results;
+    }
+
+    private static <V> Optional<V> resultOf(
+            Future<Optional<V>> completed,
+            Thread.UncaughtExceptionHandler handler) throws InterruptedException {
+
+        try {
+            return completed.get();
+        } catch (ExecutionException | CancellationException e) {
+            // Guarded tasks handle their own failures, so this only happens if the executor ran them abnormally.
+            handler.uncaughtException(Thread.currentThread(), e);
+            return Optional.empty();
+        }
+    }
+
     /**
      * A class that wraps invocation of a {@code Runnable} with an exception handler that catches
      * {@code Throwable} and invokes an {@code UncaughtExceptionHandler}.
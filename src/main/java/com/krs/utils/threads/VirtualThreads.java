@@ -0,0 +1,85 @@
+package com.krs.utils.threads;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.lang.reflect.Method;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+
+/**
+ * Access to virtual threads on JVMs that have them, while the library itself is compiled for Java 8. The JDK 21
+ * {@code Thread.ofVirtual()} and {@code Executors.newThreadPerTaskExecutor} entry points are looked up
+ * reflectively once, when this class is initialized; every thread and executor is then built through them
+ * directly. On older JVMs, or when virtual threads are only a preview feature, platform daemon threads are used
+ * instead.
+ *
+ * @author krs
+ */
+final class VirtualThreads {
+    private static final Logger LOGGER = LoggerFactory.getLogger(VirtualThreads.class);
+
+    /**
+     * The unnamed virtual thread factory, or null if virtual threads are not available.
+     */
+    private static final ThreadFactory VIRTUAL_FACTORY;
+    private static final Method NEW_THREAD_PER_TASK_EXECUTOR;
+
+    static {
+        ThreadFactory factory = null;
+        Method perTask = null;
+        try {
+            Object builder = Thread.class.getMethod("ofVirtual").invoke(null);
+            Method factoryMethod = Class.forName("java.lang.Thread$Builder").getMethod("factory");
+            factory = (ThreadFactory) factoryMethod.invoke(builder);
+            perTask = Executors.class.getMethod("newThreadPerTaskExecutor", ThreadFactory.class);
+        } catch (ReflectiveOperationException | RuntimeException | LinkageError e) {
+            LOGGER.debug("Virtual threads are not available, falling back to platform threads", e);
+            factory = null;
+            perTask = null;
+        }
+        VIRTUAL_FACTORY = factory;
+        NEW_THREAD_PER_TASK_EXECUTOR = perTask;
+    }
+
+    private VirtualThreads() {
+    }
+
+    /**
+     * Returns true if threads from {@link #newThreadFactory(String)} are virtual threads.
+     */
+    static boolean isSupported() {
+        return VIRTUAL_FACTORY != null;
+    }
+
+    /**
+     * Returns a factory for named threads that log uncaught exceptions as errors. The threads are virtual threads
+     * if supported, and platform daemon threads otherwise.
+     */
+    static ThreadFactory newThreadFactory(String nameFormat) {
+        ThreadFactory base = isSupported() ? VIRTUAL_FACTORY : new DaemonThreadFactory();
+        ThreadFactory named = new NamedThreadFactory(base, nameFormat);
+        return r -> {
+            Thread t = named.newThread(r);
+            t.setUncaughtExceptionHandler(ThreadUtils.exceptionLogger());
+            return t;
+        };
+    }
+
+    /**
+     * Returns an executor that starts a new thread from {@link #newThreadFactory(String)} for each task. Without
+     * virtual threads this is an unbounded cached pool of platform threads, which reuses idle threads instead.
+     */
+    static ExecutorService newThreadPerTaskExecutor(String nameFormat) {
+        ThreadFactory factory = newThreadFactory(nameFormat);
+        if (NEW_THREAD_PER_TASK_EXECUTOR != null) {
+            try {
+                return (ExecutorService) NEW_THREAD_PER_TASK_EXECUTOR.invoke(null, factory);
+            } catch (ReflectiveOperationException e) {
+                throw new IllegalStateException("Failed to create virtual thread executor", e);
+            }
+        }
+        return Executors.newCachedThreadPool(factory);
+    }
+}
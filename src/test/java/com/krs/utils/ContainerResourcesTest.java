@@ -0,0 +1,92 @@
+package com.krs.utils;
+
+import org.testng.annotations.AfterMethod;
+import org.testng.annotations.Test;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.stream.Stream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class ContainerResourcesTest {
+    static final long GB = 1L << 30;
+
+    private final List<Path> roots = new ArrayList<>();
+
+    @AfterMethod
+    public void deleteRoots() throws IOException {
+        for (Path root : roots) {
+            try (Stream<Path> paths = Files.walk(root)) {
+                for (Path path : (Iterable<Path>) paths.sorted(Comparator.reverseOrder())::iterator) {
+                    Files.delete(path);
+                }
+            }
+        }
+        roots.clear();
+    }
+
+    @Test
+    public void testReadsCgroupV2Limits() throws IOException {
+        Path root = newRoot("cgroup-v2");
+        write(root, "proc/self/cgroup", "0::/kubepods/pod1");
+        write(root, "sys/fs/cgroup/cgroup.controllers", "cpuset cpu memory");
+        write(root, "sys/fs/cgroup/kubepods/cpu.max", "400000 100000");
+        write(root, "sys/fs/cgroup/kubepods/pod1/cpu.max", "150000 100000");
+        write(root, "sys/fs/cgroup/kubepods/pod1/memory.max", String.valueOf(2 * GB));
+        write(root, "sys/devices/system/node/node0/cpulist", "0-31");
+        write(root, "sys/devices/system/node/node1/cpulist", "32-63");
+
+        ContainerResources resources = ContainerResources.read(root, 64, 256 * GB);
+        assertThat(resources.getProcessors()).isEqualTo(2);
+        assertThat(resources.getMemoryLimit()).isEqualTo(2 * GB);
+        assertThat(resources.getNumaNodes()).isEqualTo(2);
+    }
+
+    @Test
+    public void testReadsCgroupV1LimitsFromMountWhenPathIsHidden() throws IOException {
+        Path root = newRoot("cgroup-v1");
+        write(root, "proc/self/cgroup", "4:memory:/docker/abc\n3:cpu,cpuacct:/docker/abc\n2:cpuset:/docker/abc");
+        write(root, "sys/fs/cgroup/cpu,cpuacct/cpu.cfs_quota_us", "-1");
+        write(root, "sys/fs/cgroup/cpu,cpuacct/cpu.cfs_period_us", "100000");
+        write(root, "sys/fs/cgroup/cpuset/cpuset.cpus", "0-2,5");
+        write(root, "sys/fs/cgroup/memory/memory.limit_in_bytes", "9223372036854771712");
+
+        ContainerResources resources = ContainerResources.read(root, 64, 256 * GB);
+        assertThat(resources.getProcessors()).isEqualTo(4);
+        assertThat(resources.getMemoryLimit()).isEqualTo(256 * GB);
+        assertThat(resources.getNumaNodes()).isEqualTo(1);
+    }
+
+    @Test
+    public void testFallsBackToJvmFiguresWithoutCgroups() throws IOException {
+        Path root = newRoot("no-cgroup");
+        ContainerResources resources = ContainerResources.read(root, 8, 16 * GB);
+        assertThat(resources.getProcessors()).isEqualTo(8);
+        assertThat(resources.getMemoryLimit()).isEqualTo(16 * GB);
+        assertThat(resources.getNumaNodes()).isEqualTo(1);
+    }
+
+    @Test
+    public void testCountsCpuLists() {
+        assertThat(ContainerResources.countCpuList("0-3,8,10-11")).isEqualTo(7);
+        assertThat(ContainerResources.countCpuList("")).isEqualTo(0);
+        assertThat(ContainerResources.countCpuList("3-1")).isEqualTo(0);
+    }
+
+    private Path newRoot(String prefix) throws IOException {
+        Path root = Files.createTempDirectory(prefix);
+        roots.add(root);
+        return root;
+    }
+
+    private static void write(Path root, String file, String content) throws IOException {
+        Path path = root.resolve(file);
+        Files.createDirectories(path.getParent());
+        Files.write(path, content.getBytes());
+    }
+}
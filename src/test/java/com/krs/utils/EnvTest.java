@@ -2,6 +2,20 @@ package com.krs.utils;
 
 import org.testng.annotations.Test;
 
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.PrintStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.WritableByteChannel;
+import java.nio.charset.Charset;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+
 import static org.assertj.core.api.Assertions.assertThat;
 
 /**
@@ -13,4 +27,134 @@ public class EnvTest {
         String testThread = Thread.currentThread().getName();
         assertThat(Env.consoleString("test %d-%d", 1, 2)).isEqualToIgnoringWhitespace("[" + testThread + "] test 1-2");
     }
-}
\ No newline at end of file
+
+    @Test
+    public void testConsoleKeepsArgumentTypes() {
+        // A char or an int must reach the formatter as itself, not widened to a long.
+        String prefix = "[" + Thread.currentThread().getName() + "] ";
+        PrintStream original = System.out;
+        ByteArrayOutputStream captured = new ByteArrayOutputStream();
+        System.setOut(new PrintStream(captured, true));
+        try {
+            Env.consoleOut("%s", 'c');
+            Env.consoleOut("%c", 'x');
+            Env.consoleOut("%c", 65);
+            Env.consoleOut("%x %s", -1, 'y');
+        } finally {
+            System.setOut(original);
+        }
+        assertThat(captured.toString().split(System.lineSeparator()))
+                .containsExactly(prefix + "c", prefix + "x", prefix + "A", prefix + "ffffffff y");
+    }
+
+    @Test
+    public void testAsyncConsoleWritesRecordsInOrderToChannels() throws Exception {
+        Path outFile = Files.createTempFile("env-out", ".txt");
+        Path errFile = Files.createTempFile("env-err", ".txt");
+        try (FileChannel out = FileChannel.open(outFile, StandardOpenOption.WRITE);
+             FileChannel err = FileChannel.open(errFile, StandardOpenOption.WRITE)) {
+            Env.startAsyncConsole(4, Env.ConsoleOverflow.BLOCK, out, err);
+            try {
+                for (int i = 0; i < 100; i++) {
+                    Env.consoleOut(MessageTemplate.of("out %d").args().arg(i));
+                }
+                Env.consoleErr("err %s %d", "done", 100);
+                Env.flushConsole();
+            } finally {
+                Env.stopAsyncConsole();
+            }
+        }
+
+        String thread = Thread.currentThread().getName();
+        List<String> expected = new ArrayList<>();
+        for (int i = 0; i < 100; i++) {
+            expected.add("[" + thread + "] out " + i);
+        }
+        assertThat(Files.readAllLines(outFile, Charset.defaultCharset())).isEqualTo(expected);
+        assertThat(Files.readAllLines(errFile, Charset.defaultCharset())).containsExactly("[" + thread + "] err done 100");
+        Files.delete(outFile);
+        Files.delete(errFile);
+    }
+
+    @Test
+    public void testAsyncConsoleDropsWhenFull() throws Exception {
+        CountDownLatch release = new CountDownLatch(1);
+        BlockingChannel out = new BlockingChannel(release);
+        AsyncConsole console = new AsyncConsole(2, Env.ConsoleOverflow.DROP, out, out);
+
+        for (int i = 0; i < 10; i++) {
+            assertThat(console.publish(false, MessageTemplate.of("record %d").args().arg(i))).isTrue();
+        }
+        assertThat(console.getDroppedCount()).isGreaterThan(0);
+
+        // A dropped record releases this thread's arguments, so they are reused rather than reallocated.
+        MessageTemplate.Arguments args = MessageTemplate.of("dropped %d").args().arg(1);
+        assertThat(console.publish(false, args)).isTrue();
+        MessageTemplate.Arguments next = MessageTemplate.of("next").args();
+        assertThat(next).isSameAs(args);
+        next.discard();
+        release.countDown();
+        console.close();
+        assertThat(console.getDroppedCount() + out.lines).isEqualTo(11);
+    }
+
+    @Test
+    public void testAsyncConsoleFallsBackWhenFullOrClosed() throws Exception {
+        CountDownLatch release = new CountDownLatch(1);
+        BlockingChannel out = new BlockingChannel(release);
+        AsyncConsole console = new AsyncConsole(2, Env.ConsoleOverflow.SYNCHRONOUS, out, out);
+
+        boolean fellBack = false;
+        for (int i = 0; i < 10 && !fellBack; i++) {
+            fellBack = !console.publish(false, MessageTemplate.of("record %d").args().arg(i));
+        }
+        assertThat(fellBack).isTrue();
+        release.countDown();
+        console.close();
+        assertThat(console.publish(false, MessageTemplate.of("after close").args())).isFalse();
+    }
+
+    @Test
+    public void testResourcesAreWithinJvmFigures() {
+        assertThat(Env.effectiveProcessors()).isBetween(1, Runtime.getRuntime().availableProcessors());
+        assertThat(Env.memoryLimit()).isNotZero();
+        assertThat(Env.numaNodeCount()).isPositive();
+    }
+
+    /**
+     * A channel whose writes wait for a latch, counting the lines written.
+     */
+    static final class BlockingChannel implements WritableByteChannel {
+        private final CountDownLatch release;
+        volatile int lines;
+
+        BlockingChannel(CountDownLatch release) {
+            this.release = release;
+        }
+
+        @Override
+        public int write(ByteBuffer src) throws IOException {
+            try {
+                release.await();
+            } catch (InterruptedException e) {
+                throw new IOException(e);
+            }
+            int n = src.remaining();
+            while (src.hasRemaining()) {
+                if (src.get() == '\n') {
+                    lines++;
+                }
+            }
+            return n;
+        }
+
+        @Override
+        public boolean isOpen() {
+            return true;
+        }
+
+        @Override
+        public void close() {
+        }
+    }
+}
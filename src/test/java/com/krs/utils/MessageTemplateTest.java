@@ -0,0 +1,75 @@
+package com.krs.utils;
+
+import org.testng.annotations.Test;
+
+import java.math.BigInteger;
+import java.util.IllegalFormatConversionException;
+import java.util.MissingFormatArgumentException;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class MessageTemplateTest {
+
+    @Test
+    public void testRendersAsStringFormat() {
+        Object[][] cases = {
+                {"plain"},
+                {"%s-%d", "a", 1},
+                {"%d%% of %s%n", 50L, null},
+                {"%s %s %s", 1.5, true, 'c'},
+                {"%d %d", BigInteger.TEN, (short) 3},
+                {"padded %05d and %.2f", 42, 3.14159},
+                {"extra %s", "used", "ignored"},
+        };
+        for (Object[] c : cases) {
+            String pattern = (String) c[0];
+            Object[] args = new Object[c.length - 1];
+            System.arraycopy(c, 1, args, 0, args.length);
+            assertThat(MessageTemplate.of(pattern).format(args)).isEqualTo(String.format(pattern, args));
+        }
+    }
+
+    @Test
+    public void testPrimitiveArgumentsRenderWithoutBoxing() {
+        StringBuilder to = new StringBuilder("> ");
+        MessageTemplate.of("%d of %s: %s %s").args().arg(3).arg(4L).arg(0.5).arg('x').appendTo(to);
+        assertThat(to.toString()).isEqualTo("> 3 of 4: 0.5 x");
+        assertThat(MessageTemplate.of("%s").args().arg(false).toString()).isEqualTo("false");
+    }
+
+    @Test
+    public void testCachesTemplates() {
+        assertThat(MessageTemplate.of("cached %d")).isSameAs(MessageTemplate.of("cached %d"));
+    }
+
+    @Test(expectedExceptions = IllegalFormatConversionException.class)
+    public void testIntegerConversionOfDoubleThrows() {
+        MessageTemplate.of("%d").args().arg(1.5).toString();
+    }
+
+    @Test(expectedExceptions = MissingFormatArgumentException.class)
+    public void testMissingArgumentThrows() {
+        MessageTemplate.of("%s and %s").args().arg(1).toString();
+    }
+
+    @Test
+    public void testFailedRenderReleasesArguments() {
+        try {
+            MessageTemplate.of("%d").args().arg("not a number").toString();
+        } catch (IllegalFormatConversionException expected) {
+            // The thread's arguments are released by the failed render, and reused by the next.
+        }
+        assertThat(MessageTemplate.of("%d").args().arg(7).toString()).isEqualTo("7");
+    }
+
+    @Test
+    public void testNestedRenderingFromToString() {
+        Object nested = new Object() {
+            @Override
+            public String toString() {
+                return MessageTemplate.of("<%d>").args().arg(2).toString();
+            }
+        };
+        assertThat(MessageTemplate.of("%s %d").args().arg(nested).arg(1).toString()).isEqualTo("<2> 1");
+    }
+}
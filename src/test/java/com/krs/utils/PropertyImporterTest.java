@@ -3,10 +3,17 @@ package com.krs.utils;
 import org.assertj.core.data.MapEntry;
 import org.testng.annotations.Test;
 
+import java.io.File;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.Arrays;
 import java.util.Properties;
 
 import static com.krs.utils.PropertyImporter.importFromSysProp;
 import static com.krs.utils.PropertyImporter.importProperties;
+import static com.krs.utils.PropertyImporter.readCurrentSnapshot;
 import static java.lang.System.getProperty;
 import static org.assertj.core.api.Assertions.assertThat;
 
@@ -132,6 +139,13 @@ public class PropertyImporterTest {
         importProperties(loc);
     }
 
+    @Test(expectedExceptions = IllegalStateException.class,
+            expectedExceptionsMessageRegExp = "(?s).*does not exist: does.not.exist.*at \\S+:/\\S+/classpath_bad_reference.config:2")
+    public void testErrorInClasspathIncludeNamesTheResource() throws Exception {
+        importProperties(write("#includecp prop_file_importer/classpath_bad_reference.config"), new Properties(),
+                new Properties());
+    }
+
     @Test
     public void testImportFileExpandEnvVariable() throws Exception {
         String loc = loader.getResource("prop_file_importer/expand_env_variable.config").getFile();
@@ -142,5 +156,121 @@ public class PropertyImporterTest {
         assertThat(props.getProperty("temp")).isEqualTo(getProperty("java.io.tmpdir"));
         assertThat(props.getProperty("temp2")).isEqualTo(getProperty("java.io.tmpdir"));
     }
-}
 
+    @Test
+    public void testExpandsEscapesAndReferencesInValues() throws Exception {
+        Properties source = new Properties();
+        source.setProperty("greeting", "hello ${who}");
+        source.setProperty("who", "world");
+        Properties props = new Properties();
+        importProperties(write("a=#x\\\\y", "b=${a} \\${a} } ${greeting}", "c=${unclosed ${a}"), source, props);
+
+        assertThat(props.getProperty("b")).isEqualTo("#x\\y ${a} } hello world");
+        assertThat(props.getProperty("c")).isEqualTo("${unclosed #x\\y");
+    }
+
+    @Test(expectedExceptions = IllegalStateException.class, expectedExceptionsMessageRegExp = ".*refers to itself: a.*")
+    public void testThrowsWhenPropertyRefersToItself() throws Exception {
+        Properties source = new Properties();
+        source.setProperty("a", "x${b}");
+        source.setProperty("b", "${a}");
+        importProperties(write("c=${a}"), source, new Properties());
+    }
+
+    @Test
+    public void testRedefinedPropertyIsExpandedAgain() throws Exception {
+        Properties props = new Properties();
+        importProperties(write("a=1", "b=${a}", "a=2", "c=${a}"), new Properties(), props);
+        assertThat(props.getProperty("b")).isEqualTo("1");
+        assertThat(props.getProperty("c")).isEqualTo("2");
+    }
+
+    @Test(timeOut = 5000)
+    public void testManyCrossReferencesLoadQuickly() throws Exception {
+        int count = 5000;
+        String[] lines = new String[count + 1];
+        lines[0] = "p0=v";
+        StringBuilder all = new StringBuilder("all=");
+        for (int i = 1; i < count; i++) {
+            lines[i] = "p" + i + "=${p" + (i - 1) + "}.${p0}";
+            all.append("${p").append(i).append("}");
+        }
+        lines[count] = all.toString();
+
+        Properties props = new Properties();
+        importProperties(write(lines), new Properties(), props);
+        assertThat(props.getProperty("p3")).isEqualTo("v.v.v.v");
+        assertThat(props.getProperty("all")).startsWith("v.vv.v.v");
+    }
+
+    @Test
+    public void testParsesLinesAsPropertiesLoadDoes() throws Exception {
+        Properties props = new Properties();
+        importProperties(write("a:1\r", "b = ${a}\\\r", "   2\r", "#includes not-a-directive\r", "! comment", "c \\u0041"),
+                new Properties(), props);
+        assertThat(props).hasSize(3);
+        assertThat(props.getProperty("a")).isEqualTo("1");
+        assertThat(props.getProperty("b")).isEqualTo("12");
+        assertThat(props.getProperty("c")).isEqualTo("A");
+    }
+
+    @Test
+    public void testSnapshotIsReusedUntilADependencyChanges() throws Exception {
+        String included = write("b=${a}-${who}-${env.PATH}");
+        String config = write("a=1", "#include " + included, "#includeif " + included + ".missing");
+        Path snapshot = Files.createTempFile("property-importer", ".snapshot");
+        Files.delete(snapshot);
+        snapshot.toFile().deleteOnExit();
+        Properties source = new Properties();
+        source.setProperty("who", "me");
+
+        Properties props = new Properties();
+        importProperties(config, source, props, snapshot.toString());
+        assertThat(props.getProperty("b")).isEqualTo("1-me-" + System.getenv("PATH"));
+        PropertySnapshot current = readCurrentSnapshot(config, source, snapshot);
+        assertThat(current).isNotNull();
+        assertThat(current.getProperties()).isEqualTo(props);
+
+        // Touching a file without changing it keeps the snapshot; changing a file, a referenced source property or
+        // the presence of an #includeif'd file does not.
+        assertThat(new File(included).setLastModified(System.currentTimeMillis() - 60_000)).isTrue();
+        assertThat(readCurrentSnapshot(config, source, snapshot)).isNotNull();
+        assertThat(readCurrentSnapshot(write("a=1"), source, snapshot)).isNull();
+        source.setProperty("who", "you");
+        assertThat(readCurrentSnapshot(config, source, snapshot)).isNull();
+        source.setProperty("who", "me");
+        Files.write(Paths.get(included + ".missing"), Arrays.asList("c=3"), StandardCharsets.UTF_8);
+        new File(included + ".missing").deleteOnExit();
+        assertThat(readCurrentSnapshot(config, source, snapshot)).isNull();
+
+        props = new Properties();
+        importProperties(config, source, props, snapshot.toString());
+        assertThat(props.getProperty("c")).isEqualTo("3");
+        Files.write(Paths.get(included), Arrays.asList("b=2"), StandardCharsets.UTF_8);
+        assertThat(readCurrentSnapshot(config, source, snapshot)).isNull();
+    }
+
+    @Test
+    public void testCorruptSnapshotIsIgnored() throws Exception {
+        String config = write("a=1");
+        Path snapshot = Files.createTempFile("property-importer", ".snapshot");
+        snapshot.toFile().deleteOnExit();
+        Files.write(snapshot, new byte[]{1, 2, 3});
+
+        Properties props = new Properties();
+        importProperties(config, new Properties(), props, snapshot.toString());
+        assertThat(props.getProperty("a")).isEqualTo("1");
+
+        byte[] bytes = Files.readAllBytes(snapshot);
+        bytes[bytes.length / 2] ^= 1;
+        Files.write(snapshot, bytes);
+        assertThat(readCurrentSnapshot(config, new Properties(), snapshot)).isNull();
+    }
+
+    private static String write(String... lines) throws Exception {
+        Path file = Files.createTempFile("property-importer", ".config");
+        file.toFile().deleteOnExit();
+        Files.write(file, Arrays.asList(lines), StandardCharsets.UTF_8);
+        return file.toString();
+    }
+}
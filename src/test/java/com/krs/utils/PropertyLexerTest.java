@@ -0,0 +1,64 @@
+package com.krs.utils;
+
+import org.testng.annotations.Test;
+
+import java.io.IOException;
+import java.io.StringReader;
+import java.nio.CharBuffer;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class PropertyLexerTest {
+
+    @Test
+    public void testParsesAsPropertiesLoadDoes() throws IOException {
+        String[] texts = {
+                "a=1",
+                "  key   value  ",
+                "key:value\nother = x",
+                "a\\=b=c",
+                "a\\ b : c\\:d",
+                "tab\tvalue",
+                "uni=\\u0041\\u00e9",
+                "escapes=\\t\\r\\n\\f\\q",
+                "! comment\n# comment\n\nx=1",
+                "list=1,\\\n    2,\\\r\n    3",
+                "even=a\\\\\nodd=b",
+                "end=trailing\\",
+                "key",
+                "=value",
+                "key==value",
+                "key = = value",
+                "crlf=1\r\nnext=2\rlast=3"
+        };
+        for (String text : texts) {
+            Properties expected = new Properties();
+            expected.load(new StringReader(text));
+            Map<String, String> actual = new LinkedHashMap<>();
+            PropertyLexer.parse(text, actual::put);
+            assertThat(actual).as(text).isEqualTo(expected);
+        }
+    }
+
+    @Test(expectedExceptions = IllegalArgumentException.class, expectedExceptionsMessageRegExp = "Malformed.*")
+    public void testThrowsOnMalformedUnicodeEscape() {
+        PropertyLexer.parse("a=\\u00g1", (key, value) -> {
+        });
+    }
+
+    @Test
+    public void testReadsLogicalLines() {
+        PropertyLexer lexer = new PropertyLexer(CharBuffer.wrap("  a=1  \r\nb=x\\\n  y\\\r\nz\n#c\\\nd=2\n"));
+        List<String> lines = new ArrayList<>();
+        for (String line = lexer.nextLogicalLine(); line != null; line = lexer.nextLogicalLine()) {
+            lines.add(line);
+        }
+        assertThat(lines).containsExactly("a=1", "b=x\\\ny\\\nz", "#c\\", "d=2");
+        assertThat(lexer.getLineNumber()).isEqualTo(6);
+    }
+}
@@ -0,0 +1,129 @@
+package com.krs.utils.logging;
+
+import com.google.common.base.Ticker;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.slf4j.helpers.MessageFormatter;
+import org.testng.annotations.Test;
+
+import java.lang.reflect.Proxy;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * @author krs
+ */
+public class ThrottledExceptionLogTest {
+
+    @Test
+    public void testFirstOccurrenceLoggedThenSuppressedUntilIntervalElapses() {
+        FakeTicker ticker = new FakeTicker();
+        ThrottledExceptionLog sut = newThrottle(ticker);
+
+        RuntimeException[] fresh = new RuntimeException[3];
+        for (int i = 0; i < fresh.length; i++) {
+            //a fresh throwable each time, but always of the same type and frames
+            fresh[i] = newException();
+        }
+        assertThat(sut.record(fresh[0])).isTrue();
+        assertThat(sut.record(fresh[1])).isFalse();
+
+        ticker.advance(999, TimeUnit.MILLISECONDS);
+        assertThat(sut.record(fresh[2])).isFalse();
+
+        ticker.advance(1, TimeUnit.MILLISECONDS);
+        assertThat(sut.record(fresh[0])).isTrue();
+        assertThat(sut.record(fresh[1])).isFalse();
+    }
+
+    @Test
+    public void testDifferentFingerprintsAreThrottledIndependently() {
+        ThrottledExceptionLog sut = newThrottle(new FakeTicker());
+        RuntimeException e = newException();
+        IllegalStateException other = new IllegalStateException();
+
+        assertThat(sut.record(e)).isTrue();
+        assertThat(sut.record(other)).isTrue();
+        assertThat(sut.record(e)).isFalse();
+        assertThat(sut.record(other)).isFalse();
+    }
+
+    @Test
+    public void testSummarizesSuppressedCountsThenEvictsIdleFingerprints() {
+        FakeTicker ticker = new FakeTicker();
+        List<String> warnings = new CopyOnWriteArrayList<>();
+        ThrottledExceptionLog sut = new ThrottledExceptionLog(capturingLogger(warnings), 5, 1, TimeUnit.SECONDS, ticker);
+
+        for (int i = 0; i < 3; i++) {
+            sut.record(newException());
+        }
+        sut.flush();
+        assertThat(warnings).hasSize(1);
+        assertThat(warnings.get(0)).startsWith("Suppressed 2 repeats of java.lang.RuntimeException at ");
+
+        // Nothing suppressed since, and idle for a whole interval: the fingerprint is forgotten, and starts afresh.
+        ticker.advance(2, TimeUnit.SECONDS);
+        sut.flush();
+        assertThat(warnings).hasSize(1);
+        assertThat(sut.size()).isZero();
+        assertThat(sut.record(newException())).isTrue();
+        assertThat(sut.size()).isEqualTo(1);
+    }
+
+    @Test(timeOut = 5000)
+    public void testSummariesAreWrittenWithoutFurtherRecords() throws Exception {
+        List<String> warnings = new CopyOnWriteArrayList<>();
+        ThrottledExceptionLog sut = new ThrottledExceptionLog(capturingLogger(warnings), 5, 50, TimeUnit.MILLISECONDS);
+
+        for (int i = 0; i < 2; i++) {
+            assertThat(sut.record(newException())).isEqualTo(i == 0);
+        }
+        // The tail of an outage: no further record() call will come along to write the summary.
+        while (warnings.isEmpty()) {
+            TimeUnit.MILLISECONDS.sleep(10);
+        }
+        assertThat(warnings.get(0)).startsWith("Suppressed 1 repeats of java.lang.RuntimeException at ");
+    }
+
+    /**
+     * Returns a logger that formats its warnings into the specified list, and ignores everything else.
+     */
+    static Logger capturingLogger(List<String> warnings) {
+        return (Logger) Proxy.newProxyInstance(Logger.class.getClassLoader(), new Class<?>[]{Logger.class},
+                (proxy, method, args) -> {
+                    if (method.getName().equals("warn") && args.length > 1 && args[0] instanceof String) {
+                        Object[] values = args.length == 2 && args[1] instanceof Object[]
+                                ? (Object[]) args[1] : Arrays.copyOfRange(args, 1, args.length);
+                        warnings.add(MessageFormatter.arrayFormat((String) args[0], values).getMessage());
+                    }
+                    Class<?> type = method.getReturnType();
+                    return type == boolean.class ? Boolean.TRUE : type == String.class ? "capturing" : null;
+                });
+    }
+
+    ThrottledExceptionLog newThrottle(Ticker ticker) {
+        return new ThrottledExceptionLog(
+                LoggerFactory.getLogger(ThrottledExceptionLogTest.class), 5, 1, TimeUnit.SECONDS, ticker);
+    }
+
+    RuntimeException newException() {
+        return new RuntimeException("boom");
+    }
+
+    static final class FakeTicker extends Ticker {
+        private long nanos;
+
+        @Override
+        public long read() {
+            return nanos;
+        }
+
+        void advance(long time, TimeUnit unit) {
+            nanos += unit.toNanos(time);
+        }
+    }
+}
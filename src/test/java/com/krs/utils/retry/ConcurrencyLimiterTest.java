@@ -0,0 +1,167 @@
+package com.krs.utils.retry;
+
+import com.krs.utils.retry.strategy.DeferRetryStrategy;
+import org.testng.annotations.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+import static com.krs.utils.retry.RetryUtils.buildRetryPolicy;
+import static com.krs.utils.retry.RetryUtils.classifyRejections;
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * @author krs
+ */
+public class ConcurrencyLimiterTest {
+
+    @Test
+    public void testShedsCallsOverLimit() {
+        ConcurrencyLimiter sut = ConcurrencyLimiter.aimd(2, 1, 10, 1, TimeUnit.SECONDS);
+
+        ConcurrencyLimiter.Permit first = sut.tryAcquire();
+        ConcurrencyLimiter.Permit second = sut.tryAcquire();
+        assertThat(first).isNotNull();
+        assertThat(second).isNotNull();
+        assertThat(sut.tryAcquire()).isNull();
+
+        first.ignore();
+        first.ignore(); //releasing twice has no effect
+        assertThat(sut.getInFlight()).isEqualTo(1);
+        assertThat(sut.tryAcquire()).isNotNull();
+    }
+
+    @Test
+    public void testAimdGrowsWhenSaturatedAndBacksOffWhenDropped() {
+        ConcurrencyLimiter sut = ConcurrencyLimiter.aimd(10, 1, 20, 1, TimeUnit.SECONDS);
+
+        ConcurrencyLimiter.Permit[] permits = new ConcurrencyLimiter.Permit[10];
+        for (int i = 0; i < permits.length; i++) {
+            permits[i] = sut.tryAcquire();
+        }
+        permits[9].success();
+        assertThat(sut.getLimit()).isEqualTo(11);
+
+        permits[8].dropped();
+        assertThat(sut.getLimit()).isEqualTo(9);
+    }
+
+    @Test
+    public void testGradientGrowsFromSmallLimitWhenSaturated() {
+        ConcurrencyLimiter sut = ConcurrencyLimiter.gradient(1, 1, 100);
+
+        List<ConcurrencyLimiter.Permit> permits = new ArrayList<>();
+        for (int round = 0; round < 200; round++) {
+            for (ConcurrencyLimiter.Permit permit = sut.tryAcquire(); permit != null; permit = sut.tryAcquire()) {
+                permits.add(permit);
+            }
+            for (ConcurrencyLimiter.Permit permit : permits) {
+                permit.success();
+            }
+            permits.clear();
+        }
+        assertThat(sut.getLimit()).isGreaterThan(10);
+    }
+
+    @Test(timeOut = 1000)
+    public void testAcquireWaitsForRelease() throws Exception {
+        ConcurrencyLimiter sut = ConcurrencyLimiter.gradient(1, 1, 1);
+        ConcurrencyLimiter.Permit held = sut.tryAcquire();
+
+        assertThat(sut.acquire(10, TimeUnit.MILLISECONDS)).isNull();
+
+        Thread releaser = new Thread(() -> {
+            try {
+                TimeUnit.MILLISECONDS.sleep(50);
+            } catch (InterruptedException ignored) {
+            }
+            held.success();
+        });
+        releaser.start();
+        assertThat(sut.acquire(1, TimeUnit.SECONDS)).isNotNull();
+    }
+
+    @Test(timeOut = 5000)
+    public void testBackToBackReleasesWakeDifferentWaiters() throws Exception {
+        int count = 4;
+        ConcurrencyLimiter sut = ConcurrencyLimiter.gradient(count, count, count);
+        ConcurrencyLimiter.Permit[] held = new ConcurrencyLimiter.Permit[count];
+        for (int i = 0; i < count; i++) {
+            held[i] = sut.tryAcquire();
+        }
+
+        ExecutorService pool = Executors.newFixedThreadPool(count);
+        try {
+            List<Future<ConcurrencyLimiter.Permit>> acquired = new ArrayList<>();
+            for (int i = 0; i < count; i++) {
+                acquired.add(pool.submit(() -> sut.acquire(10, TimeUnit.SECONDS)));
+            }
+            while (sut.getWaiterCount() < count) {
+                Thread.yield();
+            }
+
+            long start = System.nanoTime();
+            for (ConcurrencyLimiter.Permit permit : held) {
+                permit.ignore();
+            }
+            for (Future<ConcurrencyLimiter.Permit> future : acquired) {
+                assertThat(future.get()).isNotNull();
+            }
+            // Every waiter is woken by a release, rather than left to sleep until its deadline.
+            assertThat(TimeUnit.NANOSECONDS.toSeconds(System.nanoTime() - start)).isLessThan(2);
+        } finally {
+            pool.shutdownNow();
+        }
+    }
+
+    @Test(timeOut = 5000)
+    public void testGrowingLimitWakesWaiters() throws Exception {
+        ConcurrencyLimiter sut = ConcurrencyLimiter.aimd(1, 1, 10, 1, TimeUnit.MINUTES);
+        ConcurrencyLimiter.Permit held = sut.tryAcquire();
+
+        ExecutorService pool = Executors.newFixedThreadPool(2);
+        try {
+            Future<ConcurrencyLimiter.Permit> first = pool.submit(() -> sut.acquire(10, TimeUnit.SECONDS));
+            Future<ConcurrencyLimiter.Permit> second = pool.submit(() -> sut.acquire(10, TimeUnit.SECONDS));
+            while (sut.getWaiterCount() < 2) {
+                Thread.yield();
+            }
+
+            // A saturated, fast call grows the limit to two, so both waiters can proceed.
+            held.success();
+            assertThat(first.get()).isNotNull();
+            assertThat(second.get()).isNotNull();
+            assertThat(sut.getInFlight()).isEqualTo(2);
+        } finally {
+            pool.shutdownNow();
+        }
+    }
+
+    @Test(expectedExceptions = TimeoutException.class)
+    public void testCallReportsTimeoutsAsDropped() throws Exception {
+        ConcurrencyLimiter sut = ConcurrencyLimiter.aimd(10, 1, 20, 1, TimeUnit.SECONDS);
+        try {
+            sut.call(() -> {
+                throw new TimeoutException();
+            });
+        } finally {
+            assertThat(sut.getLimit()).isEqualTo(9);
+            assertThat(sut.getInFlight()).isZero();
+        }
+    }
+
+    @Test
+    public void testRejectionsClassifiedByPolicy() {
+        RetryPolicy policy = buildRetryPolicy((Throwable t) -> false, new DeferRetryStrategy());
+        LimitExceededException rejection = new LimitExceededException(1);
+
+        assertThat(classifyRejections(policy, true).canRetry(rejection)).isTrue();
+        assertThat(classifyRejections(policy, false).canRetry(rejection)).isFalse();
+        assertThat(classifyRejections(policy, true).canRetry(new RuntimeException())).isFalse();
+    }
+}
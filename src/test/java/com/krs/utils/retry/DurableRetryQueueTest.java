@@ -0,0 +1,121 @@
+package com.krs.utils.retry;
+
+import org.testng.annotations.AfterMethod;
+import org.testng.annotations.Test;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * @author krs
+ */
+public class DurableRetryQueueTest {
+    private final List<Path> directories = new ArrayList<>();
+
+    @AfterMethod
+    public void deleteJournals() throws IOException {
+        for (Path dir : directories) {
+            try (DirectoryStream<Path> files = Files.newDirectoryStream(dir)) {
+                for (Path file : files) {
+                    Files.delete(file);
+                }
+            }
+            Files.delete(dir);
+        }
+        directories.clear();
+    }
+
+    @Test(timeOut = 5000)
+    public void testPendingItemsSurviveReopen() throws Exception {
+        Path journal = newJournal();
+
+        try (DurableRetryQueue sut = DurableRetryQueue.open(journal)) {
+            DurableRetryQueue.WorkItem done = sut.schedule(bytes("done"), 0, TimeUnit.SECONDS).get();
+            DurableRetryQueue.WorkItem failed = sut.schedule(bytes("failed"), 0, TimeUnit.SECONDS).get();
+            sut.schedule(bytes("later"), 1, TimeUnit.HOURS).get();
+
+            assertThat(sut.pollDue(10)).extracting("id").containsExactly(done.getId(), failed.getId());
+            assertThat(sut.pollDue(10)).isEmpty();
+
+            sut.complete(done).get();
+            sut.reschedule(failed, 0, TimeUnit.SECONDS).get();
+            assertThat(sut.size()).isEqualTo(2);
+        }
+
+        try (DurableRetryQueue sut = DurableRetryQueue.open(journal)) {
+            assertThat(sut.size()).isEqualTo(2);
+
+            List<DurableRetryQueue.WorkItem> due = sut.pollDue(10);
+            assertThat(due).hasSize(1);
+            assertThat(new String(due.get(0).getPayload(), StandardCharsets.UTF_8)).isEqualTo("failed");
+            assertThat(due.get(0).getAttempts()).isEqualTo(1);
+
+            DurableRetryQueue.WorkItem next = sut.schedule(bytes("next"), 0, TimeUnit.SECONDS).get();
+            assertThat(next.getId()).isGreaterThan(due.get(0).getId());
+        }
+    }
+
+    @Test(timeOut = 5000)
+    public void testJournalCompactsWhenFull() throws Exception {
+        Path journal = newJournal();
+
+        try (DurableRetryQueue sut = DurableRetryQueue.open(journal, 256)) {
+            DurableRetryQueue.WorkItem item = sut.schedule(bytes("payload"), 0, TimeUnit.SECONDS).get();
+            for (int i = 0; i < 100; i++) {
+                item = sut.reschedule(item, 0, TimeUnit.SECONDS).get();
+            }
+            for (int i = 0; i < 20; i++) {
+                sut.schedule(bytes("bulk" + i), 1, TimeUnit.HOURS).get();
+            }
+        }
+
+        try (DurableRetryQueue sut = DurableRetryQueue.open(journal, 256)) {
+            assertThat(sut.size()).isEqualTo(21);
+            assertThat(sut.pollDue(10)).extracting("attempts").containsExactly(100);
+        }
+    }
+
+    @Test(timeOut = 10000)
+    public void testChangesRacingCloseAreAlwaysResolved() throws Exception {
+        for (int round = 0; round < 20; round++) {
+            DurableRetryQueue sut = DurableRetryQueue.open(newJournal(), 64 * 1024);
+            List<CompletableFuture<DurableRetryQueue.WorkItem>> futures = new ArrayList<>();
+            Thread producer = new Thread(() -> {
+                for (int i = 0; i < 200; i++) {
+                    futures.add(sut.schedule(bytes("racing"), 0, TimeUnit.SECONDS));
+                }
+            });
+            producer.start();
+            sut.close();
+            producer.join();
+
+            for (CompletableFuture<DurableRetryQueue.WorkItem> future : futures) {
+                try {
+                    future.get(1, TimeUnit.SECONDS);
+                } catch (ExecutionException e) {
+                    assertThat(e.getCause()).isInstanceOf(IllegalStateException.class);
+                }
+            }
+        }
+    }
+
+    private Path newJournal() throws IOException {
+        Path dir = Files.createTempDirectory("retry-journal");
+        directories.add(dir);
+        return dir.resolve("queue.journal");
+    }
+
+    static byte[] bytes(String s) {
+        return s.getBytes(StandardCharsets.UTF_8);
+    }
+}
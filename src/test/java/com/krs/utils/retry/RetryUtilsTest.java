@@ -10,6 +10,9 @@ import java.util.concurrent.TimeUnit;
 
 import static com.krs.utils.retry.RetryPolicy.NO_RETRY;
 import static com.krs.utils.retry.RetryUtils.buildRetryPolicy;
+import static com.krs.utils.retry.RetryUtils.execute;
+import static com.krs.utils.retry.RetryUtils.executeAsInt;
+import static com.krs.utils.retry.RetryUtils.executeAsLong;
 import static java.lang.System.currentTimeMillis;
 import static org.assertj.core.api.Assertions.assertThat;
 
@@ -123,6 +126,87 @@ public class RetryUtilsTest {
         policy.beforeRetry(RUNTIME_EXCEPTION);
     }
 
+    @Test(description = "Test that a stackless deferring strategy still carries the original cause.")
+    public void testStacklessDeferringRetryPolicy() {
+        RetryPolicy policy = buildRetryPolicy((Throwable t) -> true, new DeferRetryStrategy(false));
+
+        try {
+            policy.beforeRetry(RUNTIME_EXCEPTION);
+        } catch (RetryException e) {
+            assertThat(e.getCause()).isSameAs(RUNTIME_EXCEPTION);
+            assertThat(e.getStackTrace()).isEmpty();
+            assertThat(policy.canRetry(e)).isTrue();
+            return;
+        }
+        throw new AssertionError("RetryException expected");
+    }
+
+    @Test
+    public void testSharedRetryExceptionsAreImmutable() {
+        RetryException.BUDGET_EXHAUSTED.addSuppressed(RUNTIME_EXCEPTION);
+        assertThat(RetryException.BUDGET_EXHAUSTED.getSuppressed()).isEmpty();
+        assertThat(RetryException.BUDGET_EXHAUSTED.getStackTrace()).isEmpty();
+    }
+
+    @Test(timeOut = 1000, description = "Test that execute retries failures until the operation succeeds.")
+    public void testExecuteRetriesUntilSuccess() throws Exception {
+        int[] attempts = {0};
+        RetryPolicy policy = buildRetryPolicy((Throwable t) -> true, new DelayRetryStrategy(1, TimeUnit.MILLISECONDS, 5));
+
+        String result = execute(() -> {
+            if (++attempts[0] < 3) {
+                throw RUNTIME_EXCEPTION;
+            }
+            return "done";
+        }, policy);
+
+        assertThat(result).isEqualTo("done");
+        assertThat(attempts[0]).isEqualTo(3);
+    }
+
+    @Test(expectedExceptions = IllegalStateException.class,
+            description = "Test that execute rethrows failures the policy does not allow to be retried.")
+    public void testExecuteRethrowsNonRetryableFailure() throws Exception {
+        int[] attempts = {0};
+        RetryPolicy policy = buildRetryPolicy((Throwable t) -> !(t instanceof IllegalStateException), new DeferRetryStrategy());
+
+        try {
+            execute(() -> {
+                attempts[0]++;
+                throw new IllegalStateException();
+            }, policy);
+        } finally {
+            assertThat(attempts[0]).isEqualTo(1);
+        }
+    }
+
+    @Test(expectedExceptions = RetryException.class, expectedExceptionsMessageRegExp = "(?i).*max retries.*")
+    public void testExecuteStopsWhenStrategyExhausted() {
+        RetryPolicy policy = buildRetryPolicy((Throwable t) -> true, new DelayRetryStrategy(1, TimeUnit.MILLISECONDS, 2));
+        executeAsLong(() -> {
+            throw RUNTIME_EXCEPTION;
+        }, policy);
+    }
+
+    @Test
+    public void testPrimitiveExecuteVariants() {
+        int[] attempts = {0};
+        RetryPolicy policy = buildRetryPolicy((Throwable t) -> true, new DelayRetryStrategy(1, TimeUnit.MILLISECONDS, 5));
+
+        assertThat(executeAsInt(() -> 42, NO_RETRY)).isEqualTo(42);
+        assertThat(executeAsLong(() -> {
+            if (attempts[0]++ == 0) {
+                throw RUNTIME_EXCEPTION;
+            }
+            return 42L;
+        }, policy)).isEqualTo(42L);
+
+        execute(() -> {
+            attempts[0]++;
+        }, NO_RETRY);
+        assertThat(attempts[0]).isEqualTo(3);
+    }
+
     @Test
     public void testNoRetryPolicy() {
         assertThat(NO_RETRY.canRetry(RUNTIME_EXCEPTION)).isFalse();
@@ -0,0 +1,87 @@
+package com.krs.utils.retry;
+
+import com.google.common.base.Ticker;
+import com.krs.utils.retry.strategy.RateLimitedRetryStrategy;
+import org.testng.annotations.Test;
+
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * @author krs
+ */
+public class TokenBucketTest {
+
+    @Test
+    public void testBurstUpToCapacityThenRefillsAtRate() {
+        long[] now = {0};
+        TokenBucket sut = new TokenBucket(10, 3, ticker(now));
+
+        assertThat(sut.tryAcquire()).isTrue();
+        assertThat(sut.tryAcquire()).isTrue();
+        assertThat(sut.tryAcquire()).isTrue();
+        assertThat(sut.tryAcquire()).isFalse();
+
+        now[0] += TimeUnit.MILLISECONDS.toNanos(99);
+        assertThat(sut.tryAcquire()).isFalse();
+        now[0] += TimeUnit.MILLISECONDS.toNanos(1);
+        assertThat(sut.tryAcquire()).isTrue();
+
+        //idle time never fills the bucket beyond capacity
+        now[0] += TimeUnit.SECONDS.toNanos(10);
+        for (int i = 0; i < 3; i++) {
+            assertThat(sut.tryAcquire()).isTrue();
+        }
+        assertThat(sut.tryAcquire()).isFalse();
+    }
+
+    @Test
+    public void testTimedAcquireDoesNotReserveBeyondTimeout() throws Exception {
+        long[] now = {0};
+        TokenBucket sut = new TokenBucket(1, 1, ticker(now));
+
+        assertThat(sut.tryAcquire(0, TimeUnit.SECONDS)).isTrue();
+        assertThat(sut.tryAcquire(500, TimeUnit.MILLISECONDS)).isFalse();
+
+        now[0] += TimeUnit.SECONDS.toNanos(1);
+        assertThat(sut.tryAcquire()).isTrue();
+    }
+
+    @Test(timeOut = 1000)
+    public void testBlockingStrategyWaitsForToken() {
+        RateLimitedRetryStrategy sut = new RateLimitedRetryStrategy(t -> {
+        }, new TokenBucket(20, 1));
+
+        long start = System.nanoTime();
+        sut.beforeRetry(new RuntimeException());
+        sut.beforeRetry(new RuntimeException());
+        assertThat(System.nanoTime() - start).isGreaterThanOrEqualTo(TimeUnit.MILLISECONDS.toNanos(40));
+    }
+
+    @Test
+    public void testNonBlockingStrategyDefersWhenBucketEmpty() {
+        RuntimeException cause = new RuntimeException();
+        long[] now = {0};
+        RateLimitedRetryStrategy sut = new RateLimitedRetryStrategy(t -> {
+        }, new TokenBucket(1, 1, ticker(now)), false);
+
+        sut.beforeRetry(cause);
+        try {
+            sut.beforeRetry(cause);
+        } catch (RetryException e) {
+            assertThat(e.getCause()).isSameAs(cause);
+            return;
+        }
+        throw new AssertionError("RetryException expected");
+    }
+
+    static Ticker ticker(long[] now) {
+        return new Ticker() {
+            @Override
+            public long read() {
+                return now[0];
+            }
+        };
+    }
+}
@@ -0,0 +1,117 @@
+package com.krs.utils.threads;
+
+import org.testng.annotations.Test;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class BatchingExecutorTest {
+
+    @Test
+    public void testFlushesWhenBatchIsFull() throws Exception {
+        List<List<Integer>> batches = Collections.synchronizedList(new ArrayList<>());
+        BatchingExecutor<Integer> executor =
+                new BatchingExecutor<>("batch-%d", batches::add, 10, 1, TimeUnit.HOURS, 100);
+        for (int i = 0; i < 30; i++) {
+            executor.submit(i);
+        }
+        executor.shutdown();
+        assertThat(executor.awaitTermination(5, TimeUnit.SECONDS)).isTrue();
+
+        List<Integer> all = new ArrayList<>();
+        for (List<Integer> batch : batches) {
+            assertThat(batch.size()).isLessThanOrEqualTo(10);
+            all.addAll(batch);
+        }
+        assertThat(all).hasSize(30).isSorted();
+    }
+
+    @Test
+    public void testFlushesPartialBatchAfterDelay() throws Exception {
+        CountDownLatch flushed = new CountDownLatch(1);
+        List<List<String>> batches = Collections.synchronizedList(new ArrayList<>());
+        BatchingExecutor<String> executor = new BatchingExecutor<>("batch-%d", batch -> {
+            batches.add(batch);
+            flushed.countDown();
+        }, 100, 20, TimeUnit.MILLISECONDS, 100);
+
+        executor.submit("a");
+        executor.submit("b");
+        assertThat(flushed.await(5, TimeUnit.SECONDS)).isTrue();
+        assertThat(batches.get(0)).containsExactly("a", "b");
+        executor.shutdown();
+    }
+
+    @Test
+    public void testShutdownFlushesAcceptedItemsAndRejectsNewOnes() throws Exception {
+        List<String> handled = Collections.synchronizedList(new ArrayList<>());
+        BatchingExecutor<String> executor =
+                new BatchingExecutor<>("batch-%d", handled::addAll, 100, 1, TimeUnit.HOURS, 100);
+        executor.submit("a");
+        executor.submit("b");
+        executor.shutdown();
+
+        assertThat(executor.awaitTermination(5, TimeUnit.SECONDS)).isTrue();
+        assertThat(handled).containsExactly("a", "b");
+        try {
+            executor.offer("c");
+            throw new AssertionError("Expected rejection");
+        } catch (RejectedExecutionException expected) {
+            // expected
+        }
+    }
+
+    @Test(expectedExceptions = RejectedExecutionException.class)
+    public void testInterruptingThreadShutsDownExecutor() throws Exception {
+        List<String> handled = Collections.synchronizedList(new ArrayList<>());
+        List<Thread> threads = new ArrayList<>();
+        BatchingExecutor<String> executor = new BatchingExecutor<>(r -> {
+            Thread thread = new Thread(r);
+            thread.setDaemon(true);
+            threads.add(thread);
+            return thread;
+        }, handled::addAll, 100, 1, TimeUnit.HOURS, 100);
+        executor.submit("a");
+        threads.get(0).interrupt();
+
+        assertThat(executor.awaitTermination(5, TimeUnit.SECONDS)).isTrue();
+        assertThat(executor.isShutdown()).isTrue();
+        assertThat(handled).containsExactly("a");
+        executor.submit("b");
+    }
+
+    @Test
+    public void testOfferFailsWhenFullAndHandlerErrorsDoNotStopExecutor() throws Exception {
+        CountDownLatch release = new CountDownLatch(1);
+        CountDownLatch secondBatch = new CountDownLatch(1);
+        BatchingExecutor<Integer> executor = new BatchingExecutor<>("batch-%d", batch -> {
+            if (batch.contains(0)) {
+                try {
+                    release.await();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+                throw new IllegalStateException("expected");
+            }
+            secondBatch.countDown();
+        }, 1, 0, TimeUnit.MILLISECONDS, 1);
+
+        executor.submit(0);
+        // Wait for the handler to take the first item, then fill the queue behind it.
+        while (executor.getQueueSize() > 0) {
+            Thread.sleep(1);
+        }
+        assertThat(executor.offer(1)).isTrue();
+        assertThat(executor.offer(2)).isFalse();
+
+        release.countDown();
+        assertThat(secondBatch.await(5, TimeUnit.SECONDS)).isTrue();
+        executor.shutdown();
+    }
+}
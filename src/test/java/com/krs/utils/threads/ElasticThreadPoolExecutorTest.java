@@ -0,0 +1,58 @@
+package com.krs.utils.threads;
+
+import org.testng.annotations.Test;
+
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class ElasticThreadPoolExecutorTest {
+    static final long TARGET_WAIT = TimeUnit.MILLISECONDS.toNanos(10);
+
+    @Test
+    public void testClimberShrinksWhenTasksDoNotQueue() {
+        ElasticThreadPoolExecutor.HillClimber climber = new ElasticThreadPoolExecutor.HillClimber(2, 8, TARGET_WAIT);
+        assertThat(climber.next(4, 100, 0, 0.1)).isEqualTo(3);
+        assertThat(climber.next(2, 100, 0, 0.1)).isEqualTo(2);
+    }
+
+    @Test
+    public void testClimberHoldsWhenCpuIsSaturated() {
+        ElasticThreadPoolExecutor.HillClimber climber = new ElasticThreadPoolExecutor.HillClimber(2, 8, TARGET_WAIT);
+        assertThat(climber.next(4, 100, TARGET_WAIT * 10, 0.95)).isEqualTo(4);
+    }
+
+    @Test
+    public void testClimberKeepsDirectionWhileThroughputImprovesAndReversesOtherwise() {
+        ElasticThreadPoolExecutor.HillClimber climber = new ElasticThreadPoolExecutor.HillClimber(1, 8, TARGET_WAIT);
+        long queued = TARGET_WAIT * 10;
+        assertThat(climber.next(2, 100, queued, 0.1)).isEqualTo(3);
+        assertThat(climber.next(3, 150, queued, 0.1)).isEqualTo(4);
+        // No gain from the fourth thread, so step back.
+        assertThat(climber.next(4, 151, queued, 0.1)).isEqualTo(3);
+        assertThat(climber.next(3, 100, queued, 0.1)).isEqualTo(4);
+        assertThat(climber.next(8, 500, queued, 0.1)).isEqualTo(8);
+    }
+
+    @Test
+    public void testPoolGrowsUnderQueuedBlockingWork() throws Exception {
+        ElasticThreadPoolExecutor pool = new ElasticThreadPoolExecutor(
+                "elastic-%d", 1, 4, 10000, 1, TimeUnit.MILLISECONDS, 50, TimeUnit.MILLISECONDS);
+        for (int i = 0; i < 2000; i++) {
+            pool.execute(() -> {
+                try {
+                    Thread.sleep(5);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+            });
+        }
+
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+        while (pool.getCorePoolSize() == 1 && System.nanoTime() < deadline) {
+            Thread.sleep(10);
+        }
+        assertThat(pool.getCorePoolSize()).isGreaterThan(1).isLessThanOrEqualTo(4);
+        pool.shutdownNow();
+    }
+}
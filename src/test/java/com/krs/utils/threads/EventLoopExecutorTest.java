@@ -0,0 +1,115 @@
+package com.krs.utils.threads;
+
+import org.testng.annotations.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class EventLoopExecutorTest {
+
+    @Test
+    public void testRunsTasksInOrderOnOneThread() throws Exception {
+        EventLoopExecutor loop = new EventLoopExecutor("loop-%d", 1024);
+        List<Integer> seen = new ArrayList<>();
+        List<Thread> threads = new ArrayList<>();
+        for (int i = 0; i < 500; i++) {
+            int value = i;
+            loop.execute(() -> {
+                seen.add(value);
+                threads.add(Thread.currentThread());
+            });
+        }
+        assertThat(loop.submit(() -> loop.inEventLoop()).get(5, TimeUnit.SECONDS)).isTrue();
+        loop.shutdown();
+        assertThat(loop.awaitTermination(5, TimeUnit.SECONDS)).isTrue();
+
+        assertThat(seen).hasSize(500).isSorted();
+        assertThat(threads).allMatch(t -> t.getName().equals("loop-0"));
+    }
+
+    @Test
+    public void testFailingTaskDoesNotStopLoop() throws Exception {
+        EventLoopExecutor loop = new EventLoopExecutor("loop-%d", 16);
+        loop.execute(() -> {
+            throw new IllegalStateException("expected");
+        });
+        assertThat(loop.submit(() -> "ok").get(5, TimeUnit.SECONDS)).isEqualTo("ok");
+        loop.shutdown();
+    }
+
+    @Test
+    public void testRejectsWhenFullAndAfterShutdown() throws Exception {
+        EventLoopExecutor loop = new EventLoopExecutor("loop-%d", 2);
+        CountDownLatch blocked = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        loop.execute(() -> {
+            blocked.countDown();
+            try {
+                release.await();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        });
+        assertThat(blocked.await(5, TimeUnit.SECONDS)).isTrue();
+        loop.execute(() -> {});
+        loop.execute(() -> {});
+
+        assertRejected(loop);
+        release.countDown();
+        loop.shutdown();
+        assertRejected(loop);
+        assertThat(loop.awaitTermination(5, TimeUnit.SECONDS)).isTrue();
+        assertThat(loop.getQueueSize()).isZero();
+    }
+
+    @Test
+    public void testManyProducersAllTasksRun() throws Exception {
+        EventLoopExecutor loop = new EventLoopExecutor("loop-%d", 1 << 16);
+        int producers = 4;
+        int perProducer = 10000;
+        CountDownLatch done = new CountDownLatch(producers * perProducer);
+        for (int t = 0; t < producers; t++) {
+            new Thread(() -> {
+                for (int i = 0; i < perProducer; i++) {
+                    loop.execute(done::countDown);
+                }
+            }).start();
+        }
+        assertThat(done.await(10, TimeUnit.SECONDS)).isTrue();
+        loop.shutdown();
+    }
+
+    @Test
+    public void testShutdownNowReturnsQueuedTasks() throws Exception {
+        EventLoopExecutor loop = new EventLoopExecutor("loop-%d", 16);
+        CountDownLatch blocked = new CountDownLatch(1);
+        loop.execute(() -> {
+            blocked.countDown();
+            try {
+                Thread.sleep(50);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        });
+        assertThat(blocked.await(5, TimeUnit.SECONDS)).isTrue();
+        loop.execute(() -> {});
+        loop.execute(() -> {});
+
+        assertThat(loop.shutdownNow()).hasSize(2);
+        assertThat(loop.isTerminated()).isTrue();
+    }
+
+    private static void assertRejected(EventLoopExecutor loop) {
+        try {
+            loop.execute(() -> {});
+            throw new AssertionError("Expected rejection");
+        } catch (RejectedExecutionException expected) {
+            // expected
+        }
+    }
+}
@@ -0,0 +1,99 @@
+package com.krs.utils.threads;
+
+import org.testng.annotations.Test;
+
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class HashedWheelSchedulerTest {
+
+    private static HashedWheelScheduler newScheduler() {
+        // A tiny wheel, so tests exercise tasks that wrap around it more than once.
+        return new HashedWheelScheduler("wheel-test-%d", 1, TimeUnit.MILLISECONDS, 8);
+    }
+
+    @Test
+    public void testRunsTaskNoEarlierThanItsDelay() throws Exception {
+        HashedWheelScheduler scheduler = newScheduler();
+        long start = System.nanoTime();
+        ScheduledFuture<Long> f = scheduler.schedule(System::nanoTime, 30, TimeUnit.MILLISECONDS);
+        assertThat(f.get(5, TimeUnit.SECONDS) - start).isGreaterThanOrEqualTo(TimeUnit.MILLISECONDS.toNanos(30));
+        scheduler.shutdown();
+    }
+
+    @Test
+    public void testCancelledTaskNeverRuns() throws Exception {
+        HashedWheelScheduler scheduler = newScheduler();
+        AtomicInteger runs = new AtomicInteger();
+        ScheduledFuture<?> cancelled = scheduler.schedule(runs::incrementAndGet, 20, TimeUnit.MILLISECONDS);
+        ScheduledFuture<?> kept = scheduler.schedule(() -> {}, 40, TimeUnit.MILLISECONDS);
+        assertThat(cancelled.cancel(false)).isTrue();
+        kept.get(5, TimeUnit.SECONDS);
+        assertThat(runs.get()).isZero();
+        assertThat(cancelled.isCancelled()).isTrue();
+        scheduler.shutdown();
+    }
+
+    @Test
+    public void testFixedRateRepeatsUntilCancelled() throws Exception {
+        HashedWheelScheduler scheduler = newScheduler();
+        CountDownLatch latch = new CountDownLatch(5);
+        ScheduledFuture<?> f = scheduler.scheduleAtFixedRate(latch::countDown, 0, 2, TimeUnit.MILLISECONDS);
+        assertThat(latch.await(5, TimeUnit.SECONDS)).isTrue();
+        f.cancel(false);
+        assertThat(f.isDone()).isTrue();
+        scheduler.shutdown();
+    }
+
+    @Test
+    public void testShutdownRunsDelayedTasksAndCancelsPeriodicOnes() throws Exception {
+        HashedWheelScheduler scheduler = newScheduler();
+        ScheduledFuture<String> delayed = scheduler.schedule(() -> "done", 20, TimeUnit.MILLISECONDS);
+        ScheduledFuture<?> periodic = scheduler.scheduleWithFixedDelay(() -> {}, 1, 1, TimeUnit.MILLISECONDS);
+        scheduler.shutdown();
+
+        assertThat(scheduler.awaitTermination(5, TimeUnit.SECONDS)).isTrue();
+        assertThat(delayed.get()).isEqualTo("done");
+        assertThat(periodic.isCancelled()).isTrue();
+    }
+
+    @Test(expectedExceptions = RejectedExecutionException.class)
+    public void testRejectsTasksAfterShutdown() {
+        HashedWheelScheduler scheduler = newScheduler();
+        scheduler.shutdown();
+        scheduler.execute(() -> {});
+    }
+
+    @Test
+    public void testShutdownNowReturnsPendingTasks() throws Exception {
+        HashedWheelScheduler scheduler = newScheduler();
+        scheduler.schedule(() -> {}, 1, TimeUnit.HOURS);
+        scheduler.schedule(() -> {}, 2, TimeUnit.HOURS);
+        List<Runnable> pending = scheduler.shutdownNow();
+        assertThat(pending).hasSize(2);
+        assertThat(scheduler.isTerminated()).isTrue();
+    }
+
+    @Test
+    public void testManyConcurrentSubmissionsAllRun() throws Exception {
+        HashedWheelScheduler scheduler = newScheduler();
+        int threads = 4;
+        int perThread = 2500;
+        CountDownLatch done = new CountDownLatch(threads * perThread);
+        for (int t = 0; t < threads; t++) {
+            new Thread(() -> {
+                for (int i = 0; i < perThread; i++) {
+                    scheduler.schedule(done::countDown, i % 50, TimeUnit.MILLISECONDS);
+                }
+            }).start();
+        }
+        assertThat(done.await(10, TimeUnit.SECONDS)).isTrue();
+        scheduler.shutdown();
+    }
+}
@@ -0,0 +1,85 @@
+package com.krs.utils.threads;
+
+import org.testng.annotations.Test;
+
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.fail;
+
+public class InstrumentedThreadPoolExecutorTest {
+
+    @Test
+    public void testRecordsQueueWaitAndExecutionTime() throws Exception {
+        InstrumentedThreadPoolExecutor pool = ThreadUtils.newInstrumentedThreadPool("instrumented-%d", 1, 10);
+        CountDownLatch started = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        pool.execute(() -> {
+            started.countDown();
+            try {
+                release.await();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        });
+        assertThat(started.await(5, TimeUnit.SECONDS)).isTrue();
+        pool.submit(() -> {});
+        long blockedFrom = System.nanoTime();
+
+        Thread.sleep(20);
+        assertThat(pool.getActiveThreads()).isEqualTo(1);
+        long blockedNanos = System.nanoTime() - blockedFrom;
+        release.countDown();
+        pool.shutdown();
+        assertThat(pool.awaitTermination(5, TimeUnit.SECONDS)).isTrue();
+
+        assertThat(pool.getActiveThreads()).isZero();
+        assertThat(pool.getQueueWait().getCount()).isEqualTo(2);
+        assertThat(pool.getExecutionTime().getCount()).isEqualTo(2);
+        // The second task queued behind the first for at least as long as the first was held after it was queued.
+        assertThat(pool.getQueueWait().getMaxNanos()).isGreaterThanOrEqualTo(blockedNanos);
+        assertThat(pool.getExecutionTime().getMaxNanos()).isGreaterThanOrEqualTo(blockedNanos);
+    }
+
+    @Test
+    public void testCountsRejections() throws Exception {
+        InstrumentedThreadPoolExecutor pool = ThreadUtils.newInstrumentedThreadPool("instrumented-%d", 1, 1);
+        CountDownLatch release = new CountDownLatch(1);
+        pool.execute(() -> {
+            try {
+                release.await();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        });
+        pool.execute(() -> {});
+        try {
+            pool.execute(() -> {});
+            fail("Expected rejection");
+        } catch (RejectedExecutionException e) {
+            assertThat(pool.getRejectedCount()).isEqualTo(1);
+        }
+
+        List<Runnable> pending = pool.shutdownNow();
+        assertThat(pending).hasSize(1);
+        release.countDown();
+    }
+
+    @Test
+    public void testHistogramPercentiles() {
+        LatencyHistogram h = new LatencyHistogram();
+        for (int i = 0; i < 99; i++) {
+            h.record(1000);
+        }
+        h.record(1000000);
+
+        assertThat(h.getCount()).isEqualTo(100);
+        assertThat(h.getPercentileNanos(50)).isBetween(1000L, 2047L);
+        assertThat(h.getPercentileNanos(100)).isEqualTo(1000000L);
+        assertThat(h.getMaxNanos()).isEqualTo(1000000L);
+        assertThat(new LatencyHistogram().getPercentileNanos(99)).isZero();
+    }
+}
@@ -0,0 +1,62 @@
+package com.krs.utils.threads;
+
+import org.testng.annotations.Test;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class KeyedOrderedExecutorTest {
+
+    @Test
+    public void testTasksForSameKeyRunInSubmissionOrder() throws Exception {
+        KeyedOrderedExecutor executor = new KeyedOrderedExecutor("keyed-%d", 4);
+        int keys = 16;
+        int perKey = 500;
+        List<List<Integer>> seen = new ArrayList<>();
+        for (int k = 0; k < keys; k++) {
+            seen.add(Collections.synchronizedList(new ArrayList<>()));
+        }
+
+        for (int i = 0; i < perKey; i++) {
+            for (int k = 0; k < keys; k++) {
+                List<Integer> list = seen.get(k);
+                int value = i;
+                executor.execute("key-" + k, () -> list.add(value));
+            }
+        }
+        executor.shutdown();
+        assertThat(executor.awaitTermination(10, TimeUnit.SECONDS)).isTrue();
+
+        for (List<Integer> list : seen) {
+            assertThat(list).hasSize(perKey).isSorted();
+        }
+    }
+
+    @Test
+    public void testFailingTaskDoesNotStallLane() throws Exception {
+        KeyedOrderedExecutor executor = new KeyedOrderedExecutor("keyed-%d", 1);
+        CountDownLatch ran = new CountDownLatch(1);
+        executor.execute("a", () -> {
+            throw new IllegalStateException("expected");
+        });
+        executor.execute("a", ran::countDown);
+        assertThat(ran.await(5, TimeUnit.SECONDS)).isTrue();
+
+        Future<String> f = executor.submit("a", () -> "done");
+        assertThat(f.get(5, TimeUnit.SECONDS)).isEqualTo("done");
+        executor.shutdown();
+    }
+
+    @Test
+    public void testEqualKeysShareALane() {
+        KeyedOrderedExecutor executor = new KeyedOrderedExecutor("keyed-%d", 8);
+        assertThat(executor.laneFor(new String("account-42"))).isSameAs(executor.laneFor("account-42"));
+        executor.shutdown();
+    }
+}
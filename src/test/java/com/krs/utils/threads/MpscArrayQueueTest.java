@@ -0,0 +1,139 @@
+package com.krs.utils.threads;
+
+import org.testng.annotations.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Queue;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class MpscArrayQueueTest {
+
+    @Test
+    public void testBoundedFifo() {
+        for (Queue<Integer> q : queues(4)) {
+            for (int i = 0; i < 4; i++) {
+                assertThat(q.offer(i)).isTrue();
+            }
+            assertThat(q.offer(4)).isFalse();
+            assertThat(q.size()).isEqualTo(4);
+            assertThat(q.peek()).isEqualTo(0);
+
+            assertThat(q.poll()).isEqualTo(0);
+            assertThat(q.offer(4)).isTrue();
+            for (int i = 1; i <= 4; i++) {
+                assertThat(q.poll()).isEqualTo(i);
+            }
+            assertThat(q.poll()).isNull();
+            assertThat(q.isEmpty()).isTrue();
+        }
+    }
+
+    @Test
+    public void testIteratesFromConsumerToProducer() {
+        for (Queue<Integer> q : queues(4)) {
+            assertThat(q.toString()).isEqualTo("[]");
+            for (int i = 0; i < 4; i++) {
+                q.offer(i);
+            }
+            q.poll();
+            q.poll();
+            q.offer(4);
+
+            assertThat(q).containsExactly(2, 3, 4);
+            assertThat(q.toString()).isEqualTo("[2, 3, 4]");
+            assertThat(q.contains(3)).isTrue();
+            assertThat(q.contains(0)).isFalse();
+            assertThat(q.toArray()).containsExactly(2, 3, 4);
+        }
+    }
+
+    @Test
+    public void testCapacityRoundsUpToPowerOfTwo() {
+        assertThat(new MpscArrayQueue<>(5).capacity()).isEqualTo(8);
+        assertThat(new SpscArrayQueue<>(8).capacity()).isEqualTo(8);
+    }
+
+    @Test
+    public void testClosedQueueRefusesOffersButDrains() {
+        MpscArrayQueue<String> q = new MpscArrayQueue<>(4);
+        q.offer("a");
+        q.close();
+        assertThat(q.offer("b")).isFalse();
+        assertThat(q.isClosed()).isTrue();
+        assertThat(q.size()).isEqualTo(1);
+        assertThat(q.poll()).isEqualTo("a");
+        assertThat(q.isEmpty()).isTrue();
+    }
+
+    @Test
+    public void testConcurrentProducersLoseNothing() throws Exception {
+        MpscArrayQueue<Integer> q = new MpscArrayQueue<>(64);
+        int producers = 4;
+        int perProducer = 50000;
+        List<Thread> threads = new ArrayList<>();
+        for (int t = 0; t < producers; t++) {
+            int base = t * perProducer;
+            Thread thread = new Thread(() -> {
+                for (int i = 0; i < perProducer; i++) {
+                    while (!q.offer(base + i)) {
+                        Thread.yield();
+                    }
+                }
+            });
+            threads.add(thread);
+            thread.start();
+        }
+
+        // Each producer's elements must arrive in the order it offered them.
+        int[] last = new int[producers];
+        java.util.Arrays.fill(last, -1);
+        int received = 0;
+        while (received < producers * perProducer) {
+            Integer e = q.poll();
+            if (e == null) {
+                Thread.yield();
+                continue;
+            }
+            int producer = e / perProducer;
+            assertThat(e).isGreaterThan(last[producer]);
+            last[producer] = e;
+            received++;
+        }
+        for (Thread thread : threads) {
+            thread.join();
+        }
+        assertThat(q.poll()).isNull();
+    }
+
+    @Test
+    public void testSpscHandOff() throws Exception {
+        SpscArrayQueue<Integer> q = new SpscArrayQueue<>(16);
+        int count = 100000;
+        Thread producer = new Thread(() -> {
+            for (int i = 0; i < count; i++) {
+                while (!q.offer(i)) {
+                    Thread.yield();
+                }
+            }
+        });
+        producer.start();
+
+        int expected = 0;
+        while (expected < count) {
+            Integer e = q.poll();
+            if (e != null) {
+                assertThat(e).isEqualTo(expected++);
+            }
+        }
+        producer.join();
+    }
+
+    private static List<Queue<Integer>> queues(int capacity) {
+        List<Queue<Integer>> queues = new ArrayList<>();
+        queues.add(new MpscArrayQueue<>(capacity));
+        queues.add(new SpscArrayQueue<>(capacity));
+        return queues;
+    }
+}
@@ -0,0 +1,58 @@
+package com.krs.utils.threads;
+
+import org.testng.annotations.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class ThreadResourceSamplerTest {
+
+    @Test
+    public void testGroupsByNameFormat() {
+        assertThat(ThreadResourceSampler.groupOf("Worker 12")).isEqualTo("Worker %d");
+        assertThat(ThreadResourceSampler.groupOf("pool-3-thread-7")).isEqualTo("pool-3-thread-%d");
+        assertThat(ThreadResourceSampler.groupOf("io-4-reader")).isEqualTo("io-%d-reader");
+        assertThat(ThreadResourceSampler.groupOf("main")).isEqualTo("main");
+    }
+
+    @Test
+    public void testAccountsCpuAndAllocationToGroup() throws Exception {
+        NamedThreadFactory factory = new NamedThreadFactory("sampler-burner-%d");
+        CountDownLatch done = new CountDownLatch(1);
+        Thread burner = factory.newThread(() -> {
+            List<byte[]> garbage = new ArrayList<>();
+            long end = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(200);
+            while (System.nanoTime() < end) {
+                garbage.add(new byte[1024]);
+                if (garbage.size() > 1000) {
+                    garbage.clear();
+                }
+            }
+            try {
+                done.await();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        });
+
+        ThreadResourceSampler sampler = new ThreadResourceSampler();
+        sampler.sample();
+        burner.start();
+        Thread.sleep(300);
+        sampler.sample();
+        done.countDown();
+
+        ThreadResourceSampler.GroupStats stats = sampler.getGroup(factory);
+        assertThat(stats).isNotNull();
+        assertThat(stats.getName()).isEqualTo("sampler-burner-%d");
+        assertThat(stats.getThreadCount()).isEqualTo(1);
+        assertThat(stats.getCpuCores()).isGreaterThan(0.1);
+        assertThat(stats.getTotalCpuNanos()).isGreaterThan(TimeUnit.MILLISECONDS.toNanos(50));
+        assertThat(stats.getAllocatedBytesPerSecond()).isGreaterThan(0);
+        burner.join();
+    }
+}
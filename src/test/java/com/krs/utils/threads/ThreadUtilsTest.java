@@ -1,18 +1,30 @@
 package com.krs.utils.threads;
 
 
+import com.krs.utils.logging.ThrottledExceptionLog;
 import org.slf4j.Logger;
 import org.testng.annotations.Test;
 
+import java.util.Arrays;
+import java.util.List;
 import java.util.Optional;
 import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.CopyOnWriteArrayList;
 import java.util.concurrent.ExecutorService;
+import java.util.concurrent.ForkJoinPool;
 import java.util.concurrent.Future;
 import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
 
 import static com.krs.utils.testing.ReflectiveTestHelper.injectMockLogger;
+import static com.krs.utils.threads.ThreadUtils.allOf;
+import static com.krs.utils.threads.ThreadUtils.anyOf;
 import static com.krs.utils.threads.ThreadUtils.guard;
 import static com.krs.utils.threads.ThreadUtils.newNamedDaemonThreadFactory;
+import static com.krs.utils.threads.ThreadUtils.newVirtualThreadPerTaskExecutor;
+import static com.krs.utils.threads.ThreadUtils.newWorkStealingPool;
+import static com.krs.utils.threads.ThreadUtils.quorum;
 import static java.util.concurrent.Executors.newFixedThreadPool;
 import static org.assertj.core.api.Assertions.assertThat;
 import static org.mockito.Mockito.*;
@@ -99,6 +111,134 @@ public class ThreadUtilsTest {
         assertThat(t.getName()).isEqualTo("krs-1");
     }
 
+    @Test
+    public void testWorkStealingPoolNamesWorkers() throws Exception {
+        ForkJoinPool pool = newWorkStealingPool("krs-fj-%d", 2);
+        Thread worker = pool.submit(Thread::currentThread).get();
+        // A terminated thread reports its group as its handler, so read the handler while the worker is running.
+        Thread.UncaughtExceptionHandler handler = pool.submit(
+                () -> Thread.currentThread().getUncaughtExceptionHandler()).get();
+        pool.shutdown();
+
+        assertThat(worker.getName()).startsWith("krs-fj-");
+        assertThat(worker.isDaemon()).isTrue();
+        assertThat(handler).isSameAs(ThreadUtils.exceptionLogger());
+        assertThat(pool.getAsyncMode()).isTrue();
+    }
+
+    @Test
+    public void testVirtualThreadPerTaskExecutorNamesThreads() throws Exception {
+        ExecutorService executor = newVirtualThreadPerTaskExecutor("krs-vt-%d");
+        Thread t = executor.submit(Thread::currentThread).get();
+        // Each task runs on a new thread, which loses its handler once it terminates, so read it from a task.
+        Thread.UncaughtExceptionHandler handler = executor.submit(
+                () -> Thread.currentThread().getUncaughtExceptionHandler()).get();
+        executor.shutdown();
+
+        assertThat(t.getName()).startsWith("krs-vt-");
+        assertThat(t.isDaemon()).isTrue();
+        assertThat(handler).isSameAs(ThreadUtils.exceptionLogger());
+    }
+
+    @Test
+    public void testThrottledExceptionLoggerRecordsThroughThrottle() {
+        ThrottledExceptionLog throttle = new ThrottledExceptionLog(1, TimeUnit.MINUTES);
+        Thread.UncaughtExceptionHandler handler = new ExceptionLogger(throttle);
+
+        handler.uncaughtException(Thread.currentThread(), defaultException);
+        // The handler has already logged this failure in full, so the throttle suppresses it now.
+        assertThat(throttle.record(defaultException)).isFalse();
+        assertThat(ThreadUtils.exceptionLogger(1, TimeUnit.MINUTES)).isNotSameAs(ThreadUtils.exceptionLogger());
+    }
+
+    @Test
+    public void testAnyOfReturnsFirstSuccessAndCancelsStragglers() throws Exception {
+        ExecutorService pool = newFixedThreadPool(3);
+        CountDownLatch started = new CountDownLatch(1);
+        CountDownLatch interrupted = new CountDownLatch(1);
+        Callable<String> slow = () -> {
+            started.countDown();
+            try {
+                Thread.sleep(10000);
+            } catch (InterruptedException e) {
+                interrupted.countDown();
+            }
+            return "slow";
+        };
+
+        Callable<String> fast = () -> {
+            started.await();
+            return "fast";
+        };
+
+        List<Callable<String>> tasks = Arrays.asList(newCaller(defaultException), fast, slow);
+        Optional<String> r = anyOf(pool, tasks, 5, TimeUnit.SECONDS);
+        assertThat(r).contains("fast");
+        assertThat(interrupted.await(5, TimeUnit.SECONDS)).isTrue();
+        pool.shutdown();
+    }
+
+    @Test
+    public void testAllOfKeepsTaskOrderAndEmptiesFailuresAndStragglers() throws Exception {
+        ExecutorService pool = newFixedThreadPool(3);
+        Callable<String> slow = () -> {
+            Thread.sleep(10000);
+            return "slow";
+        };
+
+        List<Optional<String>> r = allOf(pool, Arrays.asList(() -> "a", newCaller(defaultException), slow),
+                100, TimeUnit.MILLISECONDS);
+        assertThat(r).containsExactly(Optional.of("a"), Optional.empty(), Optional.empty());
+        pool.shutdown();
+    }
+
+    @Test
+    public void testQuorum() throws Exception {
+        ExecutorService pool = newFixedThreadPool(4);
+        List<Callable<Integer>> tasks = Arrays.asList(() -> 1, () -> 2, () -> {
+            Thread.sleep(10000);
+            return 3;
+        }, () -> 4);
+
+        Optional<List<Integer>> reached = quorum(pool, tasks, 3, 5, TimeUnit.SECONDS);
+        assertThat(reached.get()).containsExactly(1, 2, 4);
+
+        List<Callable<Integer>> failing = Arrays.asList(() -> 1, () -> {
+            throw defaultException;
+        }, () -> {
+            throw defaultException;
+        });
+        assertThat(quorum(pool, failing, 2, 5, TimeUnit.SECONDS)).isEmpty();
+        pool.shutdown();
+    }
+
+    @Test
+    public void testGatherDoesNotReportCancelledStragglers() throws Exception {
+        ExecutorService pool = newFixedThreadPool(3);
+        List<Throwable> reported = new CopyOnWriteArrayList<>();
+        CountDownLatch failureReported = new CountDownLatch(1);
+        Thread.UncaughtExceptionHandler handler = (thread, t) -> {
+            reported.add(t);
+            failureReported.countDown();
+        };
+        Callable<String> slow = () -> {
+            Thread.sleep(10000);
+            return "slow";
+        };
+        Callable<String> fast = () -> {
+            failureReported.await();
+            return "fast";
+        };
+
+        List<Optional<String>> r = ThreadUtils.gather(pool, Arrays.asList(newCaller(defaultException), fast, slow),
+                1, false, 5, TimeUnit.SECONDS, handler);
+        assertThat(r).containsExactly(Optional.empty(), Optional.of("fast"), Optional.empty());
+        pool.shutdown();
+        assertThat(pool.awaitTermination(5, TimeUnit.SECONDS)).isTrue();
+        // Only the failure before the result was decided, not the interrupted straggler.
+        assertThat(reported).containsExactly(defaultException);
+    }
+
     Runnable newRunner(RuntimeException e) {
         return () -> {
             throw e;